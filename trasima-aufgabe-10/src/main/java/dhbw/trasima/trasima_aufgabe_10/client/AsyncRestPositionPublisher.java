@@ -0,0 +1,266 @@
+package dhbw.trasima.trasima_aufgabe_10.client;
+
+import dhbw.trasima.trasima_bis_5.metrics.RateLimitedLog;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-blocking variant of {@link RestPositionPublisher} built on {@link HttpClient#sendAsync}.
+ *
+ * <p>{@link #publishPosition} never waits for the network:</p>
+ * <ul>
+ *   <li>Per vehicle at most one request is in flight. Updates arriving meanwhile replace each other in a single
+ *   slot (latest wins); only the newest one is sent once the earlier request completes.</li>
+ *   <li>Overall at most {@code maxInFlight} requests are in flight; further vehicles wait in a ready queue.</li>
+ * </ul>
+ *
+ * <p>Because requests of one vehicle never overlap, the POST/PUT state machine of the blocking publisher stays
+ * correct: the first update is a POST, 409 switches to PUT, and a 404 on PUT switches back to POST. Each
+ * fallback is retried once with the same payload unless a newer update is already waiting.</p>
+ */
+public final class AsyncRestPositionPublisher implements IPublishPosition {
+
+    private static final RateLimitedLog ERROR_LOG = new RateLimitedLog("REST Fehler: ", 1);
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final Map<Integer, Slot> slots = new ConcurrentHashMap<>();
+    // Vehicles with a pending update that are waiting for a global permit.
+    private final Queue<Slot> ready = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    public AsyncRestPositionPublisher(String baseUrl, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be >= 1");
+        }
+        this.baseUrl = RestPositionPublisher.trimTrailingSlash(baseUrl);
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+    }
+
+    @Override
+    public void publishPosition(int id, double lat, double lon, double speed, double direction) {
+        published.increment();
+        byte[] json = RestPositionPublisher.toJson(id, lat, lon, speed, direction);
+        Slot slot = slots.computeIfAbsent(id, Slot::new);
+
+        boolean schedule;
+        synchronized (slot) {
+            if (slot.pending != null) {
+                // The previous update was never sent; the new one replaces it.
+                superseded.increment();
+            }
+            slot.pending = json;
+            schedule = !slot.busy;
+            slot.busy = true;
+        }
+        if (schedule) {
+            ready.add(slot);
+            drain();
+        }
+    }
+
+    @Override
+    public void deleteVehicle(int id) {
+        Slot slot = slots.remove(id);
+        if (slot != null) {
+            synchronized (slot) {
+                // Stops retries of a request that is still in flight (a late 404 must not re-create the vehicle).
+                slot.deleted = true;
+                if (slot.pending != null) {
+                    superseded.increment();
+                    slot.pending = null;
+                }
+            }
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/api/trasima/vehicles/" + id))
+                .timeout(Duration.ofSeconds(2))
+                .DELETE()
+                .build();
+        try {
+            httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (Exception e) {
+            ERROR_LOG.log(e.getMessage());
+        }
+    }
+
+    /**
+     * Counters since start; {@code inFlight} is a snapshot.
+     */
+    public Stats stats() {
+        return new Stats(published.sum(), sent.sum(), succeeded.sum(), failed.sum(), superseded.sum(),
+                retries.sum(), slots.size(), inFlight());
+    }
+
+    private int inFlight() {
+        // Permits are only taken while a request is outstanding.
+        return maxInFlight - permits.availablePermits();
+    }
+
+    private void drain() {
+        // Re-check the queue after every release so an id added concurrently is never stranded.
+        while (!ready.isEmpty() && permits.tryAcquire()) {
+            Slot slot = ready.poll();
+            if (slot == null) {
+                permits.release();
+                continue;
+            }
+            byte[] json;
+            synchronized (slot) {
+                json = slot.pending;
+                slot.pending = null;
+            }
+            if (json == null) {
+                // Deleted in the meantime.
+                finish(slot);
+                continue;
+            }
+            send(slot, json, slot.created ? "PUT" : "POST", false);
+        }
+    }
+
+    private void send(Slot slot, byte[] json, String method, boolean retry) {
+        sent.increment();
+        if (retry) {
+            retries.increment();
+            PublisherMetrics.ASYNC_RETRIES.inc();
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/api/trasima/vehicles/" + slot.id))
+                .timeout(Duration.ofSeconds(2))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(json))
+                .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        failed.increment();
+                        PublisherMetrics.ASYNC_FAILURES.inc();
+                        finish(slot);
+                        return;
+                    }
+                    onResponse(slot, json, method, retry, response.statusCode());
+                });
+    }
+
+    private void onResponse(Slot slot, byte[] json, String method, boolean retry, int status) {
+        if ("POST".equals(method)) {
+            if (status == 201) {
+                slot.created = true;
+                succeeded.increment();
+            } else if (status == 409) {
+                // Vehicle already exists (e.g. previous run): updates go through PUT from now on.
+                slot.created = true;
+                if (retried(slot, json, "PUT", retry)) {
+                    return;
+                }
+            } else {
+                failed.increment();
+                PublisherMetrics.ASYNC_FAILURES.inc();
+            }
+        } else {
+            if (status == 200) {
+                succeeded.increment();
+            } else if (status == 404) {
+                // Resource is gone and must be re-created.
+                slot.created = false;
+                if (retried(slot, json, "POST", retry)) {
+                    return;
+                }
+            } else {
+                failed.increment();
+                PublisherMetrics.ASYNC_FAILURES.inc();
+            }
+        }
+        finish(slot);
+    }
+
+    /**
+     * Handles a 409 on POST or a 404 on PUT. Returns true if the same payload was re-sent with the corrected
+     * method; otherwise the update is counted here and the caller just finishes the slot.
+     */
+    private boolean retried(Slot slot, byte[] json, String method, boolean retry) {
+        if (retry) {
+            // The fallback itself hit the same conflict; give up on this update.
+            failed.increment();
+            PublisherMetrics.ASYNC_FAILURES.inc();
+            return false;
+        }
+        boolean resend;
+        synchronized (slot) {
+            // A newer update will be sent anyway (with the corrected method), so the old payload is not retried.
+            resend = !slot.deleted && slot.pending == null;
+        }
+        if (!resend) {
+            superseded.increment();
+            return false;
+        }
+        send(slot, json, method, true);
+        return true;
+    }
+
+    private void finish(Slot slot) {
+        permits.release();
+        boolean requeue;
+        synchronized (slot) {
+            requeue = slot.pending != null && !slot.deleted;
+            if (!requeue) {
+                slot.busy = false;
+            }
+        }
+        if (requeue) {
+            ready.add(slot);
+        }
+        drain();
+    }
+
+    /**
+     * Publisher counters. Once nothing is in flight, every {@code published} update is counted exactly once in
+     * {@code succeeded}, {@code failed} or {@code superseded}. {@code superseded} covers updates replaced by a newer
+     * one for the same vehicle (or by a delete) before they were sent, and 409/404 fallbacks skipped for the same
+     * reason. {@code retries} counts the extra requests of those fallbacks, so
+     * {@code sent = succeeded + failed + retries + skipped fallbacks}.
+     */
+    public record Stats(long published, long sent, long succeeded, long failed, long superseded, long retries,
+                        int vehicles, int inFlight) {
+    }
+
+    /**
+     * Latest-wins slot and POST/PUT state of one vehicle.
+     */
+    private static final class Slot {
+        final int id;
+        // Guarded by this.
+        byte[] pending;
+        boolean busy;
+        boolean deleted;
+        // Only touched by the single in-flight request chain of this vehicle.
+        volatile boolean created;
+
+        Slot(int id) {
+            this.id = id;
+        }
+    }
+}
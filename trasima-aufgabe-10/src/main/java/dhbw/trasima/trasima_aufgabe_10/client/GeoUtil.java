@@ -7,8 +7,10 @@ package dhbw.trasima.trasima_aufgabe_10.client;
  * spherical formulas (no ellipsoid corrections).</p>
  *
  * <p>All angles are in degrees; distances in meters.</p>
+ *
+ * <p>{@link #distanceMeters} is also used by the server for radius queries.</p>
  */
-final class GeoUtil {
+public final class GeoUtil {
 
     // Mean earth radius. Good enough for short-distance movement.
     private static final double EARTH_RADIUS_METERS = 6_371_000.0;
@@ -16,7 +18,7 @@ final class GeoUtil {
     private GeoUtil() {
     }
 
-    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
         // Haversine distance on a sphere.
         double phi1 = Math.toRadians(lat1);
         double phi2 = Math.toRadians(lat2);
@@ -62,7 +64,7 @@ final class GeoUtil {
         return new LatLon(lat, lon);
     }
 
-    static double normalizeLonDegrees(double lon) {
+    public static double normalizeLonDegrees(double lon) {
         // Keep longitude in [-180, 180] so Leaflet/OSM doesn't get confused.
         double result = lon;
         while (result > 180.0) {
@@ -17,4 +17,12 @@ public interface IPublishPosition {
      * Deletes the vehicle resource on the REST server.
      */
     void deleteVehicle(int id);
+
+    /**
+     * Sends updates that were buffered by the implementation (e.g. one batch per simulation tick).
+     *
+     * <p>Called once after every tick; a no-op for publishers that send immediately.</p>
+     */
+    default void flush() {
+    }
 }
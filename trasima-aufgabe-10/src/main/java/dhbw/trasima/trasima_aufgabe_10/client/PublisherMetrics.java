@@ -0,0 +1,40 @@
+package dhbw.trasima.trasima_aufgabe_10.client;
+
+import dhbw.trasima.trasima_bis_5.metrics.Counter;
+import dhbw.trasima.trasima_bis_5.metrics.LatencyHistogram;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+
+/**
+ * Client-side metrics of the REST publishers and the tick engine, registered once in the process-wide
+ * {@link MetricsRegistry}.
+ *
+ * <p>A failure is a request that got no response or an unexpected status. A retry is the immediate POST/PUT
+ * fallback after a 409 or 404.</p>
+ */
+final class PublisherMetrics {
+
+    static final Counter BLOCKING_FAILURES = failures("blocking");
+    static final Counter BLOCKING_RETRIES = retries("blocking");
+    static final Counter ASYNC_FAILURES = failures("async");
+    static final Counter ASYNC_RETRIES = retries("async");
+    // Counted per update, not per request: one failed batch loses the whole tick.
+    static final Counter BATCH_FAILURES = failures("batch");
+
+    static final LatencyHistogram TICK = MetricsRegistry.global().histogram("trasima_tick_duration_seconds",
+            "Dauer eines Simulations-Ticks (Berechnung und Veröffentlichung)");
+    static final Counter TICK_OVERRUNS = MetricsRegistry.global().counter("trasima_tick_overruns_total",
+            "Ticks, die länger als das Intervall gedauert haben");
+
+    private PublisherMetrics() {
+    }
+
+    private static Counter failures(String mode) {
+        return MetricsRegistry.global().counter("trasima_publisher_failures_total",
+                "Fehlgeschlagene Veröffentlichungen im Client", "transport", "rest", "mode", mode);
+    }
+
+    private static Counter retries(String mode) {
+        return MetricsRegistry.global().counter("trasima_publisher_retries_total",
+                "Wiederholte Veröffentlichungen im Client", "transport", "rest", "mode", mode);
+    }
+}
@@ -1,12 +1,17 @@
 package dhbw.trasima.trasima_aufgabe_10.client;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dhbw.trasima.trasima_aufgabe_10.model.BatchResult;
+import dhbw.trasima.trasima_aufgabe_10.model.V2StateJson;
 import dhbw.trasima.trasima_bis_5.IPositionPublisher;
+import dhbw.trasima.trasima_bis_5.metrics.RateLimitedLog;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -22,6 +27,10 @@ import java.util.concurrent.ConcurrentHashMap;
  *   <li>If the server replies with 409 on POST, we fall back to PUT (vehicle already exists).</li>
  * </ul>
  *
+ * <p>Batch mode: updates are only collected (latest state per id wins) and {@link #flush()} sends all of them as one
+ * {@code PUT /vehicles} request. The server upserts, so no POST/PUT bookkeeping is needed. Updates of a failed
+ * batch, and ids missing from the server's created/updated lists, count as failures (mode {@code batch}).</p>
+ *
  * <p>This class is thread-safe because VV instances publish concurrently.</p>
  */
 public final class RestPositionPublisher implements IPositionPublisher, IPublishPosition {
@@ -36,7 +45,26 @@ public final class RestPositionPublisher implements IPositionPublisher, IPublish
     // Remember the last position per vehicle to compute a direction from movement (dx/dy).
     private final Map<Integer, LastPos> lastPositions = new ConcurrentHashMap<>();
 
+    // Batch mode: JSON object per id, waiting for the next flush().
+    private final boolean batch;
+    private final Map<Integer, byte[]> pendingBatch = new ConcurrentHashMap<>();
+
+    // An unreachable server fails every request of every vehicle; one line per second is enough.
+    private static final RateLimitedLog ERROR_LOG = new RateLimitedLog("REST Fehler: ", 1);
+
+    // Only used to read the small BatchResult response of the batch endpoint.
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    // Encoding buffer per publishing thread; only the final byte[] is allocated per update.
+    private static final ThreadLocal<V2StateJson.Buffer> JSON_BUFFERS = ThreadLocal.withInitial(V2StateJson.Buffer::new);
+
     public RestPositionPublisher(String baseUrl) {
+        this(baseUrl, false);
+    }
+
+    public RestPositionPublisher(String baseUrl, boolean batch) {
+        this.batch = batch;
         // Normalize baseUrl so we don't end up with double slashes when building URIs.
         this.baseUrl = trimTrailingSlash(baseUrl);
         this.httpClient = HttpClient.newBuilder()
@@ -53,7 +81,13 @@ public final class RestPositionPublisher implements IPositionPublisher, IPublish
 
     @Override
     public void publishPosition(int id, double lat, double lon, double speed, double direction) {
-        String json = toJson(id, lat, lon, speed, direction);
+        byte[] json = toJson(id, lat, lon, speed, direction);
+
+        if (batch) {
+            // Only the latest state per vehicle is sent with the next batch.
+            pendingBatch.put(id, json);
+            return;
+        }
 
         // Optimistic "create once": the first publish tries POST.
         if (createdIds.add(id)) {
@@ -65,8 +99,10 @@ public final class RestPositionPublisher implements IPositionPublisher, IPublish
             if (status != 409) {
                 // Any other error: do not mark as created, so we can retry POST later.
                 createdIds.remove(id);
+                PublisherMetrics.BLOCKING_FAILURES.inc();
                 return;
             }
+            PublisherMetrics.BLOCKING_RETRIES.inc();
         }
 
         // Normal updates go through PUT; 404 indicates the resource is gone and must be re-created.
@@ -74,6 +110,65 @@ public final class RestPositionPublisher implements IPositionPublisher, IPublish
         if (status == 404) {
             createdIds.remove(id);
         }
+        if (status != 200) {
+            PublisherMetrics.BLOCKING_FAILURES.inc();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (pendingBatch.isEmpty()) {
+            return;
+        }
+        V2StateJson.Buffer json = JSON_BUFFERS.get().reset().writeByte('[');
+        int count = 0;
+        Iterator<Map.Entry<Integer, byte[]>> it = pendingBatch.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, byte[]> entry = it.next();
+            // Remove only this exact value: a newer update for the same id stays for the next batch.
+            if (pendingBatch.remove(entry.getKey(), entry.getValue())) {
+                if (json.length() > 1) {
+                    json.writeByte(',');
+                }
+                json.writeRaw(entry.getValue());
+                count++;
+            }
+        }
+        json.writeByte(']');
+        if (count == 0) {
+            return;
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/api/trasima/vehicles"))
+                .timeout(Duration.ofSeconds(5))
+                .header("Content-Type", "application/json")
+                // ofByteArray() keeps the array; the copy is needed because the buffer is reused next tick.
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(json.toByteArray()))
+                .build();
+        int accepted = 0;
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 200) {
+                BatchResult result = MAPPER.readValue(response.body(), BatchResult.class);
+                accepted = length(result.created) + length(result.updated);
+            } else {
+                ERROR_LOG.log("Batch HTTP " + response.statusCode());
+            }
+        } catch (Exception e) {
+            ERROR_LOG.log(e.getMessage());
+        }
+        if (accepted < count) {
+            // Lost for this tick; the next tick sends a newer state of the same vehicles anyway.
+            PublisherMetrics.BATCH_FAILURES.add(count - accepted);
+            if (accepted > 0) {
+                ERROR_LOG.log("Batch: " + (count - accepted) + " von " + count + " Updates nicht bestätigt");
+            }
+        }
+    }
+
+    private static int length(int[] ids) {
+        return ids == null ? 0 : ids.length;
     }
 
     @Override
@@ -87,26 +182,27 @@ public final class RestPositionPublisher implements IPositionPublisher, IPublish
         send(request);
         createdIds.remove(id);
         lastPositions.remove(id);
+        pendingBatch.remove(id);
     }
 
-    private int post(int id, String json) {
+    private int post(int id, byte[] json) {
         // POST = create resource for id.
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(baseUrl + "/api/trasima/vehicles/" + id))
                 .timeout(Duration.ofSeconds(2))
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json))
                 .build();
         return send(request);
     }
 
-    private int put(int id, String json) {
+    private int put(int id, byte[] json) {
         // PUT = replace full state for id (idempotent update).
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(baseUrl + "/api/trasima/vehicles/" + id))
                 .timeout(Duration.ofSeconds(2))
                 .header("Content-Type", "application/json")
-                .PUT(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(json))
                 .build();
         return send(request);
     }
@@ -117,7 +213,7 @@ public final class RestPositionPublisher implements IPositionPublisher, IPublish
             return response.statusCode();
         } catch (Exception e) {
             // Keep the simulation running even if the REST server is temporarily unavailable.
-            System.out.println("REST Fehler: " + e.getMessage());
+            ERROR_LOG.log(e.getMessage());
             return -1;
         }
     }
@@ -139,18 +235,12 @@ public final class RestPositionPublisher implements IPositionPublisher, IPublish
         return degrees < 0.0 ? degrees + 360.0 : degrees;
     }
 
-    private static String toJson(int id, double lat, double lon, double speed, double direction) {
-        // Minimal JSON builder (no Jackson on client side).
-        return "{"
-                + "\"id\":" + id + ","
-                + "\"lat\":" + lat + ","
-                + "\"lon\":" + lon + ","
-                + "\"speed\":" + speed + ","
-                + "\"direction\":" + direction
-                + "}";
+    static byte[] toJson(int id, double lat, double lon, double speed, double direction) {
+        // Same codec as the server (no Jackson on client side); UTF-8 bytes, no intermediate String.
+        return JSON_BUFFERS.get().reset().writeState(id, lat, lon, speed, direction).toByteArray();
     }
 
-    private static String trimTrailingSlash(String s) {
+    static String trimTrailingSlash(String s) {
         if (s == null || s.isBlank()) {
             return "http://localhost:8080";
         }
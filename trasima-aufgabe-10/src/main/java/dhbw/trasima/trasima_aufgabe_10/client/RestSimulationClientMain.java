@@ -2,6 +2,8 @@ package dhbw.trasima.trasima_aufgabe_10.client;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsHttpServer;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -23,6 +25,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *   {@code sim-config.json}, otherwise built-in defaults)</li>
  *   <li>{@code --vehicles <n>} overrides config</li>
  *   <li>{@code --baseUrl <url>} overrides config</li>
+ *   <li>{@code --seed <n>} overrides config (reproducible runs)</li>
+ *   <li>{@code --tick-threads <n>} overrides config ({@code tickThreads})</li>
+ *   <li>{@code --publish-mode single|batch|async} overrides config ({@code publishMode})</li>
+ *   <li>{@code --metrics-port <port>} serves tick duration and publisher failures/retries at
+ *   {@code http://localhost:<port>/metrics} (default: off)</li>
  * </ul>
  */
 public final class RestSimulationClientMain {
@@ -40,31 +47,73 @@ public final class RestSimulationClientMain {
         if (baseUrlOverride != null && !baseUrlOverride.isBlank()) {
             config.baseUrl = baseUrlOverride;
         }
+        String seedOverride = stringArg(args, "--seed", null);
+        if (seedOverride != null && !seedOverride.isBlank()) {
+            config.seed = Long.parseLong(seedOverride);
+        }
+        String publishModeOverride = stringArg(args, "--publish-mode", null);
+        if (publishModeOverride != null && !publishModeOverride.isBlank()) {
+            config.publishMode = publishModeOverride;
+        }
+        int tickThreadsOverride = intArg(args, "--tick-threads", -1);
+        if (tickThreadsOverride > 0) {
+            config.tickThreads = tickThreadsOverride;
+        }
 
-        RestPositionPublisher publisher = new RestPositionPublisher(config.baseUrl);
+        int metricsPort = intArg(args, "--metrics-port", -1);
+        MetricsHttpServer metrics = null;
+        if (metricsPort >= 0) {
+            try {
+                metrics = MetricsHttpServer.start(metricsPort, MetricsRegistry.global());
+                System.out.println("Metrics: http://localhost:" + metrics.port() + "/metrics");
+            } catch (IOException e) {
+                System.out.println("Metrics nicht verfügbar: " + e.getMessage());
+            }
+        }
+
+        String publishMode = config.publishMode.trim().toLowerCase();
+        boolean batch = "batch".equals(publishMode);
+        AsyncRestPositionPublisher asyncPublisher = "async".equals(publishMode)
+                ? new AsyncRestPositionPublisher(config.baseUrl, config.maxInFlight)
+                : null;
+        IPublishPosition publisher = asyncPublisher != null
+                ? asyncPublisher
+                : new RestPositionPublisher(config.baseUrl, batch);
         List<VehicleSimulator> simulators = new ArrayList<>(Math.max(0, config.vehicles));
         AtomicBoolean cleanupDone = new AtomicBoolean(false);
 
         System.out.println("Starte REST Simulation mit " + config.vehicles + " Fahrzeugen.");
-        System.out.println("REST Target: " + config.baseUrl + "/api/trasima/vehicles/{id}");
+        System.out.println("REST Target: " + config.baseUrl + (batch ? "/api/trasima/vehicles (Batch)" : "/api/trasima/vehicles/{id}")
+                + "; publishMode=" + publishMode);
         System.out.println("Spawn: center=(" + config.spawn.centerLat + "," + config.spawn.centerLon + ") radius="
                 + config.spawn.radiusMeters + "m");
         System.out.println("Destination: (" + config.destination.lat + "," + config.destination.lon + ")");
         System.out.println("Speed: " + config.speed.minKmh + ".." + config.speed.maxKmh + " km/h; interval="
                 + config.updateIntervalMillis + "ms");
 
-        // Create N vehicles with ids 1..N.
+        // Create N vehicles with ids 1..N (seed + id per vehicle, so a fixed seed reproduces the whole fleet).
+        long baseSeed = config.seed != null ? config.seed : System.nanoTime();
         for (int i = 0; i < config.vehicles; i++) {
             int id = i + 1;
-            simulators.add(new VehicleSimulator(id, config, publisher, System.nanoTime() + id));
+            simulators.add(new VehicleSimulator(id, config, publisher, baseSeed + id));
         }
 
         // Publish an initial state for each vehicle so markers appear immediately.
         for (VehicleSimulator simulator : simulators) {
             simulator.publishInitial();
         }
+        publisher.flush();
+
+        // Interval is also used as our simulation timestep (dt).
+        long intervalMs = Math.max(100, config.updateIntervalMillis);
+        double dtSeconds = intervalMs / 1000.0;
 
-        // Single scheduler thread that ticks all vehicles at a fixed interval.
+        // Partitioned engine: computes and publishes the vehicles on several worker threads per tick.
+        int tickThreads = config.tickThreads > 0 ? config.tickThreads : Runtime.getRuntime().availableProcessors();
+        TickEngine engine = new TickEngine(simulators, publisher, tickThreads, intervalMs);
+        System.out.println("Seed: " + baseSeed + "; tickThreads=" + tickThreads);
+
+        // Single scheduler thread that triggers one engine tick per interval.
         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "rest-sim-tick");
             t.setDaemon(false);
@@ -74,12 +123,10 @@ public final class RestSimulationClientMain {
         // Ensure we cleanup on Ctrl+C / JVM shutdown.
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             scheduler.shutdownNow();
+            engine.close();
             cleanup(config, publisher, simulators, cleanupDone);
         }, "rest-sim-shutdown"));
 
-        // Interval is also used as our simulation timestep (dt).
-        long intervalMs = Math.max(100, config.updateIntervalMillis);
-        double dtSeconds = intervalMs / 1000.0;
         Instant start = Instant.now();
         Duration duration = config.runDurationSeconds > 0 ? Duration.ofSeconds(config.runDurationSeconds) : null;
 
@@ -91,9 +138,9 @@ public final class RestSimulationClientMain {
                     return;
                 }
                 // Advance all vehicles one tick and publish their updated state.
-                for (VehicleSimulator simulator : simulators) {
-                    simulator.tick(dtSeconds);
-                }
+                engine.tick(dtSeconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (Exception e) {
                 System.out.println("Simulation Fehler: " + e.getMessage());
             }
@@ -112,13 +159,24 @@ public final class RestSimulationClientMain {
             Thread.currentThread().interrupt();
         } finally {
             scheduler.shutdownNow();
+            engine.close();
+            System.out.println(engine.summary());
+            if (asyncPublisher != null) {
+                AsyncRestPositionPublisher.Stats stats = asyncPublisher.stats();
+                double seconds = Math.max(0.001, Duration.between(start, Instant.now()).toMillis() / 1000.0);
+                System.out.printf("Async Publisher: %s, Durchsatz: %.1f Updates/s%n", stats, stats.succeeded() / seconds);
+            }
             cleanup(config, publisher, simulators, cleanupDone);
+            if (metrics != null) {
+                // Its dispatcher thread would otherwise keep a finite run alive.
+                metrics.close();
+            }
         }
     }
 
     private static void cleanup(
             SimulationConfig config,
-            RestPositionPublisher publisher,
+            IPublishPosition publisher,
             List<VehicleSimulator> simulators,
             AtomicBoolean cleanupDone
     ) {
@@ -193,9 +251,18 @@ public final class RestSimulationClientMain {
         if (config.arrivalRadiusMeters < 0.0) {
             config.arrivalRadiusMeters = 0.0;
         }
+        if (config.tickThreads < 0) {
+            config.tickThreads = 0;
+        }
         if (config.onArrival == null || config.onArrival.isBlank()) {
             config.onArrival = "respawn";
         }
+        if (config.publishMode == null || config.publishMode.isBlank()) {
+            config.publishMode = "single";
+        }
+        if (config.maxInFlight < 1) {
+            config.maxInFlight = 1;
+        }
         if (config.baseUrl == null || config.baseUrl.isBlank()) {
             config.baseUrl = "http://localhost:8080";
         }
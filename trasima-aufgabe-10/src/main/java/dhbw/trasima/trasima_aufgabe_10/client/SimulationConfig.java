@@ -38,6 +38,34 @@ public final class SimulationConfig {
      */
     public boolean deleteOnExit = true;
 
+    /**
+     * Base seed for the per-vehicle random generators (vehicle {@code id} is added per vehicle).
+     *
+     * <p>{@code null} = new random seed per run. Set it to get reproducible spawn positions and speeds.</p>
+     */
+    public Long seed = null;
+
+    /**
+     * Worker threads of the tick engine (vehicles are split into this many partitions).
+     *
+     * <p>0 = number of CPU cores.</p>
+     */
+    public int tickThreads = 0;
+
+    /**
+     * How updates are sent to the REST server.
+     *
+     * <ul>
+     *   <li>{@code "single"} (default): one POST/PUT per vehicle and tick</li>
+     *   <li>{@code "batch"}: one {@code PUT /api/trasima/vehicles} with all vehicles per tick</li>
+     *   <li>{@code "async"}: non-blocking requests, at most one in flight per vehicle (latest update wins)</li>
+     * </ul>
+     */
+    public String publishMode = "single";
+
+    /** Upper limit of concurrent HTTP requests in {@code "async"} publish mode. */
+    public int maxInFlight = 64;
+
     /** Vehicles spawn within this radius around the center. */
     public Spawn spawn = new Spawn();
 
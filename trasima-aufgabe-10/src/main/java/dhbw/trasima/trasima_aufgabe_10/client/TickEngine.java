@@ -0,0 +1,130 @@
+package dhbw.trasima.trasima_aufgabe_10.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs simulation ticks for many vehicles in parallel.
+ *
+ * <p>Vehicles are split into fixed, contiguous partitions (one per worker thread). Every tick has two phases:</p>
+ * <ol>
+ *   <li>compute: all partitions call {@link VehicleSimulator#advance(double)} in parallel (CPU only)</li>
+ *   <li>publish: all partitions send their staged updates in parallel (blocking HTTP), then
+ *   {@link IPublishPosition#flush()} sends anything the publisher buffered (e.g. one batch request)</li>
+ * </ol>
+ *
+ * <p>Each vehicle only touches its own state and random generator, so the result is deterministic for a given
+ * seed regardless of thread count or scheduling. A tick that takes longer than the configured interval is
+ * counted as an overrun instead of silently stretching the simulation.</p>
+ *
+ * <p>Not thread-safe: {@link #tick(double)} must be called from one thread at a time (the scheduler thread).</p>
+ */
+final class TickEngine implements AutoCloseable {
+
+    // Overrun warnings are printed at most this often.
+    private static final long OVERRUN_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final List<Callable<Void>> computeTasks = new ArrayList<>();
+    private final List<Callable<Void>> publishTasks = new ArrayList<>();
+    private final ExecutorService workers;
+    private final IPublishPosition publisher;
+    private final long intervalNanos;
+
+    private double dtSeconds;
+
+    private long ticks;
+    private long overruns;
+    private long maxTickNanos;
+    private long maxComputeNanos;
+    private long lastOverrunLogNanos;
+
+    TickEngine(List<VehicleSimulator> simulators, IPublishPosition publisher, int threads, long intervalMillis) {
+        this.publisher = publisher;
+        int partitions = Math.max(1, Math.min(threads, simulators.size()));
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+
+        for (int p = 0; p < partitions; p++) {
+            // Contiguous id ranges keep the partition layout independent of timing.
+            List<VehicleSimulator> partition = List.copyOf(simulators.subList(
+                    p * simulators.size() / partitions, (p + 1) * simulators.size() / partitions));
+            computeTasks.add(() -> {
+                for (VehicleSimulator simulator : partition) {
+                    simulator.advance(dtSeconds);
+                }
+                return null;
+            });
+            publishTasks.add(() -> {
+                for (VehicleSimulator simulator : partition) {
+                    simulator.publishPending();
+                }
+                return null;
+            });
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(partitions, r -> {
+            Thread t = new Thread(r, "rest-sim-worker-" + threadIndex.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Advances all vehicles by one tick and publishes their updates.
+     */
+    void tick(double dtSeconds) throws InterruptedException {
+        // Written before invokeAll(), which publishes it to the worker threads.
+        this.dtSeconds = dtSeconds;
+
+        long start = System.nanoTime();
+        runAll(computeTasks);
+        long computeNanos = System.nanoTime() - start;
+        runAll(publishTasks);
+        publisher.flush();
+        long tickNanos = System.nanoTime() - start;
+        PublisherMetrics.TICK.record(tickNanos);
+
+        ticks++;
+        maxTickNanos = Math.max(maxTickNanos, tickNanos);
+        maxComputeNanos = Math.max(maxComputeNanos, computeNanos);
+
+        if (tickNanos > intervalNanos) {
+            overruns++;
+            PublisherMetrics.TICK_OVERRUNS.inc();
+            long now = System.nanoTime();
+            if (now - lastOverrunLogNanos >= OVERRUN_LOG_INTERVAL_NANOS) {
+                lastOverrunLogNanos = now;
+                System.out.printf("Tick-Überlauf: %.1f ms (Intervall %d ms, davon Berechnung %.1f ms), bisher %d von %d Ticks%n",
+                        tickNanos / 1e6, TimeUnit.NANOSECONDS.toMillis(intervalNanos), computeNanos / 1e6, overruns, ticks);
+            }
+        }
+    }
+
+    String summary() {
+        return String.format("Ticks: %d, Überläufe: %d, max. Tick: %.1f ms, max. Berechnung: %.1f ms, Partitionen: %d",
+                ticks, overruns, maxTickNanos / 1e6, maxComputeNanos / 1e6, computeTasks.size());
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private void runAll(List<Callable<Void>> tasks) throws InterruptedException {
+        for (Future<Void> f : workers.invokeAll(tasks)) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                // One failing partition must not stop the others; report and continue with the next tick.
+                System.out.println("Simulation Fehler: " + e.getCause().getMessage());
+            }
+        }
+    }
+}
@@ -6,6 +6,9 @@ import java.util.SplittableRandom;
  * One simulated vehicle that moves from a random spawn position towards a fixed destination.
  *
  * <p>Movement model: every tick, move {@code speedMps * dtSeconds} meters along the bearing to the destination.</p>
+ *
+ * <p>A tick is split into a compute phase ({@link #advance(double)}, no I/O) and a publish phase
+ * ({@link #publishPending()}), so {@link TickEngine} can run the two phases separately.</p>
  */
 final class VehicleSimulator {
 
@@ -18,6 +21,13 @@ final class VehicleSimulator {
     private double lon;
     private double speedMps;
 
+    // Update staged by advance() and sent by publishPending().
+    private boolean hasPending;
+    private double pendingLat;
+    private double pendingLon;
+    private double pendingSpeed;
+    private double pendingDirection;
+
     VehicleSimulator(int id, SimulationConfig config, IPublishPosition publisher, long seed) {
         this.id = id;
         this.config = config;
@@ -33,11 +43,20 @@ final class VehicleSimulator {
 
     void publishInitial() {
         // Initial publish so the marker exists immediately before the first tick.
-        double direction = GeoUtil.bearingDegrees(lat, lon, config.destination.lat, config.destination.lon);
-        publisher.publishPosition(id, lat, lon, speedMps, direction);
+        stageInitial();
+        publishPending();
     }
 
     void tick(double dtSeconds) {
+        advance(dtSeconds);
+        publishPending();
+    }
+
+    /**
+     * Compute phase: moves the vehicle one step and stages the resulting update. Touches only this vehicle's state,
+     * so different vehicles can be advanced in parallel.
+     */
+    void advance(double dtSeconds) {
         double destLat = config.destination.lat;
         double destLon = config.destination.lon;
 
@@ -60,7 +79,31 @@ final class VehicleSimulator {
         lat = next.lat();
         lon = next.lon();
 
-        publisher.publishPosition(id, lat, lon, speedMps, direction);
+        stage(lat, lon, speedMps, direction);
+    }
+
+    /**
+     * Publish phase: sends the update staged by the last {@link #advance(double)} (if any).
+     */
+    void publishPending() {
+        if (!hasPending) {
+            return;
+        }
+        hasPending = false;
+        publisher.publishPosition(id, pendingLat, pendingLon, pendingSpeed, pendingDirection);
+    }
+
+    private void stageInitial() {
+        double direction = GeoUtil.bearingDegrees(lat, lon, config.destination.lat, config.destination.lon);
+        stage(lat, lon, speedMps, direction);
+    }
+
+    private void stage(double lat, double lon, double speed, double direction) {
+        hasPending = true;
+        pendingLat = lat;
+        pendingLon = lon;
+        pendingSpeed = speed;
+        pendingDirection = direction;
     }
 
     private void handleArrival() {
@@ -70,17 +113,17 @@ final class VehicleSimulator {
                 // Publish a final update at the destination, then do nothing on subsequent ticks.
                 lat = config.destination.lat;
                 lon = config.destination.lon;
-                publisher.publishPosition(id, lat, lon, 0.0, 0.0);
+                stage(lat, lon, 0.0, 0.0);
                 speedMps = 0.0;
             }
             case "respawn" -> {
                 // Pick a new spawn position and speed, then start a new trip to the same destination.
                 respawn();
-                publishInitial();
+                stageInitial();
             }
             default -> {
                 respawn();
-                publishInitial();
+                stageInitial();
             }
         }
     }
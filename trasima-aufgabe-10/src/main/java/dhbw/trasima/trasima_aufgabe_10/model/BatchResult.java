@@ -0,0 +1,23 @@
+package dhbw.trasima.trasima_aufgabe_10.model;
+
+/**
+ * JSON response of the batch upsert endpoint ({@code PUT /api/trasima/vehicles}).
+ *
+ * <p>Only ids are returned (no echoed states) to keep the response small for large batches.</p>
+ */
+public class BatchResult {
+
+    /** Ids that did not exist before and were created. */
+    public int[] created;
+    /** Ids that existed and were replaced. */
+    public int[] updated;
+
+    // Default constructor required by Jackson for JSON deserialization.
+    public BatchResult() {
+    }
+
+    public BatchResult(int[] created, int[] updated) {
+        this.created = created;
+        this.updated = updated;
+    }
+}
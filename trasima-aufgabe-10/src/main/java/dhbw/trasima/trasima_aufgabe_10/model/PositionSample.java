@@ -0,0 +1,28 @@
+package dhbw.trasima.trasima_aufgabe_10.model;
+
+/**
+ * One entry of a vehicle's position history ({@code GET /api/trasima/vehicles/{id}/history}).
+ *
+ * <p>Values come from the server's compressed history, so positions are rounded to 1e-7 degrees.</p>
+ */
+public class PositionSample {
+
+    /** Server time of the update in epoch milliseconds. */
+    public long timestamp;
+    public double lat;
+    public double lon;
+    public double speed;
+    public double direction;
+
+    // Default constructor required by Jackson for JSON deserialization.
+    public PositionSample() {
+    }
+
+    public PositionSample(long timestamp, double lat, double lon, double speed, double direction) {
+        this.timestamp = timestamp;
+        this.lat = lat;
+        this.lon = lon;
+        this.speed = speed;
+        this.direction = direction;
+    }
+}
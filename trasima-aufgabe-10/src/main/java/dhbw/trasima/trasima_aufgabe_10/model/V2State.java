@@ -3,7 +3,8 @@ package dhbw.trasima.trasima_aufgabe_10.model;
 /**
  * Simple JSON DTO representing the state of one simulated vehicle.
  *
- * <p>Fields are public so Jackson (Jersey's JSON binding) can serialize/deserialize without extra boilerplate.</p>
+ * <p>Fields are public so Jackson (Jersey's JSON binding) can serialize/deserialize without extra boilerplate.
+ * The REST server and client use the faster {@link V2StateJson} codec for this type.</p>
  */
 public class V2State {
 
@@ -0,0 +1,556 @@
+package dhbw.trasima.trasima_aufgabe_10.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Hand-written JSON codec for {@link V2State} and arrays of it, used on the hot paths instead of Jackson. It can
+ * also write {@link VehicleChanges} (output only).
+ *
+ * <p>Writing goes into a reusable {@link Buffer} (no Strings, no StringBuilder). Reading works directly on the raw
+ * UTF-8 bytes; field names are compared byte-wise and numbers are parsed without creating a String.</p>
+ *
+ * <p>Number format:</p>
+ * <ul>
+ *   <li>Doubles with {@code |v| < 1e9} are written with at most 9 decimal places (trailing zeros removed). For
+ *   coordinates in degrees this is below 0.1 mm, far finer than the simulation itself. Everything else (very large
+ *   values, NaN/Infinity) falls back to {@link Double#toString(double)}.</li>
+ *   <li>Decimals with at most 15 significant digits and a decimal exponent within ±22 are parsed exactly with one
+ *   double multiplication/division (both operands are exact, IEEE rounding does the rest). Longer numbers, e.g.
+ *   the 17 digits Jackson writes, fall back to {@link Double#parseDouble(String)}.</li>
+ * </ul>
+ *
+ * <p>Unknown fields are skipped, {@code null} leaves the field at 0. Field names containing escape sequences are
+ * treated as unknown.</p>
+ */
+public final class V2StateJson {
+
+    private static final byte[] ID = ascii("id");
+    private static final byte[] LAT = ascii("lat");
+    private static final byte[] LON = ascii("lon");
+    private static final byte[] SPEED = ascii("speed");
+    private static final byte[] DIRECTION = ascii("direction");
+
+    private static final byte[] KEY_ID = ascii("{\"id\":");
+    private static final byte[] KEY_LAT = ascii(",\"lat\":");
+    private static final byte[] KEY_LON = ascii(",\"lon\":");
+    private static final byte[] KEY_SPEED = ascii(",\"speed\":");
+    private static final byte[] KEY_DIRECTION = ascii(",\"direction\":");
+    private static final byte[] KEY_VERSION = ascii("{\"version\":");
+    private static final byte[] KEY_FULL_CHANGED = ascii(",\"full\":true,\"changed\":");
+    private static final byte[] KEY_DELTA_CHANGED = ascii(",\"full\":false,\"changed\":");
+    private static final byte[] KEY_DELETED = ascii(",\"deleted\":[");
+
+    private static final int FRACTION_DIGITS = 9;
+    private static final double FRACTION_SCALE = 1e9;
+    private static final long FRACTION_SCALE_LONG = 1_000_000_000L;
+
+    // Exactly representable powers of ten (10^22 is the largest one).
+    private static final double[] POW10 = new double[23];
+
+    static {
+        double p = 1.0;
+        for (int i = 0; i < POW10.length; i++) {
+            POW10[i] = p;
+            p *= 10.0;
+        }
+    }
+
+    private V2StateJson() {
+    }
+
+    /**
+     * Parses one JSON object. Returns {@code null} for empty input or the literal {@code null}.
+     *
+     * @throws IllegalArgumentException if the input is not valid JSON for a {@link V2State}
+     */
+    public static V2State readState(byte[] bytes, int offset, int length) {
+        Parser p = new Parser(bytes, offset, offset + length);
+        p.skipWhitespace();
+        if (p.atEnd() || p.consumeNull()) {
+            p.expectEnd();
+            return null;
+        }
+        V2State state = p.readObject();
+        p.expectEnd();
+        return state;
+    }
+
+    /**
+     * Parses a JSON array of objects. Returns {@code null} for empty input or the literal {@code null}; array
+     * elements may be {@code null}.
+     *
+     * @throws IllegalArgumentException if the input is not a valid JSON array of {@link V2State}s
+     */
+    public static List<V2State> readList(byte[] bytes, int offset, int length) {
+        Parser p = new Parser(bytes, offset, offset + length);
+        p.skipWhitespace();
+        if (p.atEnd() || p.consumeNull()) {
+            p.expectEnd();
+            return null;
+        }
+        List<V2State> states = new ArrayList<>();
+        p.expect('[');
+        p.skipWhitespace();
+        if (p.peek() == ']') {
+            p.pos++;
+        } else {
+            while (true) {
+                p.skipWhitespace();
+                states.add(p.consumeNull() ? null : p.readObject());
+                p.skipWhitespace();
+                int c = p.next();
+                if (c == ']') {
+                    break;
+                }
+                if (c != ',') {
+                    throw p.error("',' or ']' expected");
+                }
+            }
+        }
+        p.expectEnd();
+        return states;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Growable byte buffer for JSON output. Meant to be reused (one per thread): {@link #reset()} keeps the array.
+     */
+    public static final class Buffer {
+
+        private byte[] bytes;
+        private int length;
+
+        public Buffer() {
+            this(256);
+        }
+
+        public Buffer(int initialCapacity) {
+            this.bytes = new byte[Math.max(16, initialCapacity)];
+        }
+
+        public Buffer reset() {
+            length = 0;
+            return this;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /** Backing array; valid up to {@link #length()} until the next write. */
+        public byte[] array() {
+            return bytes;
+        }
+
+        public int capacity() {
+            return bytes.length;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+        }
+
+        /**
+         * Appends the whole remaining stream (used for request bodies).
+         */
+        public Buffer readFrom(InputStream in) throws IOException {
+            while (true) {
+                ensure(4096);
+                int n = in.read(bytes, length, bytes.length - length);
+                if (n < 0) {
+                    return this;
+                }
+                length += n;
+            }
+        }
+
+        public Buffer writeState(V2State state) {
+            if (state == null) {
+                return writeNull();
+            }
+            return writeState(state.id, state.lat, state.lon, state.speed, state.direction);
+        }
+
+        public Buffer writeState(int id, double lat, double lon, double speed, double direction) {
+            // Upper bound: 5 keys + 4 doubles (max. 24 chars each) + int.
+            ensure(160);
+            writeRaw(KEY_ID);
+            writeLong(id);
+            writeRaw(KEY_LAT);
+            writeDouble(lat);
+            writeRaw(KEY_LON);
+            writeDouble(lon);
+            writeRaw(KEY_SPEED);
+            writeDouble(speed);
+            writeRaw(KEY_DIRECTION);
+            writeDouble(direction);
+            bytes[length++] = '}';
+            return this;
+        }
+
+        public Buffer writeList(Collection<V2State> states) {
+            writeByte('[');
+            boolean first = true;
+            for (V2State state : states) {
+                if (!first) {
+                    writeByte(',');
+                }
+                first = false;
+                writeState(state);
+            }
+            return writeByte(']');
+        }
+
+        /** Writes a {@link VehicleChanges} object (delta listing and live feed). */
+        public Buffer writeChanges(VehicleChanges changes) {
+            writeRaw(KEY_VERSION);
+            writeLong(changes.version);
+            writeRaw(changes.full ? KEY_FULL_CHANGED : KEY_DELTA_CHANGED);
+            writeList(changes.changed);
+            writeRaw(KEY_DELETED);
+            for (int i = 0; i < changes.deleted.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(changes.deleted[i]);
+            }
+            writeByte(']');
+            return writeByte('}');
+        }
+
+        public Buffer writeNull() {
+            ensure(4);
+            bytes[length++] = 'n';
+            bytes[length++] = 'u';
+            bytes[length++] = 'l';
+            bytes[length++] = 'l';
+            return this;
+        }
+
+        public Buffer writeByte(int b) {
+            ensure(1);
+            bytes[length++] = (byte) b;
+            return this;
+        }
+
+        /** Appends pre-encoded JSON (e.g. an object produced earlier with {@link #toByteArray()}). */
+        public Buffer writeRaw(byte[] json) {
+            ensure(json.length);
+            System.arraycopy(json, 0, bytes, length, json.length);
+            length += json.length;
+            return this;
+        }
+
+        private void writeDouble(double v) {
+            if (!(Math.abs(v) < FRACTION_SCALE)) {
+                // Rare: large values and NaN/Infinity keep the JDK representation.
+                String s = Double.toString(v);
+                ensure(s.length());
+                for (int i = 0; i < s.length(); i++) {
+                    bytes[length++] = (byte) s.charAt(i);
+                }
+                return;
+            }
+            long scaled = Math.round(v * FRACTION_SCALE);
+            if (scaled < 0) {
+                bytes[length++] = '-';
+                scaled = -scaled;
+            }
+            writeLong(scaled / FRACTION_SCALE_LONG);
+            bytes[length++] = '.';
+
+            long fraction = scaled % FRACTION_SCALE_LONG;
+            int digits = FRACTION_DIGITS;
+            // Keep at least one digit ("1.0"), drop the remaining trailing zeros.
+            while (digits > 1 && fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            length += digits;
+        }
+
+        private void writeLong(long v) {
+            ensure(20);
+            if (v < 0) {
+                bytes[length++] = '-';
+                v = -v;
+            }
+            int digits = 1;
+            for (long t = v; t >= 10; t /= 10) {
+                digits++;
+            }
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + v % 10);
+                v /= 10;
+            }
+            length += digits;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+
+    /**
+     * Cursor over the input bytes. Cheap to create; one instance per read call.
+     */
+    private static final class Parser {
+
+        private final byte[] b;
+        private final int end;
+        private int pos;
+
+        Parser(byte[] b, int pos, int end) {
+            this.b = b;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        V2State readObject() {
+            V2State state = new V2State();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return state;
+            }
+            while (true) {
+                skipWhitespace();
+                int keyStart = pos + 1;
+                boolean plain = skipString();
+                int keyEnd = pos - 1;
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+
+                if (plain && is(ID, keyStart, keyEnd)) {
+                    if (!consumeNull()) {
+                        state.id = (int) readNumber();
+                    }
+                } else if (plain && is(LAT, keyStart, keyEnd)) {
+                    state.lat = readDoubleOrNull();
+                } else if (plain && is(LON, keyStart, keyEnd)) {
+                    state.lon = readDoubleOrNull();
+                } else if (plain && is(SPEED, keyStart, keyEnd)) {
+                    state.speed = readDoubleOrNull();
+                } else if (plain && is(DIRECTION, keyStart, keyEnd)) {
+                    state.direction = readDoubleOrNull();
+                } else {
+                    skipValue();
+                }
+
+                skipWhitespace();
+                int c = next();
+                if (c == '}') {
+                    return state;
+                }
+                if (c != ',') {
+                    throw error("',' or '}' expected");
+                }
+            }
+        }
+
+        private double readDoubleOrNull() {
+            return consumeNull() ? 0.0 : readNumber();
+        }
+
+        private double readNumber() {
+            int start = pos;
+            boolean negative = false;
+            if (peek() == '-') {
+                negative = true;
+                pos++;
+            }
+            long mantissa = 0;
+            int significant = 0;
+            int exponent = 0;
+            int digits = 0;
+
+            while (pos < end && isDigit(b[pos])) {
+                mantissa = accumulate(mantissa, b[pos]);
+                if (mantissa != 0) {
+                    significant++;
+                }
+                pos++;
+                digits++;
+            }
+            if (pos < end && b[pos] == '.') {
+                pos++;
+                while (pos < end && isDigit(b[pos])) {
+                    mantissa = accumulate(mantissa, b[pos]);
+                    if (mantissa != 0) {
+                        significant++;
+                    }
+                    exponent--;
+                    pos++;
+                    digits++;
+                }
+            }
+            if (digits == 0) {
+                throw error("number expected");
+            }
+            if (pos < end && (b[pos] == 'e' || b[pos] == 'E')) {
+                pos++;
+                boolean negativeExp = false;
+                if (pos < end && (b[pos] == '+' || b[pos] == '-')) {
+                    negativeExp = b[pos] == '-';
+                    pos++;
+                }
+                int exp = 0;
+                int expDigits = 0;
+                while (pos < end && isDigit(b[pos])) {
+                    // Clamp: such exponents are handled by the fallback anyway.
+                    exp = Math.min(exp * 10 + (b[pos] - '0'), 10_000);
+                    pos++;
+                    expDigits++;
+                }
+                if (expDigits == 0) {
+                    throw error("exponent expected");
+                }
+                exponent += negativeExp ? -exp : exp;
+            }
+
+            if (significant <= 15 && exponent >= -22 && exponent <= 22) {
+                // Mantissa < 2^53 and 10^|exponent| are both exact, so one correctly rounded operation is exact.
+                double value = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+                return negative ? -value : value;
+            }
+            return Double.parseDouble(new String(b, start, pos - start, StandardCharsets.US_ASCII));
+        }
+
+        private static long accumulate(long mantissa, byte digit) {
+            // Overflow beyond 18 digits does not matter: those numbers take the fallback path.
+            return mantissa * 10 + (digit - '0');
+        }
+
+        /**
+         * Skips a string token; returns false if it contained escape sequences.
+         */
+        private boolean skipString() {
+            expect('"');
+            boolean plain = true;
+            while (true) {
+                int c = next();
+                if (c == '"') {
+                    return plain;
+                }
+                if (c == '\\') {
+                    plain = false;
+                    next();
+                }
+            }
+        }
+
+        private void skipValue() {
+            int c = peek();
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                // Only brackets outside of strings count for the nesting depth.
+                int depth = 0;
+                do {
+                    c = peek();
+                    if (c == '"') {
+                        skipString();
+                        continue;
+                    }
+                    if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                    }
+                    pos++;
+                } while (depth > 0);
+            } else if (c == '-' || isDigit(c)) {
+                readNumber();
+            } else if (!consumeLiteral("null") && !consumeLiteral("true") && !consumeLiteral("false")) {
+                throw error("value expected");
+            }
+        }
+
+        boolean consumeNull() {
+            return consumeLiteral("null");
+        }
+
+        private boolean consumeLiteral(String literal) {
+            if (end - pos < literal.length()) {
+                return false;
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                if (b[pos + i] != literal.charAt(i)) {
+                    return false;
+                }
+            }
+            pos += literal.length();
+            return true;
+        }
+
+        private boolean is(byte[] key, int from, int to) {
+            return Arrays.equals(b, from, to, key, 0, key.length);
+        }
+
+        void skipWhitespace() {
+            while (pos < end && (b[pos] == ' ' || b[pos] == '\n' || b[pos] == '\r' || b[pos] == '\t')) {
+                pos++;
+            }
+        }
+
+        boolean atEnd() {
+            return pos >= end;
+        }
+
+        void expectEnd() {
+            skipWhitespace();
+            if (pos < end) {
+                throw error("end of input expected");
+            }
+        }
+
+        void expect(char c) {
+            if (next() != c) {
+                throw error("'" + c + "' expected");
+            }
+        }
+
+        int peek() {
+            if (pos >= end) {
+                throw error("unexpected end of input");
+            }
+            return b[pos];
+        }
+
+        int next() {
+            int c = peek();
+            pos++;
+            return c;
+        }
+
+        private static boolean isDigit(int c) {
+            return c >= '0' && c <= '9';
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid V2State JSON at offset " + pos + ": " + message);
+        }
+    }
+}
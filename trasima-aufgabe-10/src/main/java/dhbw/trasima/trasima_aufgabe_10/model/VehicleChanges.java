@@ -0,0 +1,33 @@
+package dhbw.trasima.trasima_aufgabe_10.model;
+
+import java.util.List;
+
+/**
+ * JSON response of {@code GET /api/trasima/vehicles?since=<version>}.
+ *
+ * <p>Pass {@link #version} as {@code since} in the next poll. If {@link #full} is set, the server could not
+ * compute a delta (version too old or from before a restart): {@link #changed} then holds every vehicle and the
+ * client should drop everything it did not receive.</p>
+ */
+public class VehicleChanges {
+
+    /** Store version these changes lead up to. */
+    public long version;
+    /** True if {@link #changed} is a complete listing instead of a delta. */
+    public boolean full;
+    /** Vehicles created or updated since the requested version (current state). */
+    public List<V2State> changed;
+    /** Ids deleted since the requested version. */
+    public int[] deleted;
+
+    // Default constructor required by Jackson for JSON deserialization.
+    public VehicleChanges() {
+    }
+
+    public VehicleChanges(long version, boolean full, List<V2State> changed, int[] deleted) {
+        this.version = version;
+        this.full = full;
+        this.changed = changed;
+        this.deleted = deleted;
+    }
+}
@@ -0,0 +1,109 @@
+package dhbw.trasima.trasima_aufgabe_10.server;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global version counter plus a bounded log of which id changed at which version; backs ETags and
+ * {@code ?since=} deltas of {@link VehicleResource#list}.
+ *
+ * <p>Every write or delete takes the next version and stores its id in a ring of {@value #CAPACITY} slots
+ * (12 MiB), so "what changed since v" costs time proportional to the number of changes, not to the fleet size.
+ * Deltas older than the ring are answered with {@code null} (the caller falls back to a full listing).</p>
+ *
+ * <p>Versions start at the server's start time in microseconds, so a version handed out before a restart never
+ * matches a slot of this process and forces a full listing instead of a wrong delta. They stay below 2^53 and
+ * survive a round trip through a JavaScript number.</p>
+ *
+ * <p>Writers call {@link #changed} <em>after</em> their write is visible. A version only counts as published
+ * once it and every lower version are in the ring, which means a reader never hands out a version whose state
+ * it could not see yet.</p>
+ */
+final class ChangeFeed {
+
+    static final int CAPACITY = 1 << 20;
+    private static final int MASK = CAPACITY - 1;
+
+    private static final VarHandle VERSIONS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int[] ids = new int[CAPACITY];
+    private final long[] versions = new long[CAPACITY];
+    private final AtomicLong next;
+    // Highest version known to be published together with all lower ones; only grows.
+    private final AtomicLong published;
+
+    ChangeFeed() {
+        long start = System.currentTimeMillis() * 1000;
+        this.next = new AtomicLong(start);
+        this.published = new AtomicLong(start);
+    }
+
+    /** Records that {@code id} was created, updated or deleted. */
+    void changed(int id) {
+        long version = next.incrementAndGet();
+        int slot = (int) (version & MASK);
+        // Negative while the slot is being rewritten, so readers of the previous lap notice.
+        VERSIONS.setOpaque(versions, slot, -version);
+        VarHandle.storeStoreFence();
+        ids[slot] = id;
+        VERSIONS.setRelease(versions, slot, version);
+    }
+
+    /** Current version; equal versions mean equal store contents. */
+    long version() {
+        long known = published.get();
+        long end = next.get();
+        long v = known;
+        while (v < end) {
+            long slotVersion = (long) VERSIONS.getAcquire(versions, (int) ((v + 1) & MASK));
+            // Lower: not written yet. Higher: already overwritten by a later lap, so it was published.
+            if (slotVersion < v + 1) {
+                break;
+            }
+            v++;
+        }
+        if (v > known) {
+            published.accumulateAndGet(v, Math::max);
+        }
+        return v;
+    }
+
+    /**
+     * Distinct ids (sorted) changed after {@code since}, up to {@link Changes#version}.
+     *
+     * @return null if {@code since} is outside the retained window (too old, or from before a restart)
+     */
+    Changes since(long since) {
+        long end = version();
+        if (since > end || end - since > CAPACITY) {
+            return null;
+        }
+        int[] changed = new int[(int) (end - since)];
+        for (long v = since + 1; v <= end; v++) {
+            int slot = (int) (v & MASK);
+            if ((long) VERSIONS.getAcquire(versions, slot) != v) {
+                return null;
+            }
+            int id = ids[slot];
+            // Re-check after reading the id: a writer one lap ahead may have replaced the slot meanwhile.
+            VarHandle.loadLoadFence();
+            if ((long) VERSIONS.getVolatile(versions, slot) != v) {
+                return null;
+            }
+            changed[(int) (v - since - 1)] = id;
+        }
+        Arrays.sort(changed);
+        int distinct = 0;
+        for (int i = 0; i < changed.length; i++) {
+            if (i == 0 || changed[i] != changed[i - 1]) {
+                changed[distinct++] = changed[i];
+            }
+        }
+        return new Changes(end, Arrays.copyOf(changed, distinct));
+    }
+
+    record Changes(long version, int[] ids) {
+    }
+}
@@ -0,0 +1,136 @@
+package dhbw.trasima.trasima_aufgabe_10.server;
+
+import dhbw.trasima.trasima_aufgabe_10.model.V2State;
+import dhbw.trasima.trasima_bis_5.history.PositionHistory;
+import dhbw.trasima.trasima_bis_5.persistence.StatePersistence;
+import dhbw.trasima.trasima_bis_5.tcp.ColumnarV2Store;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link VehicleStore} on top of {@link ColumnarV2Store}: no boxed key and no stored {@link V2State} per vehicle.
+ *
+ * <p>lat/lon are kept in the x/y columns. Writes copy the request's fields into the columns in place, so the
+ * deserialized request objects become garbage right away instead of living in the old generation. {@link V2State}
+ * objects are only created for responses. The {@link SpatialGrid} and the history are updated from the store's
+ * position listener, inside the per-id write section, so both follow the same per-id order as the columns (the
+ * history with the same timestamp as the stored state). The change feed is told right after the write, once it is
+ * visible.</p>
+ *
+ * <p>On start-up of the durable variant the recovered writes go through the same listener, so the history is
+ * rebuilt from the log as far as it still holds them.</p>
+ *
+ * <p>With a WAL directory the store is durable ({@link StatePersistence}): state is recovered on start-up and a
+ * write only returns once it is on disk (group commit).</p>
+ */
+final class ColumnarVehicleStore extends VehicleStore {
+
+    private final ColumnarV2Store store;
+    private final StatePersistence persistence;
+
+    ColumnarVehicleStore(PositionHistory history) {
+        super(history);
+        this.store = new ColumnarV2Store(new Listener());
+        this.persistence = null;
+    }
+
+    /** Durable variant; recovers the vehicles (and the grid) from {@code walDir}. */
+    ColumnarVehicleStore(PositionHistory history, Path walDir) throws IOException {
+        super(history);
+        this.persistence = StatePersistence.open(walDir, new StatePersistence.Options(), new Listener());
+        this.store = persistence.store();
+    }
+
+    @Override
+    List<V2State> list() {
+        List<V2State> result = new ArrayList<>(store.size());
+        store.forEach((id, lat, lon, speed, direction, timestamp) ->
+                result.add(new V2State(id, lat, lon, speed, direction)));
+        return result;
+    }
+
+    @Override
+    V2State get(int id) {
+        V2State[] result = new V2State[1];
+        store.read(id, (i, lat, lon, speed, direction, timestamp) ->
+                result[0] = new V2State(i, lat, lon, speed, direction));
+        return result[0];
+    }
+
+    @Override
+    boolean create(V2State state) {
+        long now = System.currentTimeMillis();
+        boolean created = store.create(state.id, state.lat, state.lon, state.speed, state.direction, now);
+        if (created) {
+            changes.changed(state.id);
+        }
+        return created;
+    }
+
+    @Override
+    boolean update(V2State state) {
+        long now = System.currentTimeMillis();
+        boolean updated = store.update(state.id, state.lat, state.lon, state.speed, state.direction, now);
+        if (updated) {
+            changes.changed(state.id);
+        }
+        return updated;
+    }
+
+    @Override
+    boolean put(V2State state) {
+        long now = System.currentTimeMillis();
+        boolean existed = store.put(state.id, state.lat, state.lon, state.speed, state.direction, now);
+        changes.changed(state.id);
+        return existed;
+    }
+
+    @Override
+    boolean delete(int id) {
+        boolean deleted = store.delete(id);
+        if (deleted) {
+            changes.changed(id);
+        }
+        return deleted;
+    }
+
+    @Override
+    int size() {
+        return store.size();
+    }
+
+    @Override
+    void close() {
+        if (persistence != null) {
+            try {
+                persistence.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Grid and history updates, called by {@link ColumnarV2Store} inside the per-id write section.
+     */
+    private final class Listener implements ColumnarV2Store.PositionListener {
+
+        @Override
+        public void moved(int id, boolean existed, double oldX, double oldY, boolean exists, double x, double y) {
+            grid.move(id, existed, oldX, oldY, exists, x, y);
+            if (!exists) {
+                history.remove(id);
+            }
+        }
+
+        @Override
+        public void stored(int id, boolean existed, double oldX, double oldY, double x, double y, double speed,
+                           double direction, long timestamp) {
+            grid.move(id, existed, oldX, oldY, true, x, y);
+            history.record(id, timestamp, x, y, speed, direction);
+        }
+    }
+}
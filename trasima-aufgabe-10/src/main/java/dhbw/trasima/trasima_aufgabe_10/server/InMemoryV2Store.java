@@ -1,6 +1,7 @@
 package dhbw.trasima.trasima_aufgabe_10.server;
 
 import dhbw.trasima.trasima_aufgabe_10.model.V2State;
+import dhbw.trasima.trasima_bis_5.history.PositionHistory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -11,33 +12,98 @@ import java.util.concurrent.ConcurrentMap;
  *
  * <p>This is intentionally minimal: it backs the REST endpoints and supports concurrent updates from multiple
  * simulation threads.</p>
+ *
+ * <p>Each write runs inside {@code ConcurrentHashMap#compute} for its id, which serializes map,
+ * {@link SpatialGrid} and history updates per vehicle.</p>
  */
-final class InMemoryV2Store {
+final class InMemoryV2Store extends VehicleStore {
 
     // Concurrent map so multiple requests/threads can access/update safely.
     private final ConcurrentMap<Integer, V2State> store = new ConcurrentHashMap<>();
 
+    InMemoryV2Store(PositionHistory history) {
+        super(history);
+    }
+
+    @Override
     List<V2State> list() {
         // Snapshot: callers get a copy, so they cannot modify the internal map via the returned list.
         return new ArrayList<>(store.values());
     }
 
+    @Override
     V2State get(int id) {
         return store.get(id);
     }
 
+    @Override
     boolean create(V2State state) {
         // Only create if absent (returns true if the id did not exist).
-        return store.putIfAbsent(state.id, state) == null;
+        boolean[] created = new boolean[1];
+        store.compute(state.id, (id, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            grid.move(id, null, state);
+            record(state);
+            created[0] = true;
+            return state;
+        });
+        if (created[0]) {
+            changes.changed(state.id);
+        }
+        return created[0];
     }
 
+    @Override
     boolean update(V2State state) {
         // Only update if present (returns true if an entry existed).
-        return store.replace(state.id, state) != null;
+        boolean updated = store.computeIfPresent(state.id, (id, existing) -> {
+            grid.move(id, existing, state);
+            record(state);
+            return state;
+        }) != null;
+        if (updated) {
+            changes.changed(state.id);
+        }
+        return updated;
+    }
+
+    @Override
+    boolean put(V2State state) {
+        boolean[] existed = new boolean[1];
+        store.compute(state.id, (id, existing) -> {
+            grid.move(id, existing, state);
+            record(state);
+            existed[0] = existing != null;
+            return state;
+        });
+        changes.changed(state.id);
+        return existed[0];
     }
 
+    @Override
     boolean delete(int id) {
         // Returns true if an entry existed and was removed.
-        return store.remove(id) != null;
+        boolean[] deleted = new boolean[1];
+        store.computeIfPresent(id, (key, existing) -> {
+            grid.move(key, existing, null);
+            history.remove(key);
+            deleted[0] = true;
+            return null;
+        });
+        if (deleted[0]) {
+            changes.changed(id);
+        }
+        return deleted[0];
+    }
+
+    @Override
+    int size() {
+        return store.size();
+    }
+
+    private void record(V2State state) {
+        history.record(state.id, System.currentTimeMillis(), state.lat, state.lon, state.speed, state.direction);
     }
 }
@@ -0,0 +1,26 @@
+package dhbw.trasima.trasima_aufgabe_10.server;
+
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code GET /metrics}: the process-wide {@link MetricsRegistry} in the Prometheus text format.
+ *
+ * <p>Mounted next to Jersey rather than as a resource, so scrapes do not show up in the request metrics.</p>
+ */
+final class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        byte[] body = MetricsRegistry.global().scrape().getBytes(StandardCharsets.UTF_8);
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,49 @@
+package dhbw.trasima.trasima_aufgabe_10.server;
+
+import dhbw.trasima.trasima_bis_5.metrics.LatencyHistogram;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the latency of every JAX-RS request per endpoint, from the start of request filtering until the response
+ * headers are ready, in {@code trasima_request_duration_seconds{transport="rest",endpoint=...}}.
+ *
+ * <p>The endpoint label is the resource method name ({@code list}, {@code upsertAll}, {@code update}, ...), so
+ * the number of series stays fixed regardless of ids in the URL. Requests that match no resource method count as
+ * {@code unmatched}. For {@code stream} the time is until the SSE connection is accepted, not its lifetime.</p>
+ */
+public final class RequestMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START = RequestMetricsFilter.class.getName() + ".start";
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object start = request.getProperty(START);
+        if (start == null) {
+            return;
+        }
+        Method method = resourceInfo.getResourceMethod();
+        String endpoint = method == null ? "unmatched" : method.getName();
+        latencies.computeIfAbsent(endpoint, e -> MetricsRegistry.global().histogram(
+                "trasima_request_duration_seconds", "Bearbeitungszeit einer Anfrage im Server",
+                "transport", "rest", "endpoint", e)).recordSince((Long) start);
+    }
+}
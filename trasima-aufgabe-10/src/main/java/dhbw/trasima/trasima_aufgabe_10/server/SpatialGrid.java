@@ -0,0 +1,102 @@
+package dhbw.trasima.trasima_aufgabe_10.server;
+
+import dhbw.trasima.trasima_aufgabe_10.model.V2State;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform lat/lon grid that maps cells to the ids of the vehicles inside them.
+ *
+ * <p>Cells are {@value #CELL_DEGREES}° wide (about 1.1 km north-south; city scale). Only non-empty cells exist, so
+ * memory grows with the fleet, not with the covered area.</p>
+ *
+ * <p>Thread-safety: every cell is updated atomically via {@link ConcurrentMap#compute}. {@link #move} for one id
+ * must not run concurrently with another {@code move} for the same id; the {@link VehicleStore} implementations
+ * guarantee that by calling it inside their per-id write section. Readers may briefly miss a vehicle that is
+ * changing cells (it is removed from the old cell before it is added to the new one), but never see it twice.</p>
+ */
+final class SpatialGrid {
+
+    static final double CELL_DEGREES = 0.01;
+
+    private final ConcurrentMap<Long, Set<Integer>> cells = new ConcurrentHashMap<>();
+
+    /**
+     * Moves an id from the cell of {@code previous} to the cell of {@code current}; either may be {@code null}
+     * (create / delete).
+     */
+    void move(int id, V2State previous, V2State current) {
+        move(id, previous != null, previous == null ? 0.0 : previous.lat, previous == null ? 0.0 : previous.lon,
+                current != null, current == null ? 0.0 : current.lat, current == null ? 0.0 : current.lon);
+    }
+
+    /**
+     * Same as {@link #move(int, V2State, V2State)} with plain coordinates (matches
+     * {@code ColumnarV2Store.PositionListener}).
+     */
+    void move(int id, boolean existed, double oldLat, double oldLon, boolean exists, double lat, double lon) {
+        long from = cellOf(oldLat, oldLon);
+        long to = cellOf(lat, lon);
+        if (existed && exists && from == to) {
+            // Most updates stay in the same cell: nothing to do.
+            return;
+        }
+        if (existed) {
+            cells.computeIfPresent(from, (cell, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if (exists) {
+            cells.compute(to, (cell, ids) -> {
+                Set<Integer> result = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                result.add(id);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * Number of cells covering the box; lets callers decide whether a full scan is cheaper.
+     */
+    static long cellCount(double minLat, double minLon, double maxLat, double maxLon) {
+        long rows = index(maxLat) - index(minLat) + 1;
+        long cols = index(maxLon) - index(minLon) + 1;
+        return rows * cols;
+    }
+
+    /**
+     * Calls {@code action} for every id in a cell touching the box. Candidates still have to be checked against
+     * their exact position.
+     */
+    void forEachCandidate(double minLat, double minLon, double maxLat, double maxLon, IntConsumer action) {
+        int fromRow = index(minLat);
+        int toRow = index(maxLat);
+        int fromCol = index(minLon);
+        int toCol = index(maxLon);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int col = fromCol; col <= toCol; col++) {
+                Set<Integer> ids = cells.get(key(row, col));
+                if (ids != null) {
+                    for (Integer id : ids) {
+                        action.accept(id);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long cellOf(double lat, double lon) {
+        return key(index(lat), index(lon));
+    }
+
+    private static int index(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
@@ -1,5 +1,8 @@
 package dhbw.trasima.trasima_aufgabe_10.server;
 
+import dhbw.trasima.trasima_bis_5.history.PositionHistory;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+import java.nio.file.Path;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
@@ -15,18 +18,54 @@ import org.glassfish.jersey.servlet.ServletContainer;
  * <p>CLI args:</p>
  * <ul>
  *   <li>{@code --httpPort <port>} (default: {@code 8080})</li>
+ *   <li>{@code --store map|columnar} (default: {@code map}); {@code columnar} keeps vehicle states in primitive
+ *   columns ({@link ColumnarVehicleStore})</li>
+ *   <li>{@code --wal <dir>}: durable columnar store with a write-ahead log and snapshots in {@code dir}; the state
+ *   is recovered on start-up (implies {@code --store columnar})</li>
+ *   <li>{@code --history-kb <n>} position history per vehicle in KiB (default: {@code 4}, about five minutes at
+ *   one update per second; {@code 0} disables it) and {@code --history-mb <n>} cap for all vehicles together
+ *   (default: {@code 64})</li>
+ *   <li>{@code --sse-interval-ms <n>} tick of the live feed {@code /vehicles/stream} (default: {@code 250}) and
+ *   {@code --sse-queue <n>} events buffered per slow client before the oldest is dropped (default: {@code 16})</li>
  * </ul>
+ *
+ * <p>Prometheus metrics (request latency per endpoint, accepted updates, store size) are served at
+ * {@code /metrics} on the same port.</p>
  */
 public final class TrasimaRestServer {
 
     public static void main(String[] args) throws Exception {
         // Parse CLI args (simple key/value parsing; no external library).
         int httpPort = intArg(args, "--httpPort", 8080);
+        PositionHistory.Options historyOptions = new PositionHistory.Options();
+        historyOptions.bytesPerVehicle = intArg(args, "--history-kb", 4) * 1024;
+        historyOptions.maxBytes = intArg(args, "--history-mb", 64) * 1024L * 1024L;
+        PositionHistory history = new PositionHistory(historyOptions);
+
+        String walDir = stringArg(args, "--wal", null);
+        VehicleStore store;
+        if (walDir != null) {
+            store = new ColumnarVehicleStore(history, Path.of(walDir));
+        } else if ("columnar".equals(stringArg(args, "--store", "map"))) {
+            store = new ColumnarVehicleStore(history);
+        } else {
+            store = new InMemoryV2Store(history);
+        }
+
+        MetricsRegistry.global().gauge("trasima_store_vehicles", "Fahrzeuge im Speicher", store::size,
+                "transport", "rest");
+
+        VehicleFeed feed = new VehicleFeed(store, intArg(args, "--sse-interval-ms", 250), intArg(args, "--sse-queue", 16));
 
         // Jersey resource configuration: register our resource class and JSON (Jackson) support.
         ResourceConfig config = new ResourceConfig();
-        config.register(VehicleResource.class);
+        config.register(new VehicleResource(store, feed));
+        // V2State bodies use the hand-written codec; Jackson handles all other types.
+        config.register(V2StateJsonProviders.Single.class);
+        config.register(V2StateJsonProviders.ListOf.class);
+        config.register(V2StateJsonProviders.Changes.class);
         config.register(JacksonFeature.class);
+        config.register(RequestMetricsFilter.class);
 
         // Jetty server bound to the chosen port.
         Server server = new Server(httpPort);
@@ -39,11 +78,23 @@ public final class TrasimaRestServer {
         ServletHolder servlet = new ServletHolder(new ServletContainer(config));
         servlet.setInitOrder(0);
         context.addServlet(servlet, "/api/*");
+        context.addServlet(new ServletHolder(new MetricsServlet()), "/metrics");
 
         // Start server and block the main thread.
         server.setHandler(context);
+        // Stop accepting requests before the log is closed (Ctrl+C).
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                feed.close();
+                server.stop();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            store.close();
+        }));
         server.start();
         System.out.println("REST Server: http://localhost:" + httpPort + "/api/trasima/vehicles");
+        System.out.println("Metrics: http://localhost:" + httpPort + "/metrics");
         server.join();
     }
 
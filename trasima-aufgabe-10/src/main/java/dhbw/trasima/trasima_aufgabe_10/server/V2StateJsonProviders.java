@@ -0,0 +1,164 @@
+package dhbw.trasima.trasima_aufgabe_10.server;
+
+import dhbw.trasima.trasima_aufgabe_10.model.V2State;
+import dhbw.trasima.trasima_aufgabe_10.model.V2StateJson;
+import dhbw.trasima.trasima_aufgabe_10.model.VehicleChanges;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * JAX-RS providers that (de)serialize {@link V2State} and {@code List<V2State>} (and write {@link VehicleChanges})
+ * with {@link V2StateJson} instead of Jackson. Every other type (e.g. {@code BatchResult}, error strings) still goes
+ * through {@code JacksonFeature}.
+ *
+ * <p>Jersey prefers these providers because their declared types are closer to the entity type than Jackson's
+ * {@code Object}. Request and response bodies are buffered in one byte array per thread, which is kept between
+ * requests unless it grew beyond {@value #MAX_RETAINED_BYTES} bytes.</p>
+ */
+final class V2StateJsonProviders {
+
+    private static final int MAX_RETAINED_BYTES = 1 << 20;
+
+    private static final ThreadLocal<V2StateJson.Buffer> BUFFERS = ThreadLocal.withInitial(V2StateJson.Buffer::new);
+
+    private V2StateJsonProviders() {
+    }
+
+    /** Single vehicle bodies ({@code GET/POST/PUT /vehicles/{id}}). */
+    @Provider
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public static final class Single implements MessageBodyReader<V2State>, MessageBodyWriter<V2State> {
+
+        @Override
+        public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return type == V2State.class;
+        }
+
+        @Override
+        public V2State readFrom(Class<V2State> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                                MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+            V2StateJson.Buffer buffer = readBody(entityStream);
+            try {
+                return V2StateJson.readState(buffer.array(), 0, buffer.length());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage(), e);
+            } finally {
+                release(buffer);
+            }
+        }
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return type == V2State.class;
+        }
+
+        @Override
+        public void writeTo(V2State state, Class<?> type, Type genericType, Annotation[] annotations,
+                            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+                throws IOException {
+            V2StateJson.Buffer buffer = BUFFERS.get().reset();
+            try {
+                buffer.writeState(state).writeTo(entityStream);
+            } finally {
+                release(buffer);
+            }
+        }
+    }
+
+    /** Collection bodies ({@code GET/PUT /vehicles}). */
+    @Provider
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public static final class ListOf implements MessageBodyReader<List<V2State>>, MessageBodyWriter<List<V2State>> {
+
+        @Override
+        public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            // The parser produces an ArrayList, so only parameters declared as List/Collection/Iterable fit.
+            return type.isAssignableFrom(List.class) && type != Object.class && isV2StateList(genericType);
+        }
+
+        @Override
+        public List<V2State> readFrom(Class<List<V2State>> type, Type genericType, Annotation[] annotations,
+                                      MediaType mediaType, MultivaluedMap<String, String> httpHeaders,
+                                      InputStream entityStream) throws IOException {
+            V2StateJson.Buffer buffer = readBody(entityStream);
+            try {
+                return V2StateJson.readList(buffer.array(), 0, buffer.length());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage(), e);
+            } finally {
+                release(buffer);
+            }
+        }
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return List.class.isAssignableFrom(type) && isV2StateList(genericType);
+        }
+
+        @Override
+        public void writeTo(List<V2State> states, Class<?> type, Type genericType, Annotation[] annotations,
+                            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+                throws IOException {
+            V2StateJson.Buffer buffer = BUFFERS.get().reset();
+            try {
+                buffer.writeList(states).writeTo(entityStream);
+            } finally {
+                release(buffer);
+            }
+        }
+
+        private static boolean isV2StateList(Type genericType) {
+            return genericType instanceof ParameterizedType
+                    && ((ParameterizedType) genericType).getActualTypeArguments()[0] == V2State.class;
+        }
+    }
+
+    /** Delta listings ({@code GET /vehicles?since=}); write only. */
+    @Provider
+    @Produces(MediaType.APPLICATION_JSON)
+    public static final class Changes implements MessageBodyWriter<VehicleChanges> {
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return type == VehicleChanges.class;
+        }
+
+        @Override
+        public void writeTo(VehicleChanges changes, Class<?> type, Type genericType, Annotation[] annotations,
+                            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+                throws IOException {
+            V2StateJson.Buffer buffer = BUFFERS.get().reset();
+            try {
+                buffer.writeChanges(changes).writeTo(entityStream);
+            } finally {
+                release(buffer);
+            }
+        }
+    }
+
+    private static V2StateJson.Buffer readBody(InputStream entityStream) throws IOException {
+        return BUFFERS.get().reset().readFrom(entityStream);
+    }
+
+    private static void release(V2StateJson.Buffer buffer) {
+        // A single huge batch must not pin its buffer for the lifetime of the thread.
+        if (buffer.capacity() > MAX_RETAINED_BYTES) {
+            BUFFERS.remove();
+        }
+    }
+}
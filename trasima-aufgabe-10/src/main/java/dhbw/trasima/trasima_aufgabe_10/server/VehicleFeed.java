@@ -0,0 +1,249 @@
+package dhbw.trasima.trasima_aufgabe_10.server;
+
+import dhbw.trasima.trasima_aufgabe_10.model.V2StateJson;
+import dhbw.trasima.trasima_aufgabe_10.model.VehicleChanges;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live feed behind {@code GET /api/trasima/vehicles/stream} (Server-Sent Events).
+ *
+ * <p>Instead of pushing every single update, a tick every {@code intervalMillis} asks the store's change feed what
+ * changed since the previous tick. Several updates of one vehicle within a tick therefore collapse into its latest
+ * state. The delta is encoded to JSON once and the same event object goes to every subscriber.</p>
+ *
+ * <p>Events:</p>
+ * <ul>
+ *   <li>{@code snapshot}: all vehicles, sent on connect (or when a client fell too far behind), same JSON as
+ *   {@code GET /vehicles?since=} with {@code "full":true}</li>
+ *   <li>{@code delta}: vehicles changed or deleted since the previous event ({@code "full":false})</li>
+ * </ul>
+ * <p>The event id is the store version, so a browser reconnecting with {@code Last-Event-ID} only gets what it
+ * missed.</p>
+ *
+ * <p>Each subscriber has a queue of at most {@code queueCapacity} events and its own sending task. A slow client
+ * never blocks the tick or other clients: when its queue is full the oldest event is dropped, and the next tick
+ * sends that client one catch-up delta covering everything it lost.</p>
+ */
+final class VehicleFeed implements AutoCloseable {
+
+    // Browsers and proxies close idle connections; a comment line keeps them open.
+    private static final long KEEP_ALIVE_NANOS = TimeUnit.SECONDS.toNanos(15);
+    // Version "before everything": ChangeFeed#since cannot answer it, so the client gets a snapshot.
+    private static final long FULL = -1L;
+    // Catch-up marker of a subscriber that is up to date.
+    private static final long NONE = Long.MAX_VALUE;
+
+    private final VehicleStore store;
+    private final int queueCapacity;
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService senders;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Queue<Subscriber> joining = new ConcurrentLinkedQueue<>();
+    private volatile Sse sse;
+
+    // Only touched by the tick thread.
+    private long version;
+    private long lastEventNanos = System.nanoTime();
+
+    VehicleFeed(VehicleStore store, long intervalMillis, int queueCapacity) {
+        this.store = store;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.version = store.version();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(daemon("sse-tick"));
+        this.senders = Executors.newCachedThreadPool(daemon("sse-send"));
+        ticker.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a client; it gets its first event with the next tick.
+     *
+     * @param lastEventId the {@code Last-Event-ID} header of a reconnecting browser, or null
+     */
+    void subscribe(SseEventSink sink, Sse sse, String lastEventId) {
+        this.sse = sse;
+        long from = FULL;
+        if (lastEventId != null) {
+            try {
+                from = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                // Not one of our ids: start over with a snapshot.
+            }
+        }
+        joining.add(new Subscriber(sink, from));
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        senders.shutdownNow();
+        Subscriber subscriber;
+        while ((subscriber = joining.poll()) != null) {
+            subscribers.add(subscriber);
+        }
+        for (Subscriber s : subscribers) {
+            s.close();
+        }
+    }
+
+    private void tick() {
+        try {
+            Subscriber joined;
+            while ((joined = joining.poll()) != null) {
+                subscribers.add(joined);
+            }
+            if (subscribers.isEmpty()) {
+                // Nobody listening: skip the work, but do not hand the next subscriber an old delta.
+                version = store.version();
+                return;
+            }
+
+            OutboundSseEvent shared = null;
+            long sharedFrom = version;
+            if (store.version() != version) {
+                VehicleChanges delta = store.changesSince(version);
+                shared = event(delta);
+                version = delta.version;
+            }
+            // Catch-ups of the same version (typically: everyone who connected since the last tick) share one event.
+            Map<Long, OutboundSseEvent> catchUps = new HashMap<>();
+            OutboundSseEvent keepAlive = null;
+            long now = System.nanoTime();
+            if (shared == null && now - lastEventNanos >= KEEP_ALIVE_NANOS) {
+                keepAlive = sse.newEventBuilder().comment("keep-alive").build();
+            }
+            boolean sent = false;
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.sink.isClosed()) {
+                    subscribers.remove(subscriber);
+                    continue;
+                }
+                long from = subscriber.takeCatchUp();
+                if (from != NONE) {
+                    subscriber.offer(from, catchUps.computeIfAbsent(from, f -> event(store.changesSince(f))));
+                    sent = true;
+                } else if (shared != null) {
+                    subscriber.offer(sharedFrom, shared);
+                    sent = true;
+                } else if (keepAlive != null) {
+                    subscriber.offer(NONE, keepAlive);
+                    sent = true;
+                }
+            }
+            if (sent) {
+                lastEventNanos = now;
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule and silently end the feed for everyone.
+            e.printStackTrace();
+        }
+    }
+
+    private OutboundSseEvent event(VehicleChanges changes) {
+        V2StateJson.Buffer buffer = new V2StateJson.Buffer(256 + 64 * changes.changed.size());
+        buffer.writeChanges(changes);
+        return sse.newEventBuilder()
+                .name(changes.full ? "snapshot" : "delta")
+                .id(Long.toString(changes.version))
+                .mediaType(MediaType.TEXT_PLAIN_TYPE)
+                .data(String.class, new String(buffer.array(), 0, buffer.length(), StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Event plus the version it starts from (what to catch up from if it is dropped). */
+    private record Frame(long from, OutboundSseEvent event) {
+    }
+
+    private final class Subscriber {
+        final SseEventSink sink;
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        private long catchUpFrom;
+        private boolean sending;
+
+        Subscriber(SseEventSink sink, long from) {
+            this.sink = sink;
+            this.catchUpFrom = from;
+        }
+
+        synchronized long takeCatchUp() {
+            long from = catchUpFrom;
+            catchUpFrom = NONE;
+            return from;
+        }
+
+        void offer(long from, OutboundSseEvent event) {
+            synchronized (this) {
+                if (queue.size() >= queueCapacity) {
+                    // Drop oldest; the next tick replaces it (and anything newer) with one catch-up delta.
+                    catchUpFrom = Math.min(catchUpFrom, queue.removeFirst().from);
+                }
+                queue.addLast(new Frame(from, event));
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Frame frame;
+                synchronized (this) {
+                    frame = queue.pollFirst();
+                    if (frame == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    // One event at a time per client; a slow client only fills its own queue.
+                    sink.send(frame.event).toCompletableFuture().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    return;
+                } catch (Exception e) {
+                    // Client went away.
+                    close();
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            subscribers.remove(this);
+            synchronized (this) {
+                queue.clear();
+            }
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                // Already closed.
+            }
+        }
+    }
+}
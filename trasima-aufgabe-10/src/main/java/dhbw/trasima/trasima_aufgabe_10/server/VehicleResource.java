@@ -1,16 +1,31 @@
 package dhbw.trasima.trasima_aufgabe_10.server;
 
+import dhbw.trasima.trasima_aufgabe_10.model.BatchResult;
+import dhbw.trasima.trasima_aufgabe_10.model.PositionSample;
 import dhbw.trasima.trasima_aufgabe_10.model.V2State;
+import dhbw.trasima.trasima_aufgabe_10.model.VehicleChanges;
+import dhbw.trasima.trasima_bis_5.metrics.Counter;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import java.util.List;
 
 /**
@@ -20,7 +35,8 @@ import java.util.List;
  *
  * <p>Notes:</p>
  * <ul>
- *   <li>This is a simple in-memory demo; data is lost on server restart.</li>
+ *   <li>State is kept in memory and lost on server restart, unless the server runs with {@code --wal <dir>}
+ *   (see {@link TrasimaRestServer}).</li>
  *   <li>The vehicle id is part of the URL and always overrides any id in the JSON body.</li>
  * </ul>
  */
@@ -29,15 +45,150 @@ import java.util.List;
 @Consumes(MediaType.APPLICATION_JSON)
 public class VehicleResource {
 
-    // One shared store for the whole JVM (sufficient for this exercise).
-    private static final InMemoryV2Store STORE = new InMemoryV2Store();
+    // One shared store for the whole JVM (sufficient for this exercise); the resource is registered as a singleton.
+    private final VehicleStore store;
+    private final VehicleFeed feed;
+
+    private static final Counter UPDATES = MetricsRegistry.global().counter("trasima_updates_received_total",
+            "Empfangene Positions-Updates", "transport", "rest");
+
+    // Browsers may keep list responses but must revalidate (If-None-Match) before every use.
+    private static final CacheControl REVALIDATE = new CacheControl();
+
+    static {
+        REVALIDATE.setNoCache(true);
+        REVALIDATE.setNoTransform(false);
+    }
+
+    VehicleResource(VehicleStore store, VehicleFeed feed) {
+        this.store = store;
+        this.feed = feed;
+    }
+
+    /**
+     * Lists the currently known vehicles, optionally filtered by area, or only what changed since an earlier poll.
+     *
+     * <ul>
+     *   <li>{@code ?bbox=minLon,minLat,maxLon,maxLat}: vehicles inside the box (Leaflet's
+     *   {@code toBBoxString()} order); {@code minLon > maxLon} crosses the antimeridian</li>
+     *   <li>{@code ?near=lat,lon&radius=meters}: vehicles within the radius, nearest first</li>
+     *   <li>{@code ?since=version}: a {@link VehicleChanges} object with the vehicles changed or deleted since that
+     *   version (from a previous response); not combinable with the area filters</li>
+     * </ul>
+     *
+     * <p>Area queries use the store's grid index and deltas the store's change feed, so their cost depends on the
+     * result, not the fleet size.</p>
+     *
+     * <p>Every response carries the store version as {@code ETag}. A request with a matching
+     * {@code If-None-Match} gets 304 without touching the vehicles.</p>
+     *
+     * @return 200 with a JSON array (or {@link VehicleChanges} for {@code since}), 304 if unchanged, 400 if the
+     * query parameters are malformed
+     */
+    @GET
+    public Response list(@QueryParam("bbox") String bbox,
+                         @QueryParam("near") String near,
+                         @QueryParam("radius") Double radius,
+                         @QueryParam("since") Long since,
+                         @Context Request request) {
+        double[] box = null;
+        double[] point = null;
+        if (since != null && (bbox != null || near != null)) {
+            return badRequest("since cannot be combined with bbox or near");
+        }
+        if (bbox != null) {
+            box = parseCoordinates(bbox, 4);
+            if (box == null || !isLat(box[1]) || !isLat(box[3]) || !isLon(box[0]) || !isLon(box[2]) || box[1] > box[3]) {
+                return badRequest("bbox must be minLon,minLat,maxLon,maxLat");
+            }
+        } else if (near != null) {
+            point = parseCoordinates(near, 2);
+            if (point == null || !isLat(point[0]) || !isLon(point[1])) {
+                return badRequest("near must be lat,lon");
+            }
+            if (radius == null || !(radius >= 0.0)) {
+                return badRequest("near requires radius (meters, >= 0)");
+            }
+        }
+
+        // Same version => same store contents => same body for the same URL.
+        EntityTag etag = new EntityTag(Long.toString(store.version()));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+
+        if (since != null) {
+            return Response.ok(store.changesSince(since)).tag(etag).cacheControl(REVALIDATE).build();
+        }
+        List<V2State> states;
+        if (box != null) {
+            states = store.within(box[1], box[0], box[3], box[2]);
+        } else if (point != null) {
+            states = store.near(point[0], point[1], radius);
+        } else {
+            states = store.list();
+        }
+        // GenericEntity keeps List<V2State> visible to the message body writers.
+        return Response.ok(new GenericEntity<List<V2State>>(states) { }).tag(etag).cacheControl(REVALIDATE).build();
+    }
+
+    /**
+     * Live updates as Server-Sent Events: a {@code snapshot} event with all vehicles, then coalesced
+     * {@code delta} events (same JSON as {@code ?since=}) at the server's {@code --sse-interval-ms}.
+     *
+     * <p>Browsers reconnect with {@code Last-Event-ID} automatically and then only get what they missed. See
+     * {@link VehicleFeed}.</p>
+     */
+    @GET
+    @Path("stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void stream(@Context SseEventSink sink,
+                       @Context Sse sse,
+                       @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId) {
+        feed.subscribe(sink, sse, lastEventId);
+    }
 
     /**
-     * Lists all currently known vehicles.
+     * Position history of one vehicle, oldest first.
+     *
+     * <p>{@code from}/{@code to} are epoch milliseconds (inclusive, default: everything retained). How far back
+     * the history reaches depends on the server's {@code --history-kb} setting.</p>
+     *
+     * @return 200 with a JSON array of samples, 404 if there is no history for the id, 400 if {@code from > to}
      */
     @GET
-    public List<V2State> list() {
-        return STORE.list();
+    @Path("{id}/history")
+    public Response history(@PathParam("id") int id,
+                            @QueryParam("from") Long from,
+                            @QueryParam("to") Long to) {
+        long fromMillis = from == null ? Long.MIN_VALUE : from;
+        long toMillis = to == null ? Long.MAX_VALUE : to;
+        if (fromMillis > toMillis) {
+            return badRequest("from must not be after to");
+        }
+        List<PositionSample> samples = store.history(id, fromMillis, toMillis);
+        if (samples == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(new GenericEntity<List<PositionSample>>(samples) { }).build();
+    }
+
+    /**
+     * Creates or updates many vehicles at once (ids come from the JSON bodies).
+     *
+     * <p>Meant for simulations that publish a whole tick in one request instead of one request per vehicle.</p>
+     *
+     * @return 200 with the created/updated ids, 400 if body is missing
+     */
+    @PUT
+    public Response upsertAll(List<V2State> states) {
+        if (states == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Missing JSON body").build();
+        }
+        BatchResult result = store.upsertAll(states);
+        UPDATES.add(result.created.length + result.updated.length);
+        return Response.ok(result).build();
     }
 
     /**
@@ -48,7 +199,7 @@ public class VehicleResource {
     @GET
     @Path("{id}")
     public Response get(@PathParam("id") int id) {
-        V2State state = STORE.get(id);
+        V2State state = store.get(id);
         if (state == null) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
@@ -69,10 +220,11 @@ public class VehicleResource {
         // Ensure the canonical id is the one from the URL.
         state.id = id;
 
-        boolean created = STORE.create(state);
+        boolean created = store.create(state);
         if (!created) {
             return Response.status(Response.Status.CONFLICT).entity("Vehicle ID already exists").build();
         }
+        UPDATES.inc();
         return Response.status(Response.Status.CREATED).entity(state).build();
     }
 
@@ -90,10 +242,11 @@ public class VehicleResource {
         // Ensure the canonical id is the one from the URL.
         state.id = id;
 
-        boolean updated = STORE.update(state);
+        boolean updated = store.update(state);
         if (!updated) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
+        UPDATES.inc();
         return Response.ok(state).build();
     }
 
@@ -105,10 +258,42 @@ public class VehicleResource {
     @DELETE
     @Path("{id}")
     public Response delete(@PathParam("id") int id) {
-        boolean deleted = STORE.delete(id);
+        boolean deleted = store.delete(id);
         if (!deleted) {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
         return Response.noContent().build();
     }
+
+    private static Response badRequest(String message) {
+        return Response.status(Response.Status.BAD_REQUEST).entity(message).build();
+    }
+
+    private static double[] parseCoordinates(String value, int count) {
+        // "a,b,c" -> numbers; null if the count does not match or a part is not a finite number.
+        String[] parts = value.split(",");
+        if (parts.length != count) {
+            return null;
+        }
+        double[] result = new double[count];
+        for (int i = 0; i < count; i++) {
+            try {
+                result[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (!Double.isFinite(result[i])) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isLat(double value) {
+        return value >= -90.0 && value <= 90.0;
+    }
+
+    private static boolean isLon(double value) {
+        return value >= -180.0 && value <= 180.0;
+    }
 }
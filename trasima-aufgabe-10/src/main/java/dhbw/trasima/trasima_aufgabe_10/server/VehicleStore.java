@@ -0,0 +1,188 @@
+package dhbw.trasima.trasima_aufgabe_10.server;
+
+import dhbw.trasima.trasima_aufgabe_10.client.GeoUtil;
+import dhbw.trasima.trasima_aufgabe_10.model.BatchResult;
+import dhbw.trasima.trasima_aufgabe_10.model.PositionSample;
+import dhbw.trasima.trasima_aufgabe_10.model.V2State;
+import dhbw.trasima.trasima_aufgabe_10.model.VehicleChanges;
+import dhbw.trasima.trasima_bis_5.history.PositionHistory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Storage behind {@link VehicleResource}.
+ *
+ * <p>Implementations only provide the per-id operations and must keep {@link #grid} in sync with every write
+ * (serialized per id). They also record every successful write in {@link #history} (stamped with the server
+ * time) and drop the history on delete. Once a write or delete is visible, they report the id to
+ * {@link #changes}. Batch upserts, the area, history and delta queries are shared:</p>
+ * <ul>
+ *   <li>{@link InMemoryV2Store}: one {@link V2State} object per vehicle in a {@code ConcurrentHashMap} (default)</li>
+ *   <li>{@link ColumnarVehicleStore}: primitive columns, updates without allocation</li>
+ * </ul>
+ */
+abstract class VehicleStore {
+
+    // Same sphere as GeoUtil#distanceMeters; used to turn a radius into a bounding box.
+    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+
+    final SpatialGrid grid = new SpatialGrid();
+    final PositionHistory history;
+    final ChangeFeed changes = new ChangeFeed();
+
+    VehicleStore(PositionHistory history) {
+        this.history = history;
+    }
+
+    /** Snapshot of all vehicles (a new list; callers may modify it). */
+    abstract List<V2State> list();
+
+    abstract V2State get(int id);
+
+    /** Creates only if the id does not exist yet. */
+    abstract boolean create(V2State state);
+
+    /** Replaces only if the id exists. */
+    abstract boolean update(V2State state);
+
+    /**
+     * Creates or replaces.
+     *
+     * @return true if the id existed before
+     */
+    abstract boolean put(V2State state);
+
+    abstract boolean delete(int id);
+
+    abstract int size();
+
+    /** Releases files; only a durable {@link ColumnarVehicleStore} holds any. */
+    void close() {
+    }
+
+    BatchResult upsertAll(List<V2State> states) {
+        // One pass over the batch; put() tells whether the id was new.
+        int[] created = new int[states.size()];
+        int[] updated = new int[states.size()];
+        int createdCount = 0;
+        int updatedCount = 0;
+        for (V2State state : states) {
+            if (state == null) {
+                continue;
+            }
+            if (put(state)) {
+                updated[updatedCount++] = state.id;
+            } else {
+                created[createdCount++] = state.id;
+            }
+        }
+        return new BatchResult(Arrays.copyOf(created, createdCount), Arrays.copyOf(updated, updatedCount));
+    }
+
+    /** Changes with every write and delete; see {@link ChangeFeed}. */
+    long version() {
+        return changes.version();
+    }
+
+    /**
+     * Vehicles changed or deleted after {@code since}; a full listing if that version is no longer known.
+     */
+    VehicleChanges changesSince(long since) {
+        ChangeFeed.Changes delta = changes.since(since);
+        if (delta == null) {
+            // Version before list(): the listing is at least as new, so nothing is missed in the next delta.
+            long version = version();
+            return new VehicleChanges(version, true, list(), new int[0]);
+        }
+        List<V2State> changed = new ArrayList<>(delta.ids().length);
+        int[] deleted = new int[delta.ids().length];
+        int deletedCount = 0;
+        for (int id : delta.ids()) {
+            V2State state = get(id);
+            if (state != null) {
+                changed.add(state);
+            } else {
+                deleted[deletedCount++] = id;
+            }
+        }
+        return new VehicleChanges(delta.version(), false, changed, Arrays.copyOf(deleted, deletedCount));
+    }
+
+    /**
+     * Recorded positions of one vehicle with {@code from <= timestamp <= to}, oldest first.
+     *
+     * @return null if there is no history for the id
+     */
+    List<PositionSample> history(int id, long from, long to) {
+        List<PositionSample> result = new ArrayList<>();
+        boolean known = history.query(id, from, to, (timestamp, lat, lon, speed, direction) ->
+                result.add(new PositionSample(timestamp, lat, lon, speed, direction)));
+        return known ? result : null;
+    }
+
+    /**
+     * Vehicles inside the box (inclusive). {@code minLon > maxLon} means the box crosses the antimeridian.
+     */
+    List<V2State> within(double minLat, double minLon, double maxLat, double maxLon) {
+        List<V2State> result = new ArrayList<>();
+        if (minLon > maxLon) {
+            collect(minLat, minLon, maxLat, 180.0, result);
+            collect(minLat, -180.0, maxLat, maxLon, result);
+        } else {
+            collect(minLat, minLon, maxLat, maxLon, result);
+        }
+        return result;
+    }
+
+    /**
+     * Vehicles within {@code radiusMeters} of the point, nearest first.
+     */
+    List<V2State> near(double lat, double lon, double radiusMeters) {
+        // Exact bounding box of the spherical cap: the latitude extent is the angular radius, the longitude
+        // extent asin(sin(delta) / cos(lat)); if the cap contains a pole, every longitude is covered.
+        double delta = radiusMeters / EARTH_RADIUS_METERS;
+        double dLat = Math.toDegrees(delta);
+        double minLat = Math.max(-90.0, lat - dLat);
+        double maxLat = Math.min(90.0, lat + dLat);
+        double sinRatio = Math.sin(Math.min(delta, Math.PI / 2)) / Math.cos(Math.toRadians(lat));
+        double dLon = sinRatio >= 1.0 || delta >= Math.PI / 2 ? 180.0 : Math.toDegrees(Math.asin(sinRatio));
+
+        List<V2State> candidates = dLon >= 180.0 || minLat == -90.0 || maxLat == 90.0
+                ? within(minLat, -180.0, maxLat, 180.0)
+                : within(minLat, GeoUtil.normalizeLonDegrees(lon - dLon), maxLat, GeoUtil.normalizeLonDegrees(lon + dLon));
+
+        List<V2State> result = new ArrayList<>(candidates.size());
+        for (V2State state : candidates) {
+            if (GeoUtil.distanceMeters(lat, lon, state.lat, state.lon) <= radiusMeters) {
+                result.add(state);
+            }
+        }
+        result.sort(Comparator.comparingDouble(state -> GeoUtil.distanceMeters(lat, lon, state.lat, state.lon)));
+        return result;
+    }
+
+    private void collect(double minLat, double minLon, double maxLat, double maxLon, List<V2State> result) {
+        if (SpatialGrid.cellCount(minLat, minLon, maxLat, maxLon) > size()) {
+            // Box covers more cells than there are vehicles (e.g. zoomed far out): a plain scan is cheaper.
+            for (V2State state : list()) {
+                if (inside(state, minLat, minLon, maxLat, maxLon)) {
+                    result.add(state);
+                }
+            }
+            return;
+        }
+        grid.forEachCandidate(minLat, minLon, maxLat, maxLon, id -> {
+            // The grid may lag behind a concurrent move; the exact position decides.
+            V2State state = get(id);
+            if (state != null && inside(state, minLat, minLon, maxLat, maxLon)) {
+                result.add(state);
+            }
+        });
+    }
+
+    private static boolean inside(V2State state, double minLat, double minLon, double maxLat, double maxLon) {
+        return state.lat >= minLat && state.lat <= maxLat && state.lon >= minLon && state.lon <= maxLon;
+    }
+}
@@ -0,0 +1,29 @@
+package dhbw.trasima.trasima_aufgabe07.client;
+
+import dhbw.trasima.trasima_bis_5.metrics.Counter;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+
+/**
+ * Zähler der gRPC-Publisher in {@link MetricsRegistry#global()}.
+ *
+ * - Fehler: fehlgeschlagener Unary-Call bzw. abgebrochener PublishPositions-Stream.
+ * - Wiederholungen: neuer Stream nach einem Abbruch.
+ * - Verworfen: Position, die im Rückstau eines nicht bereiten Streams durch eine neuere ersetzt wurde.
+ */
+final class ClientMetrics {
+
+    static final Counter UNARY_FAILURES = failures("unary");
+    static final Counter STREAM_FAILURES = failures("stream");
+    static final Counter STREAM_RETRIES = MetricsRegistry.global().counter("trasima_publisher_retries_total",
+            "Wiederholte Veröffentlichungen im Client", "transport", "grpc", "mode", "stream");
+    static final Counter STREAM_DROPPED = MetricsRegistry.global().counter("trasima_publisher_dropped_total",
+            "Vor dem Senden durch ein neueres Update ersetzte Positionen", "transport", "grpc", "mode", "stream");
+
+    private ClientMetrics() {
+    }
+
+    private static Counter failures(String mode) {
+        return MetricsRegistry.global().counter("trasima_publisher_failures_total",
+                "Fehlgeschlagene Veröffentlichungen im Client", "transport", "grpc", "mode", mode);
+    }
+}
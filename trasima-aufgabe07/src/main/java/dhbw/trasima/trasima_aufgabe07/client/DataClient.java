@@ -10,6 +10,8 @@ import io.grpc.ManagedChannelBuilder;
  * - Verbindet sich mit dem Server.
  * - Ruft alle Fahrzeugzustände ab und gibt sie aus.
  * - Ruft gezielt ein Fahrzeug (ID 1) ab und prüft, ob es existiert.
+ * - Fragt die 3 nächsten Fahrzeuge zum Punkt (5, 5) ab.
+ * - Ruft den Verlauf von Fahrzeug 1 der letzten Minute ab.
  */
 public class DataClient {
 
@@ -38,6 +40,29 @@ public class DataClient {
             System.out.println("Fahrzeug mit ID 1 nicht gefunden.");
         }
 
+        // 3. Die nächsten Fahrzeuge zu einem Punkt abfragen
+        System.out.println("\n--- Die 3 nächsten Fahrzeuge zu X=5, Y=5 ---");
+        NearestList nearest = stub.fetchNearest(NearestRequest.newBuilder().setX(5).setY(5).setK(3).build());
+        for (Neighbor neighbor : nearest.getNeighborsList()) {
+            V2State state = neighbor.getState();
+            System.out.println("V2 ID: " + state.getId() + ", X: " + state.getX() + ", Y: " + state.getY()
+                    + ", Entfernung: " + Math.round(neighbor.getDistanceMeters()) + " m");
+        }
+
+        // 4. Verlauf eines Fahrzeugs in der letzten Minute
+        System.out.println("\n--- Verlauf von Fahrzeug ID: 1 (letzte 60 s) ---");
+        long now = System.currentTimeMillis();
+        HistoryList history = stub.fetchHistory(HistoryRequest.newBuilder()
+                .setId(1)
+                .setFromMillis(now - 60_000)
+                .setToMillis(now)
+                .build());
+        for (HistorySample sample : history.getSamplesList()) {
+            System.out.println("t=" + sample.getTimestampMillis() + ", X: " + sample.getX() + ", Y: " + sample.getY()
+                    + ", Speed: " + sample.getSpeed());
+        }
+        System.out.println(history.getSamplesCount() + " Einträge");
+
         // Verbindung schließen
         channel.shutdown();
     }
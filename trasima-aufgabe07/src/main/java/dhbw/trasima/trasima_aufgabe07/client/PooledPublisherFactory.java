@@ -0,0 +1,90 @@
+package dhbw.trasima.trasima_aufgabe07.client;
+
+import dhbw.trasima.trasima_bis_5.IPositionPublisher;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Liefert Publisher für beliebig viele Fahrzeuge über einen kleinen, festen Pool von gRPC-Kanälen.
+ *
+ * - Statt einem ManagedChannel (TCP-Verbindung, HTTP/2-Session) pro Fahrzeug gibt es nur channelCount Kanäle.
+ * - Pro Kanal läuft ein StreamingPositionPublisher mit einem einzigen PublishPositions-Stream.
+ * - Fahrzeuge werden über ihre ID fest einem Kanal zugeordnet, damit ihre Updates in Reihenfolge ankommen.
+ */
+public class PooledPublisherFactory implements AutoCloseable {
+
+    private final ManagedChannel[] channels;
+    private final StreamingPositionPublisher[] publishers;
+
+    public PooledPublisherFactory(String host, int port, int channelCount) {
+        if (channelCount < 1) {
+            throw new IllegalArgumentException("channelCount muss >= 1 sein");
+        }
+        this.channels = new ManagedChannel[channelCount];
+        this.publishers = new StreamingPositionPublisher[channelCount];
+        for (int i = 0; i < channelCount; i++) {
+            channels[i] = ManagedChannelBuilder.forAddress(host, port)
+                    .usePlaintext()
+                    .build();
+            publishers[i] = new StreamingPositionPublisher(channels[i]);
+        }
+    }
+
+    /**
+     * Publisher für ein Fahrzeug; mehrere Fahrzeuge teilen sich denselben Publisher.
+     */
+    public IPositionPublisher forVehicle(int id) {
+        return publishers[Math.floorMod(id, publishers.length)];
+    }
+
+    public int channelCount() {
+        return channels.length;
+    }
+
+    /** Summe der gesendeten Positionen über alle Kanäle. */
+    public long sent() {
+        long sum = 0;
+        for (StreamingPositionPublisher p : publishers) {
+            sum += p.sent();
+        }
+        return sum;
+    }
+
+    /** Summe der vom Server bestätigten Positionen über alle Kanäle. */
+    public long confirmed() {
+        long sum = 0;
+        for (StreamingPositionPublisher p : publishers) {
+            sum += p.confirmed();
+        }
+        return sum;
+    }
+
+    /** Summe der vor dem Senden ersetzten Positionen (Flusskontrolle, siehe StreamingPositionPublisher). */
+    public long dropped() {
+        long sum = 0;
+        for (StreamingPositionPublisher p : publishers) {
+            sum += p.dropped();
+        }
+        return sum;
+    }
+
+    @Override
+    public void close() {
+        // Erst die Streams beenden (wartet auf die letzte Bestätigung), dann die Kanäle schließen
+        for (StreamingPositionPublisher p : publishers) {
+            p.close();
+        }
+        for (ManagedChannel channel : channels) {
+            channel.shutdown();
+        }
+        for (ManagedChannel channel : channels) {
+            try {
+                channel.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
 import dhbw.trasima.trasima_aufgabe07.V2State;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.StatusRuntimeException;
 
 /**
  * Der gRPC-Client, der die Positionen an den Server sendet.
@@ -38,7 +39,12 @@ public class PositionPublisher implements IPositionPublisher, AutoCloseable {
                 .build();
         
         // Nachricht an den Server senden
-        stub.publishPosition(state);
+        try {
+            stub.publishPosition(state);
+        } catch (StatusRuntimeException e) {
+            ClientMetrics.UNARY_FAILURES.inc();
+            throw e;
+        }
     }
 
     @Override
@@ -1,69 +1,65 @@
 package dhbw.trasima.trasima_aufgabe07.client;
 
 import dhbw.trasima.trasima_bis_5.VirtualVehicle;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Der Simulations-Client startet die eigentliche Simulation.
- * 
+ *
  * - Erstellt eine Anzahl an virtuellen Fahrzeugen (VirtualVehicle).
- * - Jedes Fahrzeug bekommt einen PositionPublisher (gRPC-Client).
- * - Startet jedes Fahrzeug in einem eigenen Thread.
+ * - Alle Fahrzeuge teilen sich einen kleinen Pool von gRPC-Kanälen (PooledPublisherFactory).
+ * - Die Fahrzeuge laufen nicht in eigenen Threads, sondern werden von einem gemeinsamen Scheduler getaktet.
  * - Wartet, bis alle Fahrzeuge ihre Fahrt beendet haben.
+ *
+ * Argumente: [Fahrzeuge (3)] [Kanäle (4)] [Scheduler-Threads (2)] [Host (192.168.110.7)]
  */
 public class SimulationClient {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         // Standardmäßig 3 Fahrzeuge, falls kein Argument übergeben wurde
         int numberOfVehicles = 3;
         if (args.length > 0) {
             numberOfVehicles = Integer.parseInt(args[0]);
         }
+        int channelCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int schedulerThreads = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        String host = args.length > 3 ? args[3] : "192.168.110.7";
 
-        System.out.println("Starte gRPC Simulation mit " + numberOfVehicles + " Virtual Vehicles.");
+        System.out.println("Starte gRPC Simulation mit " + numberOfVehicles + " Virtual Vehicles über "
+                + channelCount + " Kanäle.");
 
-        List<Thread> threads = new ArrayList<>();
-        List<PositionPublisher> publishers = new ArrayList<>();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(schedulerThreads);
 
-        try {
+        try (PooledPublisherFactory publishers = new PooledPublisherFactory(host, 50051, channelCount)) {
             for (int i = 0; i < numberOfVehicles; i++) {
-                // Ein gRPC-Publisher für jedes Fahrzeug
-                PositionPublisher publisher = new PositionPublisher("192.168.110.7", 50051);
-                publishers.add(publisher);
+                int id = i + 1;
 
                 // Das eigentliche Fahrzeug-Objekt aus trasima_bis_5
                 VirtualVehicle v2 = new VirtualVehicle(
-                        i + 1,
+                        id,
                         Math.random() * 10,
                         Math.random() * 10,
                         0.5 + Math.random(),
-                        (id, x, y, speed) -> {
-                            // Lambda-Funktion: Sendet Daten via gRPC und gibt Status aus
-                            publisher.publishPosition(id, x, y, speed);
-                            System.out.println("V2-" + id + " Position gesendet.");
-                        }
+                        publishers.forVehicle(id)
                 );
 
-                // Fahrzeug in einem neuen Thread starten
-                Thread t = new Thread(v2);
-                threads.add(t);
-                t.start();
+                // Startzeitpunkte über eine Sekunde verteilen, damit nicht alle Fahrzeuge gleichzeitig senden
+                long initialDelay = ThreadLocalRandom.current().nextLong(VirtualVehicle.TICK_MILLIS);
+                scheduler.scheduleAtFixedRate(v2::tick, initialDelay, VirtualVehicle.TICK_MILLIS, TimeUnit.MILLISECONDS);
             }
 
-            // Warten, bis alle Threads fertig sind
-            for (Thread t : threads) {
-                try {
-                    t.join();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
+            // Fahrt läuft so lange wie bei VirtualVehicle.run()
+            Thread.sleep(VirtualVehicle.RUNTIME_MILLIS);
+            scheduler.shutdown();
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+
+            System.out.println("Gesendet: " + publishers.sent() + " Positionen, vor dem Senden ersetzt: "
+                    + publishers.dropped() + ".");
         } finally {
-            // Alle Verbindungen am Ende schließen
-            for (PositionPublisher p : publishers) {
-                p.close();
-            }
+            scheduler.shutdownNow();
         }
 
         System.out.println("Simulation abgeschlossen.");
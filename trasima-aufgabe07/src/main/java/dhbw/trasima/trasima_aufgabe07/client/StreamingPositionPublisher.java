@@ -0,0 +1,269 @@
+package dhbw.trasima.trasima_aufgabe07.client;
+
+import dhbw.trasima.trasima_bis_5.IPositionPublisher;
+import dhbw.trasima.trasima_bis_5.metrics.RateLimitedLog;
+import dhbw.trasima.trasima_aufgabe07.PublishSummary;
+import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * gRPC-Publisher, der alle Positionen über einen einzigen, langlebigen PublishPositions-Stream schickt.
+ *
+ * - Im Gegensatz zum PositionPublisher kein eigener Unary-Call (und damit kein HTTP/2-Stream) pro Position.
+ * - Der Server bestätigt nur gesammelt (PublishSummary), der Publisher wartet nie auf eine Antwort.
+ * - Bricht der Stream ab, wird beim nächsten publishPosition automatisch ein neuer geöffnet.
+ * - Kann einen eigenen Kanal öffnen oder einen geteilten ManagedChannel verwenden.
+ * - Flusskontrolle: Solange der Stream nicht bereit ist (isReady, z.B. Server oder Netz zu langsam), gibt der
+ *   Publisher nichts an gRPC weiter, sondern merkt sich pro Fahrzeug nur die neueste Position. Ein älteres,
+ *   noch nicht gesendetes Update desselben Fahrzeugs wird ersetzt und in {@link #dropped()} gezählt. Der
+ *   Rückstau ist damit höchstens so groß wie die Flotte, statt unbegrenzt im gRPC-Puffer zu wachsen; wird der
+ *   Stream wieder bereit, schickt der onReady-Handler den Rückstau hinterher.
+ * - Wer selbst Positionen annimmt (z.B. der ClusterRouterService), kann über {@link #isReady()} und
+ *   {@link #setOnReadyHandler} den eigenen Zufluss bremsen, statt Updates im Rückstau ersetzen zu lassen.
+ */
+public class StreamingPositionPublisher implements IPositionPublisher, AutoCloseable {
+
+    // Bei einem Serverausfall brechen alle Streams gleichzeitig ab; eine Zeile pro Sekunde reicht.
+    private static final RateLimitedLog ERROR_LOG = new RateLimitedLog("PublishPositions Stream abgebrochen: ", 1);
+
+    private final ManagedChannel channel;
+    private final boolean ownsChannel;
+    private final TrasimaServiceGrpc.TrasimaServiceStub asyncStub;
+
+    // Aktueller Stream (null = noch keiner oder abgebrochen). Zugriff nur synchronisiert,
+    // weil StreamObserver nicht thread-sicher ist.
+    private Stream current;
+    // Der letzte Stream ist abgebrochen; der nächste zählt als Wiederholung.
+    private boolean broken;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong confirmed = new AtomicLong();
+    private final AtomicLong failedStreams = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Noch nicht gesendete Positionen, solange der Stream nicht bereit ist (ID -> neueste Position, älteste ID
+    // zuerst). Zugriff nur synchronisiert; bleibt bei einem Abbruch erhalten und geht auf den nächsten Stream.
+    private final Map<Integer, V2State> backlog = new LinkedHashMap<>();
+
+    // Wird aufgerufen, sobald der Rückstau abgebaut ist oder der Stream abbricht (null = niemand wartet).
+    private volatile Runnable onReady;
+
+    public StreamingPositionPublisher(String host, int port) {
+        this(ManagedChannelBuilder.forAddress(host, port).usePlaintext().build(), true);
+    }
+
+    /**
+     * Nutzt einen bestehenden Kanal; dieser wird beim close() nicht geschlossen.
+     */
+    public StreamingPositionPublisher(ManagedChannel channel) {
+        this(channel, false);
+    }
+
+    private StreamingPositionPublisher(ManagedChannel channel, boolean ownsChannel) {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.asyncStub = TrasimaServiceGrpc.newStub(channel);
+    }
+
+    @Override
+    public synchronized void publishPosition(int id, double x, double y, double speed) {
+        if (current == null) {
+            if (broken) {
+                ClientMetrics.STREAM_RETRIES.inc();
+                broken = false;
+            }
+            current = new Stream();
+        }
+        V2State state = V2State.newBuilder()
+                .setId(id)
+                .setX(x)
+                .setY(y)
+                .setSpeed(speed)
+                .build();
+        // Solange ein Rückstau besteht, kommt jedes Update hinein: sonst käme ein älteres Update desselben
+        // Fahrzeugs aus dem Rückstau erst nach dem neueren an.
+        if (!backlog.isEmpty() || !current.requests.isReady()) {
+            if (backlog.put(id, state) != null) {
+                dropped.incrementAndGet();
+                ClientMetrics.STREAM_DROPPED.inc();
+            }
+            drainBacklog(current);
+            return;
+        }
+        current.requests.onNext(state);
+        sent.incrementAndGet();
+    }
+
+    // Schickt den Rückstau, solange der Stream bereit ist; danach wartende close()-Aufrufe wecken.
+    private void drainBacklog(Stream stream) {
+        Iterator<V2State> it = backlog.values().iterator();
+        while (it.hasNext() && stream.requests.isReady()) {
+            stream.requests.onNext(it.next());
+            it.remove();
+            sent.incrementAndGet();
+        }
+        if (backlog.isEmpty()) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * true, wenn publishPosition die nächste Position direkt senden kann: kein Rückstau und der Stream ist bereit
+     * (oder es gibt keinen, dann öffnet das nächste publishPosition einen neuen).
+     */
+    public synchronized boolean isReady() {
+        return backlog.isEmpty() && (current == null || current.requests.isReady());
+    }
+
+    /**
+     * Handler, der nach dem Abbau des Rückstaus bzw. nach einem Stream-Abbruch läuft, außerhalb der Sperre des
+     * Publishers und im gRPC-Executor; danach {@link #isReady()} erneut prüfen.
+     */
+    public void setOnReadyHandler(Runnable handler) {
+        this.onReady = handler;
+    }
+
+    private void notifyReady() {
+        Runnable handler = onReady;
+        if (handler != null) {
+            handler.run();
+        }
+    }
+
+    /** Anzahl der gesendeten Positionen. */
+    public long sent() {
+        return sent.get();
+    }
+
+    /** Anzahl der vom Server als gespeichert bestätigten Positionen (über alle Streams). */
+    public long confirmed() {
+        return confirmed.get();
+    }
+
+    /** Positionen, die vor dem Senden durch ein neueres Update desselben Fahrzeugs ersetzt wurden. */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /** Anzahl der abgebrochenen Streams. */
+    public long failedStreams() {
+        return failedStreams.get();
+    }
+
+    /**
+     * Wartet bis zu 5 Sekunden, bis der Rückstau gesendet ist; was dann noch fehlt, zählt als verworfen. Danach
+     * wird der Stream beendet und auf die abschließende Bestätigung gewartet.
+     */
+    @Override
+    public void close() {
+        Stream stream;
+        synchronized (this) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            try {
+                while (!backlog.isEmpty() && current != null) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!backlog.isEmpty()) {
+                dropped.addAndGet(backlog.size());
+                ClientMetrics.STREAM_DROPPED.add(backlog.size());
+                backlog.clear();
+            }
+            stream = current;
+            current = null;
+        }
+        if (stream != null) {
+            // Stream sauber beenden und kurz auf die abschließende Bestätigung warten.
+            stream.requests.onCompleted();
+            try {
+                stream.done.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ownsChannel) {
+            channel.shutdown();
+        }
+    }
+
+    /**
+     * Ein geöffneter PublishPositions-Stream samt Empfänger für die Zusammenfassungen.
+     */
+    private final class Stream implements ClientResponseObserver<V2State, PublishSummary> {
+
+        // Wird in beforeStart gesetzt, das gRPC noch innerhalb von publishPositions() aufruft.
+        private ClientCallStreamObserver<V2State> requests;
+        private final CountDownLatch done = new CountDownLatch(1);
+        // Letzter vom Server gemeldeter Stand dieses Streams.
+        private long lastStored;
+
+        Stream() {
+            asyncStub.publishPositions(this);
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<V2State> requestStream) {
+            this.requests = requestStream;
+            // Läuft im gRPC-Executor, sobald der Stream wieder Nachrichten annimmt
+            requestStream.setOnReadyHandler(() -> {
+                boolean drained;
+                synchronized (StreamingPositionPublisher.this) {
+                    if (current != this) {
+                        return;
+                    }
+                    drainBacklog(this);
+                    drained = backlog.isEmpty();
+                }
+                if (drained) {
+                    notifyReady();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(PublishSummary summary) {
+            confirmed.addAndGet(summary.getStored() - lastStored);
+            lastStored = summary.getStored();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            failedStreams.incrementAndGet();
+            ClientMetrics.STREAM_FAILURES.inc();
+            ERROR_LOG.log(() -> Status.fromThrowable(t).toString());
+            synchronized (StreamingPositionPublisher.this) {
+                if (current == this) {
+                    current = null;
+                    broken = true;
+                    // close() wartet nicht auf einen Stream, den es nicht mehr gibt
+                    StreamingPositionPublisher.this.notifyAll();
+                }
+            }
+            // Ohne Stream kommt kein onReady mehr; das nächste publishPosition öffnet einen neuen
+            notifyReady();
+            done.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package dhbw.trasima.trasima_aufgabe07.client;
+
+import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
+import dhbw.trasima.trasima_aufgabe07.V2Delta;
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import dhbw.trasima.trasima_aufgabe07.WatchRequest;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import java.util.Iterator;
+
+/**
+ * Ein gRPC-Client, der Fahrzeugzustände per WatchStates beobachtet statt FetchAll zu pollen.
+ *
+ * - Erste Nachricht: Snapshot aller Fahrzeuge.
+ * - Danach: nur die seit der letzten Nachricht geänderten Fahrzeuge.
+ * - Optionales Argument: Intervall in Millisekunden (Standard: Server-Standard).
+ */
+public class WatchClient {
+
+    public static void main(String[] args) {
+        int intervalMillis = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", 50051)
+                .usePlaintext()
+                .build();
+
+        TrasimaServiceGrpc.TrasimaServiceBlockingStub stub = TrasimaServiceGrpc.newBlockingStub(channel);
+
+        try {
+            // Blockierender Iterator über den Server-Stream; läuft bis der Server beendet wird
+            Iterator<V2Delta> deltas = stub.watchStates(WatchRequest.newBuilder()
+                    .setIntervalMillis(intervalMillis)
+                    .build());
+            while (deltas.hasNext()) {
+                V2Delta delta = deltas.next();
+                System.out.println((delta.getSnapshot() ? "--- Snapshot: " : "--- Delta: ")
+                        + delta.getStatesCount() + " Fahrzeuge ---");
+                for (V2State state : delta.getStatesList()) {
+                    System.out.println("V2 ID: " + state.getId() + ", X: " + state.getX() + ", Y: " + state.getY() + ", Speed: " + state.getSpeed());
+                }
+            }
+        } finally {
+            channel.shutdown();
+        }
+    }
+}
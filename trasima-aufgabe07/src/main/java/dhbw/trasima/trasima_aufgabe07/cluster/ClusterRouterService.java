@@ -0,0 +1,206 @@
+package dhbw.trasima.trasima_aufgabe07.cluster;
+
+import dhbw.trasima.trasima_aufgabe07.Ack;
+import dhbw.trasima.trasima_aufgabe07.Empty;
+import dhbw.trasima.trasima_aufgabe07.HistoryList;
+import dhbw.trasima.trasima_aufgabe07.HistoryRequest;
+import dhbw.trasima.trasima_aufgabe07.PublishSummary;
+import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
+import dhbw.trasima.trasima_aufgabe07.V2Id;
+import dhbw.trasima.trasima_aufgabe07.V2List;
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TrasimaService vor einem Cluster: bestehende Clients (DataClient, Gateway aus Aufgabe 08, SimulationClient)
+ * sprechen weiter mit einem einzigen Port und merken nichts von den Shards.
+ *
+ * - PublishPosition, Fetch und FetchHistory werden an den zuständigen Shard weitergereicht.
+ * - PublishPositions verteilt einen eingehenden Stream über einen eigenen {@link ShardedPositionPublisher} (je ein
+ *   Stream pro Shard). Die nächste Position wird erst angefordert, wenn alle Shard-Streams sie annehmen können;
+ *   die PublishSummary meldet wie beim VehicleService nur, was die Shards bestätigt (gespeichert) haben. Am
+ *   Stream-Ende werden die Shard-Streams auf einem eigenen Thread geschlossen, nicht auf dem gRPC-Executor.
+ * - FetchAll ist ein Scatter-Gather über alle Shards ({@link ShardClient#fetchAll()}).
+ * - WatchStates, FetchNearest und FetchMetrics bleiben UNIMPLEMENTED; dafür direkt die Shards fragen.
+ *
+ * Publisher, die selbst routen können, sollten den ShardedPositionPublisher verwenden und den Router umgehen.
+ */
+public class ClusterRouterService extends TrasimaServiceGrpc.TrasimaServiceImplBase {
+
+    // Nach so vielen Positionen schickt publishPositions eine Zwischenbestätigung.
+    private static final int SUMMARY_EVERY = 1000;
+
+    private final ShardClient shards;
+    // Publisher der offenen PublishPositions-Aufrufe, damit close() sie beenden kann
+    private final Set<ShardedPositionPublisher> publishers = ConcurrentHashMap.newKeySet();
+    // Schließt die Publisher beendeter Streams; close() wartet pro Shard bis zu einigen Sekunden auf Bestätigungen
+    private final ExecutorService closer = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "router-close");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ClusterRouterService(ShardClient shards) {
+        this.shards = shards;
+    }
+
+    /** Beendet die weiterleitenden Streams; den ShardClient schließt der Aufrufer. */
+    public void close() {
+        // Schon beendete Streams fertig schließen lassen, damit ihre Clients die Summe noch bekommen
+        closer.shutdown();
+        try {
+            closer.awaitTermination(15, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ShardedPositionPublisher publisher : publishers) {
+            publisher.close();
+        }
+    }
+
+    @Override
+    public void publishPosition(V2State request, StreamObserver<Ack> responseObserver) {
+        forward(shards.publish(request), responseObserver);
+    }
+
+    @Override
+    public StreamObserver<V2State> publishPositions(StreamObserver<PublishSummary> responseObserver) {
+        ServerCallStreamObserver<PublishSummary> call = (ServerCallStreamObserver<PublishSummary>) responseObserver;
+        // Positionen nur so schnell annehmen, wie die Shard-Streams sie abnehmen
+        call.disableAutoRequest();
+        ShardedPositionPublisher publisher = new ShardedPositionPublisher(shards);
+        publishers.add(publisher);
+        ForwardingStream stream = new ForwardingStream(call, publisher);
+        publisher.setOnReadyHandler(stream::resume);
+        call.request(1);
+        return stream;
+    }
+
+    @Override
+    public void fetch(V2Id request, StreamObserver<V2State> responseObserver) {
+        forward(shards.fetch(request.getId()), responseObserver);
+    }
+
+    @Override
+    public void fetchAll(Empty request, StreamObserver<V2List> responseObserver) {
+        forward(shards.fetchAll(), responseObserver);
+    }
+
+    @Override
+    public void fetchHistory(HistoryRequest request, StreamObserver<HistoryList> responseObserver) {
+        forward(shards.fetchHistory(request), responseObserver);
+    }
+
+    /**
+     * Ein eingehender PublishPositions-Stream: fordert jede Position einzeln an und bestätigt die Summe der
+     * Shard-Bestätigungen.
+     */
+    private final class ForwardingStream implements StreamObserver<V2State> {
+        private final ServerCallStreamObserver<PublishSummary> call;
+        private final ShardedPositionPublisher publisher;
+        // Nur im Aufruf-Kontext von gRPC (onNext/onCompleted nacheinander)
+        private long received;
+        private long reported;
+        // Guarded by this: true = keine Position angefordert, weil ein Shard-Stream nicht bereit war
+        private boolean paused;
+
+        ForwardingStream(ServerCallStreamObserver<PublishSummary> call, ShardedPositionPublisher publisher) {
+            this.call = call;
+            this.publisher = publisher;
+        }
+
+        @Override
+        public void onNext(V2State state) {
+            publisher.publishPosition(state.getId(), state.getX(), state.getY(), state.getSpeed());
+            received++;
+            if (received % SUMMARY_EVERY == 0) {
+                report();
+            }
+            synchronized (this) {
+                if (!publisher.isReady()) {
+                    // resume() fordert die nächste Position an, sobald der Rückstau abgebaut ist
+                    paused = true;
+                    return;
+                }
+            }
+            call.request(1);
+        }
+
+        // onReady-Handler der Shard-Streams
+        void resume() {
+            synchronized (this) {
+                if (!paused || !publisher.isReady()) {
+                    return;
+                }
+                paused = false;
+            }
+            call.request(1);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // Client weg; schon angenommene Positionen gehen trotzdem an die Shards
+            finish(() -> { });
+        }
+
+        @Override
+        public void onCompleted() {
+            // close() wartet auf die letzte Bestätigung jedes Shards, erst danach steht die Summe fest
+            finish(() -> {
+                try {
+                    call.onNext(PublishSummary.newBuilder().setStored(publisher.confirmed()).build());
+                    call.onCompleted();
+                } catch (RuntimeException e) {
+                    // Aufruf inzwischen vom Client abgebrochen
+                }
+            });
+        }
+
+        // Publisher auf dem closer-Thread schließen, danach then ausführen; nach close() direkt hier
+        private void finish(Runnable then) {
+            Runnable task = () -> {
+                publisher.close();
+                publishers.remove(publisher);
+                then.run();
+            };
+            try {
+                closer.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+
+        private void report() {
+            long confirmed = publisher.confirmed();
+            if (confirmed > reported) {
+                reported = confirmed;
+                call.onNext(PublishSummary.newBuilder().setStored(confirmed).build());
+            }
+        }
+    }
+
+    // Antwort des Shards unverändert weitergeben, Fehler mit ihrem Status (inkl. Name des Shards)
+    private static <T> void forward(CompletableFuture<T> future, StreamObserver<T> responseObserver) {
+        future.whenComplete((value, error) -> {
+            try {
+                if (error != null) {
+                    responseObserver.onError(Status.fromThrowable(error).asRuntimeException());
+                } else {
+                    responseObserver.onNext(value);
+                    responseObserver.onCompleted();
+                }
+            } catch (RuntimeException e) {
+                // Aufruf inzwischen vom Client abgebrochen
+            }
+        });
+    }
+}
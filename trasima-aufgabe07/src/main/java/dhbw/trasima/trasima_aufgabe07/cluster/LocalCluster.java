@@ -0,0 +1,246 @@
+package dhbw.trasima.trasima_aufgabe07.cluster;
+
+import dhbw.trasima.trasima_aufgabe07.V2List;
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import dhbw.trasima.trasima_aufgabe07.server.VehicleService;
+import dhbw.trasima.trasima_bis_5.history.PositionHistory;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster-Modus auf einem Rechner: mehrere VehicleService-Instanzen, jede besitzt per {@link ShardRing} einen Teil
+ * der Fahrzeug-IDs.
+ *
+ * - Startet {@code --shards} Server auf localhost ab {@code --base-port} (0 = freie Ports) oder verbindet sich mit
+ *   {@code --targets host:port,...}, z.B. mit einzeln gestarteten {@code TrasimaGrpcServer --port ...}.
+ * - Prüflauf: {@code --vehicles} Fahrzeuge über den {@link ShardedPositionPublisher} senden, danach jeden Shard
+ *   einzeln abfragen (nur eigene IDs?), FetchAll per Scatter-Gather (alle Fahrzeuge genau einmal?) und Fetch pro
+ *   Fahrzeug (richtiger Zustand vom richtigen Shard?). Ausgabe: Verteilung und Laufzeiten, jede fehlgeschlagene
+ *   Prüfung als {@code FEHLER:}-Zeile; Exit-Code 1 bei Fehlern.
+ * - Mit {@code --router-port} zusätzlich ein {@link ClusterRouterService}: DataClient, SimulationClient und das
+ *   Gateway aus Aufgabe 08 funktionieren dann unverändert gegen den Cluster.
+ * - {@code --keep-running} lässt Shards und Router nach dem Prüflauf weiterlaufen (Strg+C beendet).
+ */
+public final class LocalCluster {
+
+    private LocalCluster() {
+    }
+
+    /**
+     * Argumente: {@code [--shards 3] [--base-port 50061] [--targets host:port,...] [--router-port -1]
+     * [--vehicles 1000] [--fan-out 8] [--deadline-millis 2000] [--virtual-nodes 128] [--keep-running]}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int shardCount = intArg(args, "--shards", 3);
+        int basePort = intArg(args, "--base-port", 50061);
+        String targetList = stringArg(args, "--targets", null);
+        int routerPort = intArg(args, "--router-port", -1);
+        int vehicles = intArg(args, "--vehicles", 1000);
+        boolean keepRunning = hasFlag(args, "--keep-running");
+        ShardClient.Options options = new ShardClient.Options();
+        options.maxFanOut = intArg(args, "--fan-out", options.maxFanOut);
+        options.deadlineMillis = intArg(args, "--deadline-millis", (int) options.deadlineMillis);
+        options.virtualNodes = intArg(args, "--virtual-nodes", options.virtualNodes);
+
+        List<Server> servers = new ArrayList<>();
+        List<VehicleService> services = new ArrayList<>();
+        List<String> targets;
+        if (targetList != null) {
+            targets = ShardClient.parseTargets(targetList);
+        } else {
+            targets = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++) {
+                // Label shard = Index in der Shard-Liste, damit jeder Shard seine eigene Fahrzeug-Anzahl meldet
+                VehicleService service = new VehicleService(false, new PositionHistory.Options(),
+                        Integer.toString(i));
+                Server server = ServerBuilder.forPort(basePort == 0 ? 0 : basePort + i)
+                        .addService(service)
+                        .build()
+                        .start();
+                services.add(service);
+                servers.add(server);
+                targets.add("localhost:" + server.getPort());
+            }
+        }
+        System.out.println("Shards: " + targets);
+
+        ShardClient client = new ShardClient(targets, options);
+        ClusterRouterService router = null;
+        Server routerServer = null;
+        if (routerPort >= 0) {
+            router = new ClusterRouterService(client);
+            routerServer = ServerBuilder.forPort(routerPort).addService(router).build().start();
+            System.out.println("Router: localhost:" + routerServer.getPort());
+        }
+
+        List<String> failures;
+        try {
+            failures = verify(client, vehicles);
+        } catch (RuntimeException e) {
+            failures = List.of("Prüflauf abgebrochen: " + e);
+        }
+        if (!failures.isEmpty()) {
+            failures.forEach(f -> System.out.println("FEHLER: " + f));
+        } else {
+            System.out.println("Prüfungen bestanden.");
+        }
+
+        if (keepRunning) {
+            ClusterRouterService r = router;
+            Server rs = routerServer;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(servers, services, client, r, rs)));
+            System.out.println("Cluster läuft, Strg+C beendet.");
+            Thread.currentThread().join();
+        }
+        shutdown(servers, services, client, router, routerServer);
+        if (!failures.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Sendet die Flotte, prüft Besitz, Scatter-Gather und gezielte Abfragen.
+     *
+     * @return Beschreibung jeder fehlgeschlagenen Prüfung, leer wenn alle bestanden sind
+     */
+    static List<String> verify(ShardClient client, int vehicles) {
+        ShardRing ring = client.ring();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double[] speeds = new double[vehicles + 1];
+        long start = System.nanoTime();
+        try (ShardedPositionPublisher publisher = new ShardedPositionPublisher(client)) {
+            for (int id = 1; id <= vehicles; id++) {
+                speeds[id] = random.nextDouble() * 30.0;
+                publisher.publishPosition(id, 49.45 + id * 1e-5, 8.45 + id * 1e-5, speeds[id]);
+            }
+            // close() wartet auf die letzte Bestätigung jedes Shards, danach ist alles gespeichert
+        }
+        System.out.printf(Locale.ROOT, "Gesendet: %d Fahrzeuge in %.1f ms%n", vehicles, millisSince(start));
+
+        List<String> failures = new ArrayList<>();
+        for (int shard = 0; shard < ring.size(); shard++) {
+            V2List own = client.fetchShard(shard).join();
+            List<Integer> foreign = new ArrayList<>();
+            for (V2State state : own.getStatesList()) {
+                if (ring.shardOf(state.getId()) != shard) {
+                    foreign.add(state.getId());
+                }
+            }
+            if (!foreign.isEmpty()) {
+                failures.add(String.format(Locale.ROOT, "Shard %s hält %d fremde IDs: %s", ring.shard(shard),
+                        foreign.size(), examples(foreign)));
+            }
+            System.out.printf(Locale.ROOT, "  %-22s %6d Fahrzeuge (%.1f %%), fremde IDs: %d%n", ring.shard(shard),
+                    own.getStatesCount(), 100.0 * own.getStatesCount() / Math.max(1, vehicles), foreign.size());
+        }
+
+        start = System.nanoTime();
+        V2List all = client.fetchAll().join();
+        double scatterMillis = millisSince(start);
+        boolean[] seen = new boolean[vehicles + 1];
+        List<Integer> duplicates = new ArrayList<>();
+        for (V2State state : all.getStatesList()) {
+            int id = state.getId();
+            if (id >= 1 && id <= vehicles) {
+                if (seen[id]) {
+                    duplicates.add(id);
+                }
+                seen[id] = true;
+            }
+        }
+        List<Integer> missing = new ArrayList<>();
+        for (int id = 1; id <= vehicles; id++) {
+            if (!seen[id]) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            failures.add(String.format(Locale.ROOT, "FetchAll: %d Fahrzeuge fehlen: %s", missing.size(),
+                    examples(missing)));
+        }
+        if (!duplicates.isEmpty()) {
+            failures.add(String.format(Locale.ROOT, "FetchAll: %d Fahrzeuge doppelt: %s", duplicates.size(),
+                    examples(duplicates)));
+        }
+        System.out.printf(Locale.ROOT, "FetchAll (Scatter-Gather): %d Fahrzeuge in %.1f ms, fehlend %d, doppelt %d%n",
+                all.getStatesCount(), scatterMillis, missing.size(), duplicates.size());
+
+        start = System.nanoTime();
+        List<Integer> wrong = new ArrayList<>();
+        for (int id = 1; id <= vehicles; id++) {
+            if (client.fetch(id).join().getSpeed() != speeds[id]) {
+                wrong.add(id);
+            }
+        }
+        if (!wrong.isEmpty()) {
+            failures.add(String.format(Locale.ROOT, "Fetch: %d Fahrzeuge mit falschem Zustand: %s", wrong.size(),
+                    examples(wrong)));
+        }
+        System.out.printf(Locale.ROOT, "Fetch pro Fahrzeug: %.3f ms im Mittel, falsche Zustände: %d%n",
+                millisSince(start) / Math.max(1, vehicles), wrong.size());
+        return failures;
+    }
+
+    // Die ersten IDs einer Fehlerliste, damit eine FEHLER-Zeile auch bei tausend Treffern lesbar bleibt
+    private static String examples(List<Integer> ids) {
+        int shown = Math.min(ids.size(), 10);
+        String list = ids.subList(0, shown).toString();
+        return shown < ids.size() ? list + " ..." : list;
+    }
+
+    private static void shutdown(List<Server> servers, List<VehicleService> services, ShardClient client,
+                                 ClusterRouterService router, Server routerServer) {
+        if (routerServer != null) {
+            routerServer.shutdown();
+            router.close();
+        }
+        client.close();
+        for (Server server : servers) {
+            server.shutdown();
+        }
+        for (Server server : servers) {
+            try {
+                server.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        services.forEach(VehicleService::close);
+    }
+
+    private static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    private static int intArg(String[] args, String key, int defaultValue) {
+        String value = stringArg(args, key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value);
+    }
+
+    private static boolean hasFlag(String[] args, String key) {
+        for (String arg : args) {
+            if (key.equals(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stringArg(String[] args, String key, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (key.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,244 @@
+package dhbw.trasima.trasima_aufgabe07.cluster;
+
+import dhbw.trasima.trasima_aufgabe07.Ack;
+import dhbw.trasima.trasima_aufgabe07.Empty;
+import dhbw.trasima.trasima_aufgabe07.HistoryList;
+import dhbw.trasima.trasima_aufgabe07.HistoryRequest;
+import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
+import dhbw.trasima.trasima_aufgabe07.V2Id;
+import dhbw.trasima.trasima_aufgabe07.V2List;
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import dhbw.trasima.trasima_bis_5.metrics.Counter;
+import dhbw.trasima.trasima_bis_5.metrics.LatencyHistogram;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client für einen Cluster aus mehreren VehicleService-Instanzen, die sich die Fahrzeuge per {@link ShardRing}
+ * teilen.
+ *
+ * - Ein ManagedChannel pro Shard, alle Aufrufe asynchron.
+ * - fetch / publish / fetchHistory gehen direkt an den Shard, dem das Fahrzeug gehört.
+ * - fetchAll fragt alle Shards ab (Scatter-Gather) und fügt die Listen zusammen. Höchstens {@code maxFanOut}
+ *   Aufrufe sind gleichzeitig offen; jeder fertige Aufruf startet den nächsten Shard. Alle Aufrufe teilen sich eine
+ *   Deadline, spätere Wellen verlängern die Gesamtzeit also nicht.
+ * - Fällt ein Shard aus, schlägt fetchAll mit dessen Status fehl, statt stillschweigend einen Teil der Flotte zu
+ *   liefern. Die noch offenen Aufrufe an die übrigen Shards werden dabei abgebrochen.
+ */
+public class ShardClient implements AutoCloseable {
+
+    private static final LatencyHistogram SCATTER_LATENCY = MetricsRegistry.global().histogram(
+            "trasima_cluster_fetch_all_seconds", "Dauer eines FetchAll über alle Shards");
+
+    /** Einstellungen des Clients; Standardwerte passen für eine Handvoll Shards auf einem Rechner. */
+    public static final class Options {
+        /** Punkte pro Shard auf dem Ring; mehr Punkte verteilen die Fahrzeuge gleichmäßiger. */
+        public int virtualNodes = 128;
+        /** Höchstzahl gleichzeitig offener Aufrufe bei fetchAll. */
+        public int maxFanOut = 8;
+        /** Deadline pro fetch/publish bzw. für ein ganzes fetchAll. */
+        public long deadlineMillis = 2000;
+    }
+
+    private final ShardRing ring;
+    private final Options options;
+    private final ManagedChannel[] channels;
+    private final TrasimaServiceGrpc.TrasimaServiceStub[] stubs;
+    private final Counter[] failures;
+
+    /**
+     * @param targets Shards als "host:port", alle Clients eines Clusters brauchen dieselbe Menge
+     */
+    public ShardClient(List<String> targets, Options options) {
+        if (options.maxFanOut < 1) {
+            throw new IllegalArgumentException("maxFanOut muss >= 1 sein");
+        }
+        this.ring = new ShardRing(targets, options.virtualNodes);
+        this.options = options;
+        this.channels = new ManagedChannel[ring.size()];
+        this.stubs = new TrasimaServiceGrpc.TrasimaServiceStub[ring.size()];
+        this.failures = new Counter[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            channels[i] = ManagedChannelBuilder.forTarget(ring.shard(i))
+                    .usePlaintext()
+                    .build();
+            stubs[i] = TrasimaServiceGrpc.newStub(channels[i]);
+            failures[i] = MetricsRegistry.global().counter("trasima_cluster_shard_failures_total",
+                    "Fehlgeschlagene Aufrufe an einen Shard", "shard", ring.shard(i));
+        }
+    }
+
+    /** Zerlegt "host:port,host:port" in eine Shard-Liste. */
+    public static List<String> parseTargets(String csv) {
+        List<String> targets = new ArrayList<>();
+        for (String target : csv.split(",")) {
+            if (!target.isBlank()) {
+                targets.add(target.trim());
+            }
+        }
+        return targets;
+    }
+
+    public ShardRing ring() {
+        return ring;
+    }
+
+    /** Kanal zum Shard mit diesem Index, z.B. für einen StreamingPositionPublisher. */
+    ManagedChannel channel(int shard) {
+        return channels[shard];
+    }
+
+    /** Position an den zuständigen Shard (Unary-Call). */
+    public CompletableFuture<Ack> publish(V2State state) {
+        int shard = ring.shardOf(state.getId());
+        CompletableFuture<Ack> future = new CompletableFuture<>();
+        stubs[shard].withDeadlineAfter(options.deadlineMillis, TimeUnit.MILLISECONDS)
+                .publishPosition(state, completing(future, shard));
+        return future;
+    }
+
+    /** Zustand eines Fahrzeugs vom zuständigen Shard; unbekannte Fahrzeuge liefern ein leeres V2State. */
+    public CompletableFuture<V2State> fetch(int id) {
+        int shard = ring.shardOf(id);
+        CompletableFuture<V2State> future = new CompletableFuture<>();
+        stubs[shard].withDeadlineAfter(options.deadlineMillis, TimeUnit.MILLISECONDS)
+                .fetch(V2Id.newBuilder().setId(id).build(), completing(future, shard));
+        return future;
+    }
+
+    /** Positionsverlauf eines Fahrzeugs vom zuständigen Shard. */
+    public CompletableFuture<HistoryList> fetchHistory(HistoryRequest request) {
+        int shard = ring.shardOf(request.getId());
+        CompletableFuture<HistoryList> future = new CompletableFuture<>();
+        stubs[shard].withDeadlineAfter(options.deadlineMillis, TimeUnit.MILLISECONDS)
+                .fetchHistory(request, completing(future, shard));
+        return future;
+    }
+
+    /** Alle Fahrzeuge aller Shards, Reihenfolge wie die Shard-Liste. */
+    public CompletableFuture<V2List> fetchAll() {
+        return new ScatterGather().start();
+    }
+
+    /** Nur die Fahrzeuge eines einzelnen Shards, z.B. um die Verteilung zu prüfen. */
+    public CompletableFuture<V2List> fetchShard(int shard) {
+        CompletableFuture<V2List> future = new CompletableFuture<>();
+        stubs[shard].withDeadlineAfter(options.deadlineMillis, TimeUnit.MILLISECONDS)
+                .fetchAll(Empty.getDefaultInstance(), completing(future, shard));
+        return future;
+    }
+
+    @Override
+    public void close() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdown();
+        }
+        for (ManagedChannel channel : channels) {
+            try {
+                channel.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ein fetchAll: startet zuerst maxFanOut Shards, danach pro fertigem Shard den nächsten.
+     */
+    private final class ScatterGather {
+        private final long start = System.nanoTime();
+        private final Deadline deadline = Deadline.after(options.deadlineMillis, TimeUnit.MILLISECONDS);
+        private final V2List[] parts = new V2List[ring.size()];
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining = new AtomicInteger(ring.size());
+        private final CompletableFuture<V2List> result = new CompletableFuture<>();
+        // Alle Shard-Aufrufe laufen in diesem Kontext, cancel() bricht die noch offenen ab
+        private final Context.CancellableContext context = Context.current().withCancellation();
+
+        CompletableFuture<V2List> start() {
+            int initial = Math.min(ring.size(), options.maxFanOut);
+            for (int i = 0; i < initial; i++) {
+                launchNext();
+            }
+            return result;
+        }
+
+        private void launchNext() {
+            int shard = next.getAndIncrement();
+            // Nach einem Fehler keine weiteren Shards mehr anfragen
+            if (shard >= parts.length || result.isDone()) {
+                return;
+            }
+            CompletableFuture<V2List> call = new CompletableFuture<>();
+            context.run(() -> stubs[shard].withDeadline(deadline)
+                    .fetchAll(Empty.getDefaultInstance(), completing(call, shard)));
+            call.whenComplete((list, error) -> {
+                if (error != null) {
+                    if (result.completeExceptionally(error)) {
+                        SCATTER_LATENCY.recordSince(start);
+                        // Ergebnis steht fest, die anderen Shards nicht weiter belasten
+                        context.cancel(error);
+                    }
+                    return;
+                }
+                parts[shard] = list;
+                // decrementAndGet ordnet das Schreiben in parts vor das Lesen im letzten Callback
+                if (remaining.decrementAndGet() == 0) {
+                    SCATTER_LATENCY.recordSince(start);
+                    result.complete(merge());
+                    // Alle Aufrufe fertig; gibt nur den Kontext frei
+                    context.cancel(null);
+                } else {
+                    launchNext();
+                }
+            });
+        }
+
+        private V2List merge() {
+            V2List.Builder merged = V2List.newBuilder();
+            for (V2List part : parts) {
+                merged.addAllStates(part.getStatesList());
+            }
+            return merged.build();
+        }
+    }
+
+    // Unary-Antwort in ein Future; Fehler tragen den Namen des Shards in der Beschreibung
+    private <T> StreamObserver<T> completing(CompletableFuture<T> future, int shard) {
+        return new StreamObserver<>() {
+            private T value;
+
+            @Override
+            public void onNext(T v) {
+                value = v;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // Von fetchAll selbst abgebrochen (anderer Shard fehlgeschlagen): kein Ausfall dieses Shards
+                if (!Context.current().isCancelled()) {
+                    failures[shard].inc();
+                }
+                future.completeExceptionally(Status.fromThrowable(t)
+                        .augmentDescription("Shard " + ring.shard(shard))
+                        .asRuntimeException());
+            }
+
+            @Override
+            public void onCompleted() {
+                future.complete(value);
+            }
+        };
+    }
+}
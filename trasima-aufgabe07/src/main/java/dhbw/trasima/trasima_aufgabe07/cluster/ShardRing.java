@@ -0,0 +1,101 @@
+package dhbw.trasima.trasima_aufgabe07.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Konsistentes Hashing von Fahrzeug-IDs auf Shards.
+ *
+ * - Jeder Shard (z.B. "localhost:50061") liegt mit {@code virtualNodes} Punkten auf einem 64-Bit-Ring.
+ * - Ein Fahrzeug gehört dem Shard des ersten Punkts im Uhrzeigersinn nach dem Hash seiner ID.
+ * - Die Punkte hängen nur vom Namen des Shards ab: Clients mit derselben Shard-Liste routen gleich, unabhängig von
+ *   der Reihenfolge. Kommt ein Shard hinzu oder fällt weg, wandern nur etwa 1/n der Fahrzeuge.
+ * - Unveränderlich; {@link #shardOf} legt keine Objekte an (sortierte Arrays statt TreeMap).
+ */
+public final class ShardRing {
+
+    private final List<String> shards;
+    // Sortierte Ringpunkte und der Shard-Index zum Punkt an derselben Stelle
+    private final long[] points;
+    private final int[] owners;
+
+    public ShardRing(List<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("mindestens ein Shard nötig");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes muss >= 1 sein");
+        }
+        this.shards = List.copyOf(shards);
+        int count = this.shards.size() * virtualNodes;
+        long[] raw = new long[count];
+        int n = 0;
+        for (int shard = 0; shard < this.shards.size(); shard++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                raw[n++] = hash(this.shards.get(shard) + "#" + replica);
+            }
+        }
+        // Punkte sortieren und die Besitzer mitnehmen; gleiche Punkte (praktisch nie) entscheidet der Name
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int cmp = Long.compareUnsigned(raw[a], raw[b]);
+            return cmp != 0 ? cmp : this.shards.get(a / virtualNodes).compareTo(this.shards.get(b / virtualNodes));
+        });
+        this.points = new long[count];
+        this.owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = raw[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    /** Index des Shards in der Liste aus dem Konstruktor, dem das Fahrzeug gehört. */
+    public int shardOf(int vehicleId) {
+        long key = mix(vehicleId);
+        // Erster Punkt >= key (vorzeichenlos); hinter dem letzten Punkt geht es am Anfang weiter
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    public String shard(int index) {
+        return shards.get(index);
+    }
+
+    public List<String> shards() {
+        return shards;
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    // FNV-1a über den Namen, danach gemischt, damit ähnliche Namen ("host:50061", "host:50062") streuen
+    private static long hash(String name) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // Finalizer von SplitMix64: aufeinanderfolgende IDs landen gleichmäßig verteilt auf dem Ring
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
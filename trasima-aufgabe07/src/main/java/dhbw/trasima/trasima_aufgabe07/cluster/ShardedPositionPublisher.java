@@ -0,0 +1,85 @@
+package dhbw.trasima.trasima_aufgabe07.cluster;
+
+import dhbw.trasima.trasima_aufgabe07.client.StreamingPositionPublisher;
+import dhbw.trasima.trasima_bis_5.IPositionPublisher;
+
+/**
+ * Publisher für einen Cluster: jede Position geht direkt an den Shard, dem das Fahrzeug gehört.
+ *
+ * - Pro Shard ein StreamingPositionPublisher auf dem Kanal des {@link ShardClient} (ein PublishPositions-Stream
+ *   pro Shard, kein Umweg über einen Router).
+ * - Ein Fahrzeug landet immer auf demselben Stream, seine Updates kommen also in Reihenfolge an.
+ * - Kann wie der PooledPublisherFactory-Publisher von beliebig vielen VirtualVehicles geteilt werden.
+ * - {@link #isReady()} / {@link #setOnReadyHandler}: Flusskontrolle über alle Shard-Streams, z.B. für den
+ *   ClusterRouterService.
+ */
+public class ShardedPositionPublisher implements IPositionPublisher, AutoCloseable {
+
+    private final ShardRing ring;
+    private final StreamingPositionPublisher[] publishers;
+
+    public ShardedPositionPublisher(ShardClient client) {
+        this.ring = client.ring();
+        this.publishers = new StreamingPositionPublisher[ring.size()];
+        for (int i = 0; i < publishers.length; i++) {
+            publishers[i] = new StreamingPositionPublisher(client.channel(i));
+        }
+    }
+
+    @Override
+    public void publishPosition(int id, double x, double y, double speed) {
+        publishers[ring.shardOf(id)].publishPosition(id, x, y, speed);
+    }
+
+    /** true, wenn jeder Shard-Stream die nächste Position direkt senden kann. */
+    public boolean isReady() {
+        for (StreamingPositionPublisher p : publishers) {
+            if (!p.isReady()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Handler für jeden Shard-Stream, siehe {@link StreamingPositionPublisher#setOnReadyHandler}. */
+    public void setOnReadyHandler(Runnable handler) {
+        for (StreamingPositionPublisher p : publishers) {
+            p.setOnReadyHandler(handler);
+        }
+    }
+
+    /** Summe der gesendeten Positionen über alle Shards. */
+    public long sent() {
+        long sum = 0;
+        for (StreamingPositionPublisher p : publishers) {
+            sum += p.sent();
+        }
+        return sum;
+    }
+
+    /** Summe der von den Shards bestätigten Positionen. */
+    public long confirmed() {
+        long sum = 0;
+        for (StreamingPositionPublisher p : publishers) {
+            sum += p.confirmed();
+        }
+        return sum;
+    }
+
+    /** Summe der Positionen, die vor dem Senden ersetzt oder beim Schließen verworfen wurden. */
+    public long dropped() {
+        long sum = 0;
+        for (StreamingPositionPublisher p : publishers) {
+            sum += p.dropped();
+        }
+        return sum;
+    }
+
+    /** Schließt die Streams und wartet auf die letzten Bestätigungen; die Kanäle gehören dem ShardClient. */
+    @Override
+    public void close() {
+        for (StreamingPositionPublisher p : publishers) {
+            p.close();
+        }
+    }
+}
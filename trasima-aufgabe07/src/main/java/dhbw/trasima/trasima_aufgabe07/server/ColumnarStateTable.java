@@ -0,0 +1,78 @@
+package dhbw.trasima.trasima_aufgabe07.server;
+
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import dhbw.trasima.trasima_bis_5.persistence.StatePersistence;
+import dhbw.trasima.trasima_bis_5.tcp.ColumnarV2Store;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ablage in einem {@link ColumnarV2Store}: kein Integer-Key und kein gespeichertes Protobuf-Objekt pro Fahrzeug,
+ * Updates schreiben in die vorhandenen Spalten.
+ *
+ * - Protobuf-Objekte werden erst beim Lesen (Fetch, FetchAll, WatchStates, FetchNearest) erzeugt.
+ * - Der NearestIndex hängt als PositionListener am Speicher und wird im exklusiven Abschnitt der ID aktualisiert.
+ * - Mit einem WAL-Verzeichnis überlebt der Zustand einen Neustart ({@link StatePersistence}); save() kehrt dann
+ *   erst zurück, wenn die Änderung auf der Platte ist.
+ */
+final class ColumnarStateTable implements StateTable {
+
+    private final ColumnarV2Store store;
+    private final StatePersistence persistence;
+
+    ColumnarStateTable(NearestIndex nearestIndex) {
+        this.store = new ColumnarV2Store(nearestIndex::move);
+        this.persistence = null;
+    }
+
+    /**
+     * Persistente Variante: stellt den Zustand aus walDir wieder her (inklusive NearestIndex).
+     */
+    ColumnarStateTable(NearestIndex nearestIndex, Path walDir) throws IOException {
+        this.persistence = StatePersistence.open(walDir, new StatePersistence.Options(), nearestIndex::move);
+        this.store = persistence.store();
+    }
+
+    @Override
+    public V2State get(int id) {
+        V2State[] result = new V2State[1];
+        store.read(id, (i, x, y, speed, direction, timestamp) -> result[0] = toProto(i, x, y, speed));
+        return result[0];
+    }
+
+    @Override
+    public void save(V2State state) {
+        store.save(state.getId(), state.getX(), state.getY(), state.getSpeed(), System.currentTimeMillis());
+    }
+
+    @Override
+    public Collection<V2State> values() {
+        List<V2State> result = new ArrayList<>(store.size());
+        store.forEach((id, x, y, speed, direction, timestamp) -> result.add(toProto(id, x, y, speed)));
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public void close() {
+        if (persistence != null) {
+            try {
+                persistence.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static V2State toProto(int id, double x, double y, double speed) {
+        return V2State.newBuilder().setId(id).setX(x).setY(y).setSpeed(speed).build();
+    }
+}
@@ -0,0 +1,43 @@
+package dhbw.trasima.trasima_aufgabe07.server;
+
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bisherige Ablage: ID -> Protobuf-Zustand in einer ConcurrentHashMap.
+ */
+final class MapStateTable implements StateTable {
+
+    private final ConcurrentMap<Integer, V2State> states = new ConcurrentHashMap<>();
+    private final NearestIndex nearestIndex;
+
+    MapStateTable(NearestIndex nearestIndex) {
+        this.nearestIndex = nearestIndex;
+    }
+
+    @Override
+    public V2State get(int id) {
+        return states.get(id);
+    }
+
+    @Override
+    public void save(V2State state) {
+        // compute() serialisiert pro ID, damit Map und Index nicht auseinanderlaufen.
+        states.compute(state.getId(), (id, previous) -> {
+            nearestIndex.move(id, previous, state);
+            return state;
+        });
+    }
+
+    @Override
+    public Collection<V2State> values() {
+        return states.values();
+    }
+
+    @Override
+    public int size() {
+        return states.size();
+    }
+}
@@ -0,0 +1,72 @@
+package dhbw.trasima.trasima_aufgabe07.server;
+
+import dhbw.trasima.trasima_bis_5.metrics.Counter;
+import dhbw.trasima.trasima_bis_5.metrics.LatencyHistogram;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Misst jeden Aufruf vom Eingang bis zum Abschluss (close) und zählt die Statuscodes.
+ *
+ * - trasima_request_duration_seconds{transport="grpc",method=...}: bei Streams (PublishPositions, WatchStates) die
+ *   Lebensdauer des Streams.
+ * - trasima_grpc_responses_total{method=...,code=...}
+ *
+ * Die Metriken werden pro Methode bzw. Methode und Code einmal angelegt und hier zwischengespeichert.
+ */
+final class MetricsInterceptor implements ServerInterceptor {
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Counter> responses = new ConcurrentHashMap<>();
+
+    @Override
+    public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                       ServerCallHandler<Q, R> next) {
+        String method = call.getMethodDescriptor().getBareMethodName();
+        long start = System.nanoTime();
+        // Abgebrochene Aufrufe (Client weg, Deadline) enden ohne close(); gezählt wird trotzdem genau einmal.
+        AtomicBoolean done = new AtomicBoolean();
+        ServerCall.Listener<Q> listener = next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                record(method, start, status.getCode(), done);
+                super.close(status, trailers);
+            }
+        }, headers);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onCancel() {
+                record(method, start, Status.Code.CANCELLED, done);
+                super.onCancel();
+            }
+        };
+    }
+
+    private void record(String method, long start, Status.Code code, AtomicBoolean done) {
+        if (done.compareAndSet(false, true)) {
+            latency(method).recordSince(start);
+            responses(method, code).inc();
+        }
+    }
+
+    private LatencyHistogram latency(String method) {
+        return latencies.computeIfAbsent(method, m -> MetricsRegistry.global().histogram(
+                "trasima_request_duration_seconds", "Bearbeitungszeit einer Anfrage im Server",
+                "transport", "grpc", "method", m));
+    }
+
+    private Counter responses(String method, Status.Code code) {
+        return responses.computeIfAbsent(method + ' ' + code, key -> MetricsRegistry.global().counter(
+                "trasima_grpc_responses_total", "Abgeschlossene gRPC-Aufrufe nach Statuscode",
+                "method", method, "code", code.name()));
+    }
+}
@@ -0,0 +1,176 @@
+package dhbw.trasima.trasima_aufgabe07.server;
+
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Gitter-Index über die Fahrzeugzustände für FetchNearest (k nächste Fahrzeuge).
+ *
+ * - x wird als Breite, y als Länge in Grad interpretiert (wie beim REST-Publisher aus Aufgabe 10).
+ * - Zellen sind {@value #CELL_DEGREES}° groß; es existieren nur Zellen mit Fahrzeugen.
+ * - move() verschiebt eine ID zwischen zwei Zellen und muss pro ID serialisiert aufgerufen werden
+ *   (das übernehmen die {@link StateTable}-Implementierungen).
+ * - Die Suche läuft ringförmig um die Zelle des Punkts nach außen und hört auf, sobald kein Fahrzeug außerhalb
+ *   der bisherigen Ringe näher sein kann als das k-te gefundene. Wären mehr Zellen zu prüfen als es Fahrzeuge
+ *   gibt, wird stattdessen einmal über alle Fahrzeuge gelaufen.
+ * - Entfernungen wie GeoUtil.distanceMeters in Aufgabe 10 (Haversine, Kugel mit 6 371 km Radius).
+ *   Die Längengrad-Grenze ±180° wird nicht umbrochen.
+ */
+final class NearestIndex {
+
+    static final double CELL_DEGREES = 0.01;
+    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+
+    private final ConcurrentMap<Long, Set<Integer>> cells = new ConcurrentHashMap<>();
+
+    /**
+     * Trägt die ID von der Zelle von previous in die Zelle von current um; null bedeutet neu bzw. gelöscht.
+     */
+    void move(int id, V2State previous, V2State current) {
+        move(id, previous != null, previous == null ? 0.0 : previous.getX(), previous == null ? 0.0 : previous.getY(),
+                current != null, current == null ? 0.0 : current.getX(), current == null ? 0.0 : current.getY());
+    }
+
+    /**
+     * Wie {@link #move(int, V2State, V2State)}, nur mit Koordinaten (für den spaltenbasierten Speicher).
+     */
+    void move(int id, boolean existed, double oldX, double oldY, boolean exists, double x, double y) {
+        long from = cellOf(oldX, oldY);
+        long to = cellOf(x, y);
+        if (existed && exists && from == to) {
+            // Der Normalfall: das Fahrzeug bleibt in seiner Zelle.
+            return;
+        }
+        if (existed) {
+            cells.computeIfPresent(from, (cell, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if (exists) {
+            cells.compute(to, (cell, ids) -> {
+                Set<Integer> result = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                result.add(id);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * Die höchstens k nächsten Fahrzeuge innerhalb von maxMeters, nächstes zuerst.
+     */
+    List<Hit> nearest(StateTable states, double x, double y, int k, double maxMeters) {
+        // Max-Heap: an der Spitze steht das bisher k-te (am weitesten entfernte) Fahrzeug.
+        PriorityQueue<Hit> best = new PriorityQueue<>(k, Comparator.comparingDouble(Hit::distanceMeters).reversed());
+        int row0 = index(x);
+        int col0 = index(y);
+
+        for (int r = 0; ; r++) {
+            long side = 2L * r + 1;
+            if (side * side > states.size()) {
+                // Zu viele (meist leere) Zellen: ein Durchlauf über alle Fahrzeuge ist billiger.
+                best.clear();
+                for (V2State state : states.values()) {
+                    offer(best, state, x, y, k, maxMeters);
+                }
+                break;
+            }
+            visitRing(states, best, row0, col0, r, x, y, k, maxMeters);
+
+            double bound = lowerBoundOutside(x, y, row0, col0, r);
+            if (bound > maxMeters || (best.size() == k && bound >= best.peek().distanceMeters())) {
+                break;
+            }
+        }
+
+        List<Hit> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Hit::distanceMeters));
+        return Collections.unmodifiableList(result);
+    }
+
+    private void visitRing(StateTable states, PriorityQueue<Hit> best, int row0, int col0, int r,
+                           double x, double y, int k, double maxMeters) {
+        for (int row = row0 - r; row <= row0 + r; row++) {
+            // Innerhalb des Rings nur die Randzellen; die inneren wurden schon in früheren Runden besucht.
+            int step = (row == row0 - r || row == row0 + r) ? 1 : Math.max(1, 2 * r);
+            for (int col = col0 - r; col <= col0 + r; col += step) {
+                Set<Integer> ids = cells.get(key(row, col));
+                if (ids == null) {
+                    continue;
+                }
+                for (Integer id : ids) {
+                    // Der Index kann einer gleichzeitigen Bewegung kurz hinterherhinken; es zählt der aktuelle Zustand.
+                    V2State state = states.get(id);
+                    if (state != null) {
+                        offer(best, state, x, y, k, maxMeters);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void offer(PriorityQueue<Hit> best, V2State state, double x, double y, int k, double maxMeters) {
+        double distance = distanceMeters(x, y, state.getX(), state.getY());
+        if (distance > maxMeters) {
+            return;
+        }
+        if (best.size() < k) {
+            best.add(new Hit(state, distance));
+        } else if (distance < best.peek().distanceMeters()) {
+            best.poll();
+            best.add(new Hit(state, distance));
+        }
+    }
+
+    /**
+     * Untere Schranke für die Entfernung zu jedem Punkt außerhalb der Ringe 0..r.
+     * Solche Punkte liegen jenseits eines Breitenkreises (Abstand = Breitendifferenz auf dem Meridian) oder jenseits
+     * eines Meridians (kürzester Abstand zu einem Großkreis: asin(cos(Breite) * sin(Längendifferenz))).
+     */
+    private static double lowerBoundOutside(double x, double y, int row0, int col0, int r) {
+        double latGap = Math.min((row0 + r + 1) * CELL_DEGREES - x, x - (row0 - r) * CELL_DEGREES);
+        double lonGap = Math.min((col0 + r + 1) * CELL_DEGREES - y, y - (col0 - r) * CELL_DEGREES);
+        double latBound = EARTH_RADIUS_METERS * Math.toRadians(Math.max(0.0, latGap));
+        double lonBound = EARTH_RADIUS_METERS * Math.asin(Math.min(1.0,
+                Math.cos(Math.toRadians(x)) * Math.sin(Math.toRadians(Math.min(90.0, Math.max(0.0, lonGap))))));
+        return Math.min(latBound, lonBound);
+    }
+
+    /**
+     * Haversine-Entfernung; dieselbe Formel wie GeoUtil.distanceMeters in Aufgabe 10, damit beide Backends
+     * dieselben Entfernungen liefern.
+     */
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dPhi = Math.toRadians(lat2 - lat1);
+        double dLambda = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(dPhi / 2.0) * Math.sin(dPhi / 2.0)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.sin(dLambda / 2.0) * Math.sin(dLambda / 2.0);
+        double c = 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1.0 - a));
+        return EARTH_RADIUS_METERS * c;
+    }
+
+    private static long cellOf(double x, double y) {
+        return key(index(x), index(y));
+    }
+
+    private static int index(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    record Hit(V2State state, double distanceMeters) {
+    }
+}
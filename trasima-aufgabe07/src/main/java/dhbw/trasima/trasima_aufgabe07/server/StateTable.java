@@ -0,0 +1,28 @@
+package dhbw.trasima.trasima_aufgabe07.server;
+
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import java.util.Collection;
+
+/**
+ * Speicher der Fahrzeugzustände im VehicleService.
+ *
+ * - {@link MapStateTable}: ConcurrentHashMap mit einem Protobuf-Objekt pro Fahrzeug (Standard).
+ * - {@link ColumnarStateTable}: primitive Spalten aus trasima_bis_5, Protobuf-Objekte entstehen nur beim Lesen.
+ *
+ * Beide halten den {@link NearestIndex} bei jedem save() pro ID konsistent.
+ */
+interface StateTable {
+
+    V2State get(int id);
+
+    void save(V2State state);
+
+    /** Alle Zustände; bei {@link ColumnarStateTable} eine neu aufgebaute Liste. */
+    Collection<V2State> values();
+
+    int size();
+
+    /** Gibt Dateien frei; nur die persistente {@link ColumnarStateTable} hat welche. */
+    default void close() {
+    }
+}
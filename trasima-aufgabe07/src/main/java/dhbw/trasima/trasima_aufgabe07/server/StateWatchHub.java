@@ -0,0 +1,121 @@
+package dhbw.trasima.trasima_aufgabe07.server;
+
+import dhbw.trasima.trasima_aufgabe07.V2Delta;
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import dhbw.trasima.trasima_aufgabe07.WatchRequest;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verteilt Änderungen an alle WatchStates-Abonnenten.
+ *
+ * - Jeder Abonnent hat eine eigene Menge geänderter IDs ("dirty").
+ * - Publisher tragen nur die ID ein und warten nie auf Abonnenten.
+ * - Pro Intervall wird aus den dirty IDs ein V2Delta mit den aktuellen Zuständen gebaut.
+ * - Ist ein Abonnent zu langsam (gRPC-Flusskontrolle meldet !isReady), wird die Runde übersprungen;
+ *   die IDs sammeln sich weiter, jedes Fahrzeug kommt aber nur einmal mit dem neuesten Zustand.
+ */
+final class StateWatchHub {
+
+    static final int DEFAULT_INTERVAL_MILLIS = 500;
+    private static final int MIN_INTERVAL_MILLIS = 50;
+
+    private final StateTable states;
+    private final Set<Watcher> watchers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "watch-states");
+        t.setDaemon(true);
+        return t;
+    });
+
+    StateWatchHub(StateTable states) {
+        this.states = states;
+    }
+
+    /**
+     * Wird nach jedem gespeicherten Zustand aufgerufen.
+     */
+    void changed(int id) {
+        for (Watcher watcher : watchers) {
+            watcher.dirty.add(id);
+        }
+    }
+
+    void subscribe(WatchRequest request, StreamObserver<V2Delta> responseObserver) {
+        ServerCallStreamObserver<V2Delta> call = (ServerCallStreamObserver<V2Delta>) responseObserver;
+        Watcher watcher = new Watcher(call);
+
+        // Vor dem Snapshot registrieren, damit keine Änderung dazwischen verloren geht.
+        watchers.add(watcher);
+        call.setOnCancelHandler(watcher::cancel);
+
+        call.onNext(V2Delta.newBuilder()
+                .setSnapshot(true)
+                .addAllStates(states.values())
+                .build());
+
+        int interval = request.getIntervalMillis() > 0 ? request.getIntervalMillis() : DEFAULT_INTERVAL_MILLIS;
+        interval = Math.max(MIN_INTERVAL_MILLIS, interval);
+        watcher.task = scheduler.scheduleAtFixedRate(watcher::flush, interval, interval, TimeUnit.MILLISECONDS);
+        if (watcher.cancelled) {
+            // Client hat schon während des Snapshots abgebrochen.
+            watcher.task.cancel(false);
+        }
+    }
+
+    private final class Watcher {
+
+        private final ServerCallStreamObserver<V2Delta> call;
+        private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+        private volatile ScheduledFuture<?> task;
+        private volatile boolean cancelled;
+
+        Watcher(ServerCallStreamObserver<V2Delta> call) {
+            this.call = call;
+        }
+
+        void flush() {
+            if (cancelled || dirty.isEmpty() || !call.isReady()) {
+                return;
+            }
+
+            V2Delta.Builder delta = V2Delta.newBuilder();
+            Iterator<Integer> it = dirty.iterator();
+            while (it.hasNext()) {
+                Integer id = it.next();
+                // Erst entfernen, dann lesen: eine parallele Änderung markiert die ID wieder für die nächste Runde.
+                it.remove();
+                V2State state = states.get(id);
+                if (state != null) {
+                    delta.addStates(state);
+                }
+            }
+            if (delta.getStatesCount() == 0) {
+                return;
+            }
+
+            try {
+                call.onNext(delta.build());
+            } catch (StatusRuntimeException e) {
+                cancel();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            watchers.remove(this);
+            ScheduledFuture<?> t = task;
+            if (t != null) {
+                t.cancel(false);
+            }
+        }
+    }
+}
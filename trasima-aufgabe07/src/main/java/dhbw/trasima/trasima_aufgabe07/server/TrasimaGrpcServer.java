@@ -2,28 +2,91 @@ package dhbw.trasima.trasima_aufgabe07.server;
 
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptors;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.protobuf.services.HealthStatusManager;
+import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
+import dhbw.trasima.trasima_bis_5.history.PositionHistory;
+import dhbw.trasima.trasima_bis_5.ingest.LatestValueIngest;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsHttpServer;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Der gRPC Server für die Trasima-Anwendung.
  * 
- * - Startet den Server auf einem bestimmten Port (50051).
+ * - Startet den Server auf einem bestimmten Port (50051, mit "--port <port>" ein anderer, z.B. für mehrere Shards
+ *   eines Clusters auf einem Rechner, siehe {@link dhbw.trasima.trasima_aufgabe07.cluster.LocalCluster}).
  * - Registriert den VehicleService, um Anfragen zu bearbeiten.
+ * - Mit "--store columnar" speichert der Dienst die Zustände spaltenbasiert (ColumnarV2Store).
+ * - Mit "--wal <verzeichnis>" zusätzlich persistent (Write-Ahead-Log + Snapshots, impliziert columnar).
+ * - "--history-kb <n>" / "--history-mb <n>": Positionsverlauf pro Fahrzeug bzw. insgesamt (Standard 4 KiB / 64 MiB,
+ *   0 KiB schaltet den Verlauf ab).
+ * - "--coalesce": Positionen über eine LatestValueIngest sammeln, pro Fahrzeug wird nur das neueste offene Update
+ *   gespeichert (siehe {@link VehicleService#enableCoalescing}).
+ * - Standard-Health-Service (grpc.health.v1.Health) und FetchMetrics im TrasimaService; jeder Aufruf wird vom
+ *   {@link MetricsInterceptor} gemessen. "--metrics-port <port>" stellt dieselben Metriken zusätzlich per HTTP
+ *   unter /metrics bereit (für Prometheus).
  * - Hält den Server am Laufen, bis er manuell gestoppt wird.
  */
 public class TrasimaGrpcServer {
 
     public static void main(String[] args) throws IOException, InterruptedException {
-        int port = 50051;
+        int port = argValue(args, "--port") != null ? Integer.parseInt(argValue(args, "--port")) : 50051;
+        boolean columnar = "columnar".equals(argValue(args, "--store"));
+        String walDir = argValue(args, "--wal");
+        PositionHistory.Options historyOptions = new PositionHistory.Options();
+        if (argValue(args, "--history-kb") != null) {
+            historyOptions.bytesPerVehicle = Integer.parseInt(argValue(args, "--history-kb")) * 1024;
+        }
+        if (argValue(args, "--history-mb") != null) {
+            historyOptions.maxBytes = Long.parseLong(argValue(args, "--history-mb")) * 1024 * 1024;
+        }
+        VehicleService service = walDir != null
+                ? new VehicleService(Path.of(walDir), historyOptions)
+                : new VehicleService(columnar, historyOptions);
+        if (Arrays.asList(args).contains("--coalesce")) {
+            service.enableCoalescing(new LatestValueIngest.Options());
+        }
+        HealthStatusManager health = new HealthStatusManager();
         // Erstellt den Server und fügt den Dienst hinzu
         Server server = ServerBuilder.forPort(port)
-                .addService(new VehicleService())
+                .addService(ServerInterceptors.intercept(service, new MetricsInterceptor()))
+                .addService(health.getHealthService())
                 .build();
+        if (argValue(args, "--metrics-port") != null) {
+            MetricsHttpServer metrics = MetricsHttpServer.start(Integer.parseInt(argValue(args, "--metrics-port")),
+                    MetricsRegistry.global());
+            System.out.println("Metriken: http://localhost:" + metrics.port() + "/metrics");
+        }
+
+        // Beim Beenden (Strg+C) erst keine neuen Aufrufe mehr annehmen, dann das Log schließen
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            health.enterTerminalState();
+            server.shutdown();
+            try {
+                server.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            service.close();
+        }));
 
         System.out.println("Starte gRPC Server auf Port " + port);
         server.start();
+        health.setStatus(HealthStatusManager.SERVICE_NAME_ALL_SERVICES, HealthCheckResponse.ServingStatus.SERVING);
+        health.setStatus(TrasimaServiceGrpc.SERVICE_NAME, HealthCheckResponse.ServingStatus.SERVING);
         System.out.println("Server gestartet.");
         // Wartet, bis der Server beendet wird
         server.awaitTermination();
     }
+
+    // Wert nach dem Schalter oder null
+    private static String argValue(String[] args, String key) {
+        int index = Arrays.asList(args).indexOf(key);
+        return index >= 0 && index + 1 < args.length ? args[index + 1] : null;
+    }
 }
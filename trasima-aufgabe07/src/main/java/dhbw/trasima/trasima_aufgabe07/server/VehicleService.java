@@ -1,30 +1,157 @@
 package dhbw.trasima.trasima_aufgabe07.server;
 
 import dhbw.trasima.trasima_aufgabe07.*;
+import dhbw.trasima.trasima_bis_5.history.PositionHistory;
+import dhbw.trasima.trasima_bis_5.ingest.LatestValueIngest;
+import dhbw.trasima.trasima_bis_5.metrics.Counter;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+import dhbw.trasima.trasima_bis_5.metrics.RateLimitedLog;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * Dieser Dienst verwaltet die Zustände der Fahrzeuge.
  * 
- * - Speichert Fahrzeugdaten in einer Liste (Map).
+ * - Speichert Fahrzeugdaten in einer StateTable (Map, spaltenbasiert oder spaltenbasiert mit WAL, siehe Konstruktoren).
  * - publishPosition: Empfängt neue Positionsdaten und speichert sie.
  * - fetch: Liefert die Daten eines einzelnen Fahrzeugs zurück.
  * - fetchAll: Liefert die Daten aller bekannten Fahrzeuge zurück.
+ * - publishPositions: Empfängt viele Positionen über einen langlebigen Stream und bestätigt gesammelt, wie viele
+ *   davon gespeichert sind.
+ * - watchStates: Schickt einen Snapshot und danach nur noch die geänderten Fahrzeuge.
+ * - fetchNearest: Liefert die k nächsten Fahrzeuge zu einem Punkt (über einen Gitter-Index statt FetchAll + Sortieren).
+ * - fetchHistory: Liefert den Positionsverlauf eines Fahrzeugs (begrenzter Ringpuffer pro Fahrzeug, siehe
+ *   {@link PositionHistory}).
+ * - fetchMetrics: Liefert {@link MetricsRegistry#global()} im Prometheus-Textformat.
+ * - Optional ({@link #enableCoalescing}): Positionen laufen über eine {@link LatestValueIngest}; pro Fahrzeug wird
+ *   nur das neueste offene Update gespeichert, überholte Zwischenstände kosten weder Speicher, Verlauf noch
+ *   Beobachter.
  */
 public class VehicleService extends TrasimaServiceGrpc.TrasimaServiceImplBase {
 
+    // Räumlicher Index für fetchNearest, wird von der StateTable bei jedem save() mitgeführt
+    private final NearestIndex nearestIndex = new NearestIndex();
+
     // Speicher für die Fahrzeugzustände (ID -> Zustand)
-    private final Map<Integer, V2State> states = new ConcurrentHashMap<>();
+    private final StateTable states;
+
+    // Benachrichtigt WatchStates-Abonnenten über geänderte Fahrzeuge
+    private final StateWatchHub watchHub;
+
+    // Positionsverlauf pro Fahrzeug, Speicher über PositionHistory.Options begrenzt
+    private final PositionHistory history;
+
+    // null = jedes Update wird sofort gespeichert
+    private volatile LatestValueIngest ingest;
+
+    // Nach so vielen Positionen schickt publishPositions eine Zwischenbestätigung.
+    private static final int SUMMARY_EVERY = 1000;
+
+    private static final Counter UPDATES = MetricsRegistry.global().counter("trasima_updates_received_total",
+            "Empfangene Positions-Updates", "transport", "grpc");
+
+    // Statt einer Zeile pro Update höchstens fünf pro Sekunde, der Rest wird nur gezählt.
+    private static final RateLimitedLog UPDATE_LOG = new RateLimitedLog("", 5);
+
+    // Bestätigung im Coalescing-Modus: für alle gleich, statt pro Aufruf einen String zu bauen.
+    private static final Ack ACCEPTED = Ack.newBuilder().setMessage("Position angenommen.").build();
+
+    // fetchNearest: Standard für k = 0 und Obergrenze, damit eine Anfrage nicht die ganze Flotte anfordert.
+    private static final int DEFAULT_NEAREST = 10;
+    private static final int MAX_NEAREST = 1000;
+
+    public VehicleService() {
+        this(false);
+    }
+
+    /**
+     * @param columnar true: Zustände in primitiven Spalten ({@link ColumnarStateTable}) statt einem
+     *                 Protobuf-Objekt pro Fahrzeug in einer Map
+     */
+    public VehicleService(boolean columnar) {
+        this(columnar, new PositionHistory.Options());
+    }
+
+    /**
+     * @param historyOptions Größe des Positionsverlaufs pro Fahrzeug und insgesamt
+     */
+    public VehicleService(boolean columnar, PositionHistory.Options historyOptions) {
+        this(columnar, historyOptions, null);
+    }
+
+    /**
+     * @param shard Wert des Labels {@code shard} an {@code trasima_store_vehicles}, wenn mehrere Dienste in einer
+     *              JVM laufen (z.B. LocalCluster); null = ohne Label
+     */
+    public VehicleService(boolean columnar, PositionHistory.Options historyOptions, String shard) {
+        this.states = columnar ? new ColumnarStateTable(nearestIndex) : new MapStateTable(nearestIndex);
+        this.watchHub = new StateWatchHub(states);
+        this.history = new PositionHistory(historyOptions);
+        registerGauge(shard);
+    }
+
+    /**
+     * Spaltenbasiert und persistent: Write-Ahead-Log und Snapshots in walDir, beim Start wird daraus
+     * wiederhergestellt. Nach dem Stoppen des Servers {@link #close()} aufrufen.
+     */
+    public VehicleService(Path walDir) throws IOException {
+        this(walDir, new PositionHistory.Options());
+    }
+
+    public VehicleService(Path walDir, PositionHistory.Options historyOptions) throws IOException {
+        this.states = new ColumnarStateTable(nearestIndex, walDir);
+        this.watchHub = new StateWatchHub(states);
+        this.history = new PositionHistory(historyOptions);
+        registerGauge(null);
+    }
+
+    private void registerGauge(String shard) {
+        if (shard == null) {
+            MetricsRegistry.global().gauge("trasima_store_vehicles", "Fahrzeuge im Speicher", states::size,
+                    "transport", "grpc");
+        } else {
+            // Pro Shard eine eigene Reihe, sonst ersetzt jeder weitere Dienst die Quelle des vorherigen
+            MetricsRegistry.global().gauge("trasima_store_vehicles", "Fahrzeuge im Speicher", states::size,
+                    "transport", "grpc", "shard", shard);
+        }
+    }
+
+    /**
+     * Sammelt Positionen ab jetzt pro Fahrzeug in einem Fach, das ein eigener Thread gesammelt übernimmt. Vor dem
+     * Start des Servers aufrufen.
+     *
+     * - PublishPosition bestätigt sofort mit einer gemeinsamen Ack-Nachricht; die Konsolenausgabe kommt erst beim
+     *   Übernehmen.
+     * - Fetch sieht ein angenommenes Update sofort, FetchAll, FetchNearest und WatchStates erst nach der Übernahme.
+     * - PublishSummary zählt nur übernommene Positionen als gespeichert; ersetzte stehen getrennt in superseded.
+     */
+    public void enableCoalescing(LatestValueIngest.Options options) {
+        this.ingest = new LatestValueIngest("grpc", this::apply, options);
+    }
+
+    /**
+     * Übernimmt offene Updates und schließt die Ablage (bringt bei WAL-Betrieb das Log auf die Platte).
+     */
+    public void close() {
+        if (ingest != null) {
+            ingest.close();
+        }
+        states.close();
+    }
 
     @Override
     public void publishPosition(V2State request, StreamObserver<Ack> responseObserver) {
         // Speichert den aktuellen Zustand des Fahrzeugs
-        states.put(request.getId(), request);
+        if (save(request, null)) {
+            responseObserver.onNext(ACCEPTED);
+            responseObserver.onCompleted();
+            return;
+        }
         
-        // Ausgabe auf der Konsole wie in trasima_bis_5 gefordert
-        System.out.println("Fahrzeug " + request.getId() + " bei X=" + request.getX() + " Y=" + request.getY() + " Speed=" + request.getSpeed());
+        // Ausgabe auf der Konsole wie in trasima_bis_5 gefordert, aber begrenzt
+        UPDATE_LOG.log(() -> "Fahrzeug " + request.getId() + " bei X=" + request.getX() + " Y=" + request.getY() + " Speed=" + request.getSpeed());
         
         // Bestätigung an den Client senden
         Ack ack = Ack.newBuilder().setMessage("Position für V2 " + request.getId() + " aktualisiert.").build();
@@ -32,10 +159,45 @@ public class VehicleService extends TrasimaServiceGrpc.TrasimaServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    @Override
+    public StreamObserver<V2State> publishPositions(StreamObserver<PublishSummary> responseObserver) {
+        // Pro Stream ein Zähler; gRPC ruft onNext/onCompleted eines Streams nie parallel auf.
+        return new StreamObserver<>() {
+            private long received;
+            // Nur mit Coalescing: übernommene und ersetzte Positionen dieses Streams
+            private final LatestValueIngest.Tally tally = new LatestValueIngest.Tally();
+
+            @Override
+            public void onNext(V2State state) {
+                // Kein Ack und keine Konsolenausgabe pro Position, nur Speichern.
+                save(state, tally);
+                received++;
+                if (received % SUMMARY_EVERY == 0) {
+                    responseObserver.onNext(summary(received, tally));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                System.out.println("PublishPositions abgebrochen nach " + received + " Positionen: "
+                        + Status.fromThrowable(t));
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onNext(summary(received, tally));
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
     @Override
     public void fetch(V2Id request, StreamObserver<V2State> responseObserver) {
-        // Sucht das Fahrzeug nach ID
-        V2State state = states.get(request.getId());
+        // Sucht das Fahrzeug nach ID; ein noch nicht übernommenes Update hat Vorrang
+        V2State state = pending(request.getId());
+        if (state == null) {
+            state = states.get(request.getId());
+        }
         if (state != null) {
             responseObserver.onNext(state);
         } else {
@@ -52,4 +214,108 @@ public class VehicleService extends TrasimaServiceGrpc.TrasimaServiceImplBase {
         responseObserver.onNext(list);
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void watchStates(WatchRequest request, StreamObserver<V2Delta> responseObserver) {
+        watchHub.subscribe(request, responseObserver);
+    }
+
+    @Override
+    public void fetchNearest(NearestRequest request, StreamObserver<NearestList> responseObserver) {
+        if (request.getK() < 0 || request.getMaxDistanceMeters() < 0
+                || !Double.isFinite(request.getX()) || !Double.isFinite(request.getY())) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("k und max_distance_meters dürfen nicht negativ sein, x/y müssen endlich sein")
+                    .asRuntimeException());
+            return;
+        }
+        int k = request.getK() == 0 ? DEFAULT_NEAREST : Math.min(request.getK(), MAX_NEAREST);
+        double maxMeters = request.getMaxDistanceMeters() == 0 ? Double.POSITIVE_INFINITY : request.getMaxDistanceMeters();
+
+        NearestList.Builder list = NearestList.newBuilder();
+        for (NearestIndex.Hit hit : nearestIndex.nearest(states, request.getX(), request.getY(), k, maxMeters)) {
+            list.addNeighbors(Neighbor.newBuilder()
+                    .setState(hit.state())
+                    .setDistanceMeters(hit.distanceMeters()));
+        }
+        responseObserver.onNext(list.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void fetchHistory(HistoryRequest request, StreamObserver<HistoryList> responseObserver) {
+        long from = request.getFromMillis() == 0 ? Long.MIN_VALUE : request.getFromMillis();
+        long to = request.getToMillis() == 0 ? Long.MAX_VALUE : request.getToMillis();
+        if (from > to) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("from_millis darf nicht nach to_millis liegen")
+                    .asRuntimeException());
+            return;
+        }
+        // Unbekannte Fahrzeuge liefern wie bei fetch eine leere Antwort.
+        HistoryList.Builder list = HistoryList.newBuilder();
+        history.query(request.getId(), from, to, (timestamp, x, y, speed, direction) ->
+                list.addSamples(HistorySample.newBuilder()
+                        .setTimestampMillis(timestamp)
+                        .setX(x)
+                        .setY(y)
+                        .setSpeed(speed)));
+        responseObserver.onNext(list.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void fetchMetrics(Empty request, StreamObserver<MetricsText> responseObserver) {
+        responseObserver.onNext(MetricsText.newBuilder().setText(MetricsRegistry.global().scrape()).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * @return true, wenn das Update nur angenommen wurde (Coalescing) und der Aufrufer nichts weiter tun muss
+     */
+    private boolean save(V2State state, LatestValueIngest.Tally tally) {
+        UPDATES.inc();
+        LatestValueIngest in = ingest;
+        if (in != null) {
+            in.offer(state.getId(), state.getX(), state.getY(), state.getSpeed(), System.currentTimeMillis(), tally);
+            return true;
+        }
+        store(state, System.currentTimeMillis());
+        return false;
+    }
+
+    // Übernahme-Thread der LatestValueIngest
+    private void apply(int id, double x, double y, double speed, long timestamp) {
+        store(V2State.newBuilder().setId(id).setX(x).setY(y).setSpeed(speed).build(), timestamp);
+        UPDATE_LOG.log(() -> "Fahrzeug " + id + " bei X=" + x + " Y=" + y + " Speed=" + speed);
+    }
+
+    private void store(V2State state, long timestamp) {
+        states.save(state);
+        history.record(state.getId(), timestamp, state.getX(), state.getY(), state.getSpeed(), 0.0);
+        watchHub.changed(state.getId());
+    }
+
+    private V2State pending(int id) {
+        LatestValueIngest in = ingest;
+        if (in == null) {
+            return null;
+        }
+        V2State[] pending = new V2State[1];
+        in.readPending(id, (i, x, y, speed, timestamp) ->
+                pending[0] = V2State.newBuilder().setId(i).setX(x).setY(y).setSpeed(speed).build());
+        return pending[0];
+    }
+
+    // Ohne Coalescing ist jede empfangene Position beim Zählen schon gespeichert; mit Coalescing zählt erst die
+    // Übernahme, noch offene Positionen fehlen.
+    private PublishSummary summary(long received, LatestValueIngest.Tally tally) {
+        if (ingest == null) {
+            return PublishSummary.newBuilder().setStored(received).build();
+        }
+        return PublishSummary.newBuilder()
+                .setStored(tally.applied())
+                .setSuperseded(tally.superseded())
+                .build();
+    }
 }
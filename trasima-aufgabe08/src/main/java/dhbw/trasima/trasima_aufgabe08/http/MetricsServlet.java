@@ -0,0 +1,24 @@
+package dhbw.trasima.trasima_aufgabe08.http;
+
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code GET /metrics}: {@link MetricsRegistry#global()} im Prometheus-Textformat.
+ */
+public final class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        byte[] body = MetricsRegistry.global().scrape().getBytes(StandardCharsets.UTF_8);
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+}
@@ -10,6 +10,9 @@ public final class TrasimaHttpServer {
         int httpPort = intArg(args, "--httpPort", 8080);
         String grpcHost = stringArg(args, "--grpcHost", "localhost");
         int grpcPort = intArg(args, "--grpcPort", 50051);
+        int cacheMillis = intArg(args, "--cache-millis", 1000);
+        int deadlineMillis = intArg(args, "--deadline-millis", 2000);
+        boolean blocking = hasFlag(args, "--blocking");
 
         Server server = new Server(httpPort);
 
@@ -19,12 +22,18 @@ public final class TrasimaHttpServer {
         ServletHolder servlet = new ServletHolder(new V2ListServlet());
         servlet.setInitParameter("grpcHost", grpcHost);
         servlet.setInitParameter("grpcPort", Integer.toString(grpcPort));
+        servlet.setInitParameter("cacheMillis", Integer.toString(cacheMillis));
+        servlet.setInitParameter("deadlineMillis", Integer.toString(deadlineMillis));
+        servlet.setInitParameter("async", Boolean.toString(!blocking));
+        servlet.setAsyncSupported(true);
         context.addServlet(servlet, "/*");
+        context.addServlet(new ServletHolder(new MetricsServlet()), "/metrics");
 
         server.setHandler(context);
 
         server.start();
         System.out.println("Jetty HTTP Server: http://localhost:" + httpPort + "/http/trasima");
+        System.out.println("Metriken: http://localhost:" + httpPort + "/http/trasima/metrics");
         System.out.println("gRPC Target: " + grpcHost + ":" + grpcPort);
         server.join();
     }
@@ -37,6 +46,15 @@ public final class TrasimaHttpServer {
         return Integer.parseInt(value);
     }
 
+    private static boolean hasFlag(String[] args, String key) {
+        for (String arg : args) {
+            if (key.equals(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static String stringArg(String[] args, String key, String defaultValue) {
         for (int i = 0; i < args.length - 1; i++) {
             if (key.equals(args[i])) {
@@ -1,27 +1,50 @@
 package dhbw.trasima.trasima_aufgabe08.http;
 
-import dhbw.trasima.trasima_aufgabe07.Empty;
 import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
-import dhbw.trasima.trasima_aufgabe07.V2List;
-import dhbw.trasima.trasima_aufgabe07.V2State;
+import dhbw.trasima.trasima_bis_5.metrics.LatencyHistogram;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
-import io.grpc.StatusRuntimeException;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.Comparator;
+import java.util.concurrent.CompletionException;
 
+/**
+ * Übersichtsseite aller V2-Zustände.
+ *
+ * <p>Die Seite kommt aus einem {@link V2PageCache} (init-Parameter {@code cacheMillis}, Standard 1000), wird
+ * gzip-komprimiert ausgeliefert, wenn der Browser es anbietet, und beantwortet {@code If-None-Match} mit 304.</p>
+ *
+ * <p>Mit {@code async=true} (Standard) blockiert kein Jetty-Thread: die Anfrage wird mit {@code startAsync}
+ * geparkt, bis die Seite da ist, und der Body über einen {@link WriteListener} geschrieben. Ein langsamer
+ * gRPC-Server kostet so nur offene Anfragen, aber keine Threads.</p>
+ *
+ * <p>Weitere init-Parameter: {@code deadlineMillis} (2000) für {@code FetchAll}, {@code breakerFailures} (3) und
+ * {@code breakerOpenMillis} (5000) für den Circuit Breaker.</p>
+ *
+ * <p>Die Dauer jeder Anfrage bis zum letzten geschriebenen Byte landet in
+ * {@code trasima_request_duration_seconds{transport="http",path="/"}}.</p>
+ */
 public final class V2ListServlet extends HttpServlet {
 
+    private static final int CHUNK_BYTES = 16 * 1024;
+    private static final LatencyHistogram LATENCY = MetricsRegistry.global().histogram(
+            "trasima_request_duration_seconds", "Bearbeitungszeit einer Anfrage im Server",
+            "transport", "http", "path", "/");
+
     private ManagedChannel channel;
-    private TrasimaServiceGrpc.TrasimaServiceBlockingStub blockingStub;
-    private String grpcTarget;
+    private V2PageCache cache;
+    private boolean async;
 
     @Override
     public void init(ServletConfig config) throws ServletException {
@@ -30,15 +53,17 @@ public final class V2ListServlet extends HttpServlet {
         if (grpcHost == null || grpcHost.isBlank()) {
             grpcHost = "localhost";
         }
-        int grpcPort = 50051;
-        String grpcPortRaw = config.getInitParameter("grpcPort");
-        if (grpcPortRaw != null && !grpcPortRaw.isBlank()) {
-            grpcPort = Integer.parseInt(grpcPortRaw);
-        }
+        int grpcPort = intParameter(config, "grpcPort", 50051);
+        V2PageCache.Options options = new V2PageCache.Options();
+        options.ttlMillis = intParameter(config, "cacheMillis", (int) options.ttlMillis);
+        options.deadlineMillis = intParameter(config, "deadlineMillis", (int) options.deadlineMillis);
+        options.failureThreshold = intParameter(config, "breakerFailures", options.failureThreshold);
+        options.openMillis = intParameter(config, "breakerOpenMillis", (int) options.openMillis);
+        this.async = !"false".equals(config.getInitParameter("async"));
 
-        this.grpcTarget = grpcHost + ":" + grpcPort;
+        String grpcTarget = grpcHost + ":" + grpcPort;
         this.channel = ManagedChannelBuilder.forAddress(grpcHost, grpcPort).usePlaintext().build();
-        this.blockingStub = TrasimaServiceGrpc.newBlockingStub(channel);
+        this.cache = new V2PageCache(TrasimaServiceGrpc.newStub(channel), grpcTarget, options);
     }
 
     @Override
@@ -51,72 +76,120 @@ public final class V2ListServlet extends HttpServlet {
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        long start = System.nanoTime();
+        if (!async || !req.isAsyncSupported()) {
+            try {
+                V2PageCache.Page page;
+                try {
+                    page = cache.get().join();
+                } catch (CompletionException e) {
+                    resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    return;
+                }
+                byte[] body = prepare(req, resp, page);
+                if (body != null) {
+                    resp.getOutputStream().write(body);
+                }
+            } finally {
+                LATENCY.recordSince(start);
+            }
+            return;
+        }
+
+        AsyncContext context = req.startAsync();
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                LATENCY.recordSince(start);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        cache.get().whenComplete((page, error) -> {
+            try {
+                if (error != null) {
+                    resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    context.complete();
+                    return;
+                }
+                byte[] body = prepare(req, resp, page);
+                if (body == null) {
+                    context.complete();
+                    return;
+                }
+                write(context, resp.getOutputStream(), body);
+            } catch (IOException | RuntimeException e) {
+                context.complete();
+            }
+        });
+    }
+
+    /**
+     * Setzt Status und Header; liefert den Body (gzip, falls akzeptiert) oder null bei 304.
+     */
+    private static byte[] prepare(HttpServletRequest req, HttpServletResponse resp, V2PageCache.Page page) {
+        resp.setHeader("ETag", page.etag());
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("Vary", "Accept-Encoding");
+        if (page.status() == HttpServletResponse.SC_OK && page.etag().equals(req.getHeader("If-None-Match"))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+        resp.setStatus(page.status());
         resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
         resp.setContentType("text/html; charset=UTF-8");
+        byte[] body = page.html();
+        String acceptEncoding = req.getHeader("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            resp.setHeader("Content-Encoding", "gzip");
+            body = page.gzip();
+        }
+        resp.setContentLength(body.length);
+        return body;
+    }
+
+    /**
+     * Schreibt den Body nicht-blockierend: immer nur so viel, wie der Container gerade annimmt.
+     */
+    private static void write(AsyncContext context, ServletOutputStream out, byte[] body) {
+        out.setWriteListener(new WriteListener() {
+            private int offset;
 
-        final V2List list;
-        try {
-            list = blockingStub.fetchAll(Empty.getDefaultInstance());
-        } catch (StatusRuntimeException e) {
-            resp.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
-            try (PrintWriter out = resp.getWriter()) {
-                out.println("<!doctype html>");
-                out.println("<html lang=\"de\"><head><meta charset=\"utf-8\"><title>Trasima V2 Liste</title></head><body>");
-                out.println("<h1>Fehler</h1>");
-                out.println("<p>Fehler beim Abruf via gRPC (FetchAll) von <code>" + grpcTarget + "</code>: <code>" + e.getStatus() + "</code></p>");
-                out.println("</body></html>");
+            @Override
+            public void onWritePossible() throws IOException {
+                while (out.isReady()) {
+                    if (offset == body.length) {
+                        context.complete();
+                        return;
+                    }
+                    int length = Math.min(CHUNK_BYTES, body.length - offset);
+                    out.write(body, offset, length);
+                    offset += length;
+                }
             }
-            return;
-        }
 
-        try (PrintWriter out = resp.getWriter()) {
-            out.println("<!doctype html>");
-            out.println("<html lang=\"de\">");
-            out.println("<head>");
-            out.println("<meta charset=\"utf-8\">");
-            out.println("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">");
-            out.println("<title>Trasima – V2 Übersicht</title>");
-            out.println("<style>");
-            out.println("  :root{--bg:#ffffff;--panel:#ffffff;--text:#111827;--muted:#6b7280;--line:#e5e7eb;--accent:#2563eb;}");
-            out.println("  *{box-sizing:border-box} body{margin:0;font-family:system-ui,-apple-system,Segoe UI,Roboto,Arial,sans-serif;background:var(--bg);color:var(--text);}");
-            out.println("  .wrap{max-width:980px;margin:40px auto;padding:0 16px} .card{background:var(--panel);border:1px solid var(--line);border-radius:14px;box-shadow:0 12px 40px rgba(17,24,39,.10);overflow:hidden}");
-            out.println("  header{display:flex;align-items:baseline;justify-content:space-between;gap:12px;padding:18px 18px 10px}");
-            out.println("  h1{margin:0;font-size:20px;letter-spacing:.2px} .meta{color:var(--muted);font-size:13px}");
-            out.println("  .actions{padding:0 18px 14px} a{color:var(--accent);text-decoration:none} a:hover{text-decoration:underline}");
-            out.println("  table{width:100%;border-collapse:collapse} th,td{padding:12px 14px;border-top:1px solid var(--line);text-align:left;font-variant-numeric:tabular-nums}");
-            out.println("  th{color:var(--muted);font-weight:600;background:#f9fafb} tr:nth-child(even) td{background:#fcfdff}");
-            out.println("  .empty{padding:18px;border-top:1px solid var(--line);color:var(--muted)} code{background:rgba(37,99,235,.08);padding:2px 6px;border-radius:6px}");
-            out.println("</style>");
-            out.println("</head>");
-            out.println("<body>");
-            out.println("<div class=\"wrap\">");
-            out.println("<div class=\"card\">");
-            out.println("<header>");
-            out.println("<h1>V2 Übersicht</h1>");
-            out.println("<div class=\"meta\">gRPC: <code>" + grpcTarget + "</code> · Einträge: <code>" + list.getStatesCount() + "</code></div>");
-            out.println("</header>");
-            out.println("<div class=\"actions\"><a href=\"\">Neu laden</a></div>");
-
-            if (list.getStatesCount() == 0) {
-                out.println("<div class=\"empty\">Keine V2-Daten vorhanden (Simulation/Publisher läuft evtl. noch nicht).</div>");
-            } else {
-                out.println("<table>");
-                out.println("<thead><tr><th>ID</th><th>X</th><th>Y</th><th>Speed</th></tr></thead>");
-                out.println("<tbody>");
-                list.getStatesList().stream()
-                        .sorted(Comparator.comparingInt(V2State::getId))
-                        .forEach(state -> out.println("<tr><td>" + state.getId()
-                                + "</td><td>" + state.getX()
-                                + "</td><td>" + state.getY()
-                                + "</td><td>" + state.getSpeed()
-                                + "</td></tr>"));
-                out.println("</tbody>");
-                out.println("</table>");
+            @Override
+            public void onError(Throwable t) {
+                context.complete();
             }
+        });
+    }
 
-            out.println("</div>");
-            out.println("</div>");
-            out.println("</body></html>");
+    private static int intParameter(ServletConfig config, String name, int defaultValue) {
+        String value = config.getInitParameter(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
         }
+        return Integer.parseInt(value);
     }
 }
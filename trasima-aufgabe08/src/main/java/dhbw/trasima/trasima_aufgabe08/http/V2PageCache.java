@@ -0,0 +1,296 @@
+package dhbw.trasima.trasima_aufgabe08.http;
+
+import dhbw.trasima.trasima_aufgabe07.Empty;
+import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
+import dhbw.trasima.trasima_aufgabe07.V2List;
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import dhbw.trasima.trasima_bis_5.metrics.Counter;
+import dhbw.trasima.trasima_bis_5.metrics.LatencyHistogram;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fertig gerenderte Übersichtsseite, die sich alle Aufrufer für {@code ttlMillis} teilen.
+ *
+ * <ul>
+ *   <li>Ist die Seite abgelaufen, holt genau ein Aufrufer per {@code FetchAll} neue Daten (asynchron, mit
+ *   Deadline); alle anderen warten auf dasselbe Ergebnis. Pro TTL geht also höchstens ein gRPC-Aufruf raus, egal
+ *   wie viele Browser gleichzeitig neu laden.</li>
+ *   <li>Die Seite liegt als UTF-8- und als gzip-Bytes vor und wird nur einmal pro Aktualisierung komprimiert.</li>
+ *   <li>Kopf, Stylesheet und Tabellenrahmen sind konstante Fragmente; gerendert werden nur Zähler und Zeilen.</li>
+ *   <li>Schlägt der Abruf fehl (Fehler oder Deadline), wird der letzte erfolgreiche Stand mit Hinweis auf sein
+ *   Alter ausgeliefert; gab es noch keinen, eine Fehlerseite (502). Beides gilt ebenfalls für die TTL.</li>
+ *   <li>Circuit Breaker: nach {@link Options#failureThreshold} Fehlschlägen in Folge wird der Server für
+ *   {@link Options#openMillis} gar nicht mehr gefragt. Danach darf genau ein Abruf testen, ob er wieder antwortet;
+ *   erst ein Erfolg schließt den Breaker.</li>
+ * </ul>
+ *
+ * <p>Metriken: Dauer und Ergebnis jedes {@code FetchAll} sowie der Zustand des Breakers
+ * ({@code trasima_gateway_breaker_open}).</p>
+ */
+final class V2PageCache {
+
+    static final class Options {
+        /** Wie lange eine Seite für alle Aufrufer gilt. */
+        public long ttlMillis = 1000;
+        /** Deadline für {@code FetchAll}. */
+        public long deadlineMillis = 2000;
+        /** Fehlschläge in Folge, nach denen der Breaker öffnet. */
+        public int failureThreshold = 3;
+        /** Wie lange der Breaker offen bleibt. */
+        public long openMillis = 5000;
+    }
+
+    record Page(int status, byte[] html, byte[] gzip, String etag, long renderedNanos) {
+    }
+
+    private static final LatencyHistogram FETCH_LATENCY = MetricsRegistry.global().histogram(
+            "trasima_gateway_fetch_duration_seconds", "Dauer von FetchAll aus dem Gateway");
+    private static final Counter FETCH_OK = fetches("ok");
+    private static final Counter FETCH_FAILED = fetches("error");
+
+    private static final Comparator<V2State> BY_ID = Comparator.comparingInt(V2State::getId);
+
+    private static final String HEAD = String.join("\n",
+            "<!doctype html>",
+            "<html lang=\"de\">",
+            "<head>",
+            "<meta charset=\"utf-8\">",
+            "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">",
+            "<title>Trasima – V2 Übersicht</title>",
+            "<style>",
+            "  :root{--bg:#ffffff;--panel:#ffffff;--text:#111827;--muted:#6b7280;--line:#e5e7eb;--accent:#2563eb;}",
+            "  *{box-sizing:border-box} body{margin:0;font-family:system-ui,-apple-system,Segoe UI,Roboto,Arial,sans-serif;background:var(--bg);color:var(--text);}",
+            "  .wrap{max-width:980px;margin:40px auto;padding:0 16px} .card{background:var(--panel);border:1px solid var(--line);border-radius:14px;box-shadow:0 12px 40px rgba(17,24,39,.10);overflow:hidden}",
+            "  header{display:flex;align-items:baseline;justify-content:space-between;gap:12px;padding:18px 18px 10px}",
+            "  h1{margin:0;font-size:20px;letter-spacing:.2px} .meta{color:var(--muted);font-size:13px}",
+            "  .actions{padding:0 18px 14px} a{color:var(--accent);text-decoration:none} a:hover{text-decoration:underline}",
+            "  table{width:100%;border-collapse:collapse} th,td{padding:12px 14px;border-top:1px solid var(--line);text-align:left;font-variant-numeric:tabular-nums}",
+            "  th{color:var(--muted);font-weight:600;background:#f9fafb} tr:nth-child(even) td{background:#fcfdff}",
+            "  .empty{padding:18px;border-top:1px solid var(--line);color:var(--muted)} code{background:rgba(37,99,235,.08);padding:2px 6px;border-radius:6px}",
+            "</style>",
+            "</head>",
+            "<body>",
+            "<div class=\"wrap\">",
+            "<div class=\"card\">",
+            "<header>",
+            "<h1>V2 Übersicht</h1>",
+            "<div class=\"meta\">gRPC: <code>");
+    private static final String COUNT = "</code> · Einträge: <code>";
+    private static final String ACTIONS = "</code></div>\n</header>\n<div class=\"actions\"><a href=\"\">Neu laden</a></div>\n";
+    private static final String EMPTY =
+            "<div class=\"empty\">Keine V2-Daten vorhanden (Simulation/Publisher läuft evtl. noch nicht).</div>\n";
+    private static final String TABLE_START =
+            "<table>\n<thead><tr><th>ID</th><th>X</th><th>Y</th><th>Speed</th></tr></thead>\n<tbody>\n";
+    private static final String TABLE_END = "</tbody>\n</table>\n";
+    private static final String STALE_START = "<div class=\"empty\">gRPC nicht erreichbar (<code>";
+    private static final String STALE_AGE = "</code>), Stand von vor ";
+    private static final String STALE_END = " s.</div>\n";
+    private static final String TAIL = "</div>\n</div>\n</body></html>\n";
+
+    private final TrasimaServiceGrpc.TrasimaServiceStub stub;
+    private final String grpcTarget;
+    private final long ttlNanos;
+    private final long deadlineMillis;
+    private final int failureThreshold;
+    private final long openNanos;
+    // Vorberechnet: alles bis einschließlich gRPC-Ziel und "Einträge:"
+    private final String head;
+
+    private volatile Page current;
+    private final AtomicReference<CompletableFuture<Page>> refreshing = new AtomicReference<>();
+
+    // Nur im Abschluss eines Abrufs geändert; es läuft immer höchstens einer.
+    private V2List lastGood;
+    private long lastGoodNanos;
+    private int failures;
+    private volatile long openUntilNanos;
+
+    V2PageCache(TrasimaServiceGrpc.TrasimaServiceStub stub, String grpcTarget, Options options) {
+        this.stub = stub;
+        this.grpcTarget = grpcTarget;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(options.ttlMillis);
+        this.deadlineMillis = options.deadlineMillis;
+        this.failureThreshold = Math.max(1, options.failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(options.openMillis);
+        this.head = HEAD + grpcTarget + COUNT;
+        this.openUntilNanos = System.nanoTime();
+        MetricsRegistry.global().gauge("trasima_gateway_breaker_open", "1, solange der Circuit Breaker offen ist",
+                () -> isOpen() ? 1 : 0);
+    }
+
+    private static Counter fetches(String result) {
+        return MetricsRegistry.global().counter("trasima_gateway_fetches_total", "FetchAll-Aufrufe des Gateways",
+                "result", result);
+    }
+
+    /** True, solange der Breaker offen ist und der Server nicht gefragt wird. */
+    boolean isOpen() {
+        return System.nanoTime() - openUntilNanos < 0;
+    }
+
+    /**
+     * Liefert die aktuelle Seite; ist sie abgelaufen, nach der (gemeinsamen) Aktualisierung.
+     */
+    CompletableFuture<Page> get() {
+        while (true) {
+            Page page = current;
+            if (isFresh(page)) {
+                return CompletableFuture.completedFuture(page);
+            }
+            CompletableFuture<Page> running = refreshing.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<Page> created = new CompletableFuture<>();
+            if (!refreshing.compareAndSet(null, created)) {
+                continue;
+            }
+            // Eine andere Aktualisierung kann gerade fertig geworden sein.
+            page = current;
+            if (isFresh(page) || (page != null && isOpen())) {
+                // Offener Breaker: die letzte Seite (alt oder Fehler) gilt weiter.
+                refreshing.set(null);
+                created.complete(page);
+                return created;
+            }
+            fetch(created);
+            return created;
+        }
+    }
+
+    private boolean isFresh(Page page) {
+        return page != null && System.nanoTime() - page.renderedNanos() < ttlNanos;
+    }
+
+    private void fetch(CompletableFuture<Page> future) {
+        long start = System.nanoTime();
+        stub.withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS)
+                .fetchAll(Empty.getDefaultInstance(), new StreamObserver<>() {
+                    private V2List list = V2List.getDefaultInstance();
+
+                    @Override
+                    public void onNext(V2List value) {
+                        list = value;
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        FETCH_LATENCY.recordSince(start);
+                        FETCH_FAILED.inc();
+                        finish(future, () -> failed(Status.fromThrowable(t)));
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        FETCH_LATENCY.recordSince(start);
+                        FETCH_OK.inc();
+                        finish(future, () -> succeeded(list));
+                    }
+                });
+    }
+
+    private void finish(CompletableFuture<Page> future, Supplier<Page> render) {
+        try {
+            Page page = render.get();
+            current = page;
+            refreshing.set(null);
+            future.complete(page);
+        } catch (RuntimeException e) {
+            refreshing.set(null);
+            future.completeExceptionally(e);
+        }
+    }
+
+    private Page succeeded(V2List list) {
+        failures = 0;
+        openUntilNanos = System.nanoTime();
+        lastGood = list;
+        lastGoodNanos = System.nanoTime();
+        return render(list, null, 0);
+    }
+
+    private Page failed(Status status) {
+        long now = System.nanoTime();
+        if (++failures >= failureThreshold) {
+            // Auch ein fehlgeschlagener Test im halboffenen Zustand öffnet wieder für die volle Zeit.
+            openUntilNanos = now + openNanos;
+        }
+        if (lastGood == null) {
+            return renderError(status);
+        }
+        return render(lastGood, status.getCode(), TimeUnit.NANOSECONDS.toSeconds(now - lastGoodNanos));
+    }
+
+    /**
+     * @param staleCode null für eine aktuelle Seite, sonst der Fehler, wegen dem ein alter Stand gezeigt wird
+     */
+    private Page render(V2List list, Status.Code staleCode, long staleSeconds) {
+        V2State[] states = list.getStatesList().toArray(new V2State[0]);
+        Arrays.sort(states, BY_ID);
+
+        StringBuilder html = new StringBuilder(head.length() + 1024 + states.length * 96);
+        html.append(head).append(states.length).append(ACTIONS);
+        if (staleCode != null) {
+            html.append(STALE_START).append(staleCode).append(STALE_AGE).append(staleSeconds).append(STALE_END);
+        }
+        if (states.length == 0) {
+            html.append(EMPTY);
+        } else {
+            html.append(TABLE_START);
+            for (V2State state : states) {
+                html.append("<tr><td>").append(state.getId())
+                        .append("</td><td>").append(state.getX())
+                        .append("</td><td>").append(state.getY())
+                        .append("</td><td>").append(state.getSpeed())
+                        .append("</td></tr>\n");
+            }
+            html.append(TABLE_END);
+        }
+        html.append(TAIL);
+        return page(200, html);
+    }
+
+    private Page renderError(Status status) {
+        StringBuilder html = new StringBuilder(512);
+        html.append("<!doctype html>\n")
+                .append("<html lang=\"de\"><head><meta charset=\"utf-8\"><title>Trasima V2 Liste</title></head><body>\n")
+                .append("<h1>Fehler</h1>\n")
+                .append("<p>Fehler beim Abruf via gRPC (FetchAll) von <code>").append(grpcTarget)
+                .append("</code>: <code>").append(status).append("</code></p>\n")
+                .append("</body></html>\n");
+        return page(502, html);
+    }
+
+    private static Page page(int status, CharSequence html) {
+        byte[] bytes = html.toString().getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        // Gleicher Inhalt = gleiches ETag, auch über Aktualisierungen hinweg
+        String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + bytes.length + "\"";
+        return new Page(status, bytes, gzip(bytes), etag, System.nanoTime());
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer, 8192)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,60 @@
+package dhbw.trasima.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Startet die JMH-Benchmarks einmal pro Thread-Anzahl und schreibt die Ergebnisse als JSON.
+ *
+ * <p>Pro Thread-Anzahl entsteht {@code <out>/jmh-<threads>t.json} im Standardformat von JMH ({@code -rf json}), das
+ * sich mit anderen Läufen vergleichen oder in JMH-Visualizer laden lässt.</p>
+ *
+ * <p>Alle übrigen JMH-Optionen gehen über {@code java -cp benchmarks.jar org.openjdk.jmh.Main ...}.</p>
+ */
+public final class BenchMain {
+
+    private BenchMain() {
+    }
+
+    /**
+     * Argumente: {@code [--include <regex>] [--threads 1,4,16] [--out target/jmh] [--forks 1]}
+     */
+    public static void main(String[] args) throws Exception {
+        String include = stringArg(args, "--include", ".*");
+        String threads = stringArg(args, "--threads", "1");
+        Path out = Path.of(stringArg(args, "--out", "target/jmh"));
+        int forks = intArg(args, "--forks", 1);
+        Files.createDirectories(out);
+
+        for (String value : threads.split(",")) {
+            int count = Integer.parseInt(value.trim());
+            Path result = out.resolve("jmh-" + count + "t.json");
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(count)
+                    .forks(forks)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.toString());
+            new Runner(options.build()).run();
+            System.out.println("Ergebnisse: " + result.toAbsolutePath());
+        }
+    }
+
+    private static int intArg(String[] args, String key, int defaultValue) {
+        String value = stringArg(args, key, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static String stringArg(String[] args, String key, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (key.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,77 @@
+package dhbw.trasima.bench;
+
+import dhbw.trasima.trasima_bis_5.tcp.ColumnarV2Store;
+import dhbw.trasima.trasima_bis_5.tcp.IV2Store;
+import dhbw.trasima.trasima_bis_5.tcp.InMemoryV2Store;
+import dhbw.trasima.trasima_bis_5.tcp.V2State;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Speicher des TCP-Servers ({@link IV2Store}): {@code save} und {@code get} mit zufälligen IDs.
+ *
+ * <p>Die Thread-Anzahl kommt von außen ({@code -t} bzw. {@code BenchMain --threads}); {@code mixed} läuft immer
+ * mit drei lesenden und einem schreibenden Thread.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TcpStoreBenchmark {
+
+    @Param({"1000", "100000"})
+    public int fleetSize;
+
+    @Param({"map", "columnar"})
+    public String store;
+
+    private IV2Store v2Store;
+
+    @Setup
+    public void setUp() {
+        v2Store = "columnar".equals(store) ? new ColumnarV2Store() : new InMemoryV2Store();
+        for (int id = 1; id <= fleetSize; id++) {
+            v2Store.save(id, 49.0 + id * 1e-6, 8.4 + id * 1e-6, 13.9, System.currentTimeMillis());
+        }
+    }
+
+    @Benchmark
+    public void save() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        v2Store.save(1 + random.nextInt(fleetSize), 49.0 + random.nextDouble(), 8.4 + random.nextDouble(), 13.9, 0L);
+    }
+
+    @Benchmark
+    public V2State get() {
+        return v2Store.get(1 + ThreadLocalRandom.current().nextInt(fleetSize));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public V2State mixedGet() {
+        return get();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedSave() {
+        save();
+    }
+}
@@ -0,0 +1,103 @@
+package dhbw.trasima.bench;
+
+import dhbw.trasima.trasima_bis_5.tcp.BinaryProtocol;
+import dhbw.trasima.trasima_bis_5.tcp.IV2Store;
+import dhbw.trasima.trasima_bis_5.tcp.TextProtocol;
+import dhbw.trasima.trasima_bis_5.tcp.V2State;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Protokoll-Overhead des TCP-Servers ohne Netzwerk und ohne echten Speicher: Zerlegen einer Anfragezeile,
+ * Formatieren der Antwort und dieselben Anfragen im Binärprotokoll.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextProtocolBenchmark {
+
+    private static final String PUBLISH_LINE = "PUBLISH 4711 49.48765432101234 8.46612345678901 13.888888888888889";
+    private static final String FETCH_LINE = "FETCH 4711";
+
+    private final V2State state = new V2State(4711, 49.48765432101234, 8.46612345678901, 13.888888888888889, 0L);
+    private IV2Store store;
+    private ByteBuffer publishFrame;
+    private ByteBuffer fetchFrame;
+    private ByteBuffer response;
+    // Schreibziel des Speichers, damit das Parsen nicht wegoptimiert wird
+    public double saved;
+
+    @Setup
+    public void setUp() {
+        // Speicher, der sich nur das Letzte merkt: gemessen wird das Protokoll.
+        store = new IV2Store() {
+            @Override
+            public void save(V2State s) {
+                saved = s.x + s.y + s.speed;
+            }
+
+            @Override
+            public void save(int id, double x, double y, double speed, long timestamp) {
+                saved = x + y + speed;
+            }
+
+            @Override
+            public V2State get(int id) {
+                return state;
+            }
+
+            @Override
+            public int size() {
+                return 1;
+            }
+        };
+        publishFrame = ByteBuffer.allocate(BinaryProtocol.FRAME_SIZE);
+        BinaryProtocol.writeFrame(publishFrame, BinaryProtocol.TYPE_PUBLISH, 1, state.id, state.x, state.y,
+                state.speed, 0L);
+        fetchFrame = ByteBuffer.allocate(BinaryProtocol.FRAME_SIZE);
+        BinaryProtocol.writeFrame(fetchFrame, BinaryProtocol.TYPE_FETCH, 2, state.id, 0.0, 0.0, 0.0, 0L);
+        response = ByteBuffer.allocate(BinaryProtocol.FRAME_SIZE);
+    }
+
+    @Benchmark
+    public String textPublish() {
+        return TextProtocol.handle(PUBLISH_LINE, store);
+    }
+
+    @Benchmark
+    public String textFetch() {
+        return TextProtocol.handle(FETCH_LINE, store);
+    }
+
+    @Benchmark
+    public String textFormat() {
+        return TextProtocol.format(state);
+    }
+
+    @Benchmark
+    public ByteBuffer binaryPublish() {
+        response.clear();
+        BinaryProtocol.handle(publishFrame, 0, response, store);
+        return response;
+    }
+
+    @Benchmark
+    public ByteBuffer binaryFetch() {
+        response.clear();
+        BinaryProtocol.handle(fetchFrame, 0, response, store);
+        return response;
+    }
+}
@@ -0,0 +1,245 @@
+package dhbw.trasima.bench.gateway;
+
+import dhbw.trasima.trasima_aufgabe07.Empty;
+import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
+import dhbw.trasima.trasima_aufgabe07.V2List;
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import dhbw.trasima.trasima_aufgabe08.http.V2ListServlet;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Lasttest für das Gateway: zeigt, dass die Zahl der Jetty-Threads nicht mit der Latenz des gRPC-Servers wächst.
+ *
+ * <p>Startet im selben Prozess einen gRPC-Server, der {@code FetchAll} mit einstellbarer Verzögerung beantwortet
+ * (ohne dafür Threads zu belegen), und das Gateway mit {@link V2ListServlet}. Dann halten {@code --clients}
+ * Clients für jede Latenzstufe {@code --seconds} lang je eine Anfrage offen. Pro Stufe werden Durchsatz, p50/p99,
+ * Statuscodes und die höchste Zahl belegter Jetty-Threads bzw. JVM-Threads ausgegeben.</p>
+ *
+ * <p>Mit {@code --blocking} läuft das Servlet im alten Modus zum Vergleich: dort wartet pro offener Anfrage ein
+ * Jetty-Thread. Stufen über der Deadline ({@code --deadline-millis}) zeigen den Circuit Breaker: nach einigen
+ * Fehlschlägen kommt sofort der letzte gute Stand.</p>
+ *
+ * <p>Im asynchronen Modus wird geprüft: belegt eine Stufe mehr als {@code --max-busy-growth} Jetty-Threads mehr als
+ * die erste (niedrigste Latenz), endet der Lauf mit Exit-Code 1.</p>
+ */
+public final class GatewayLoadTest {
+
+    private GatewayLoadTest() {
+    }
+
+    /**
+     * Argumente: {@code [--clients 200] [--seconds 5] [--latencies 10,100,500,1000,3000] [--vehicles 1000]
+     * [--cache-millis 100] [--deadline-millis 2000] [--max-threads 200] [--max-busy-growth 10] [--blocking]}
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = intArg(args, "--clients", 200);
+        int seconds = intArg(args, "--seconds", 5);
+        long[] latencies = Arrays.stream(stringArg(args, "--latencies", "10,100,500,1000,3000").split(","))
+                .mapToLong(Long::parseLong).toArray();
+        int vehicles = intArg(args, "--vehicles", 1000);
+        int cacheMillis = intArg(args, "--cache-millis", 100);
+        int deadlineMillis = intArg(args, "--deadline-millis", 2000);
+        int maxThreads = intArg(args, "--max-threads", 200);
+        int maxBusyGrowth = intArg(args, "--max-busy-growth", 10);
+        boolean blocking = hasFlag(args, "--blocking");
+
+        ScheduledExecutorService delays = Executors.newSingleThreadScheduledExecutor();
+        SlowService service = new SlowService(vehicles, delays);
+        io.grpc.Server backend = ServerBuilder.forPort(0).addService(service).build().start();
+
+        QueuedThreadPool pool = new QueuedThreadPool(maxThreads);
+        Server server = new Server(pool);
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.setContextPath("/http/trasima");
+        ServletHolder servlet = new ServletHolder(new V2ListServlet());
+        servlet.setInitParameter("grpcHost", "localhost");
+        servlet.setInitParameter("grpcPort", Integer.toString(backend.getPort()));
+        servlet.setInitParameter("cacheMillis", Integer.toString(cacheMillis));
+        servlet.setInitParameter("deadlineMillis", Integer.toString(deadlineMillis));
+        servlet.setInitParameter("async", Boolean.toString(!blocking));
+        servlet.setAsyncSupported(true);
+        context.addServlet(servlet, "/*");
+        server.setHandler(context);
+        server.start();
+
+        URI uri = URI.create("http://localhost:" + connector.getLocalPort() + "/http/trasima/");
+        ExecutorService clientThreads = Executors.newFixedThreadPool(4);
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientThreads)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri).header("Accept-Encoding", "gzip").GET().build();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        System.out.printf(Locale.ROOT, "Modus: %s, %d Clients, Jetty max. %d Threads, Cache %d ms, Deadline %d ms%n",
+                blocking ? "blockierend" : "asynchron", clients, maxThreads, cacheMillis, deadlineMillis);
+        System.out.printf(Locale.ROOT, "%10s %9s %8s %9s %9s %7s %7s %7s %12s %12s%n",
+                "Latenz ms", "Anfragen", "pro s", "p50 ms", "p99 ms", "200", "502", "andere", "Jetty belegt",
+                "JVM-Threads");
+
+        List<String> failures = new ArrayList<>();
+        int baselineBusy = -1;
+        for (long latency : latencies) {
+            service.latencyMillis = latency;
+            ConcurrentLinkedQueue<Long> samples = new ConcurrentLinkedQueue<>();
+            LongAdder ok = new LongAdder();
+            LongAdder badGateway = new LongAdder();
+            LongAdder other = new LongAdder();
+            AtomicInteger inFlight = new AtomicInteger();
+            long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+            for (int i = 0; i < clients; i++) {
+                send(http, request, endNanos, samples, ok, badGateway, other, inFlight);
+            }
+            int maxBusy = 0;
+            int maxJvmThreads = 0;
+            while (System.nanoTime() < endNanos || inFlight.get() > 0) {
+                maxBusy = Math.max(maxBusy, pool.getBusyThreads());
+                maxJvmThreads = Math.max(maxJvmThreads, threads.getThreadCount());
+                Thread.sleep(50);
+            }
+
+            long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf(Locale.ROOT, "%10d %9d %8.0f %9.1f %9.1f %7d %7d %7d %12d %12d%n",
+                    latency, sorted.length, sorted.length / (double) seconds, percentile(sorted, 0.50) / 1e6,
+                    percentile(sorted, 0.99) / 1e6, ok.sum(), badGateway.sum(), other.sum(), maxBusy, maxJvmThreads);
+
+            // Im blockierenden Modus ist das Wachstum gewollt (Vergleich), geprüft wird nur der asynchrone
+            if (baselineBusy < 0) {
+                baselineBusy = maxBusy;
+            } else if (!blocking && maxBusy > baselineBusy + maxBusyGrowth) {
+                failures.add(String.format(Locale.ROOT, "Latenz %d ms: %d Jetty-Threads belegt > %d + %d",
+                        latency, maxBusy, baselineBusy, maxBusyGrowth));
+            }
+        }
+
+        server.stop();
+        backend.shutdownNow();
+        delays.shutdownNow();
+        clientThreads.shutdownNow();
+
+        if (!failures.isEmpty()) {
+            failures.forEach(f -> System.out.println("FEHLER: " + f));
+            System.exit(1);
+        }
+        if (!blocking) {
+            System.out.println("Prüfungen bestanden.");
+        }
+    }
+
+    /** Eine Anfrage; danach sofort die nächste, bis die Stufe vorbei ist. */
+    private static void send(HttpClient http, HttpRequest request, long endNanos, ConcurrentLinkedQueue<Long> samples,
+                             LongAdder ok, LongAdder badGateway, LongAdder other, AtomicInteger inFlight) {
+        if (System.nanoTime() >= endNanos) {
+            return;
+        }
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            samples.add(System.nanoTime() - start);
+            if (error != null) {
+                other.increment();
+            } else if (response.statusCode() == 200) {
+                ok.increment();
+            } else if (response.statusCode() == 502) {
+                badGateway.increment();
+            } else {
+                other.increment();
+            }
+            send(http, request, endNanos, samples, ok, badGateway, other, inFlight);
+            inFlight.decrementAndGet();
+        });
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+
+    /**
+     * Beantwortet {@code FetchAll} nach {@link #latencyMillis}; gewartet wird im Scheduler, nicht in einem Thread
+     * pro Aufruf.
+     */
+    private static final class SlowService extends TrasimaServiceGrpc.TrasimaServiceImplBase {
+        private final V2List list;
+        private final ScheduledExecutorService delays;
+        volatile long latencyMillis;
+
+        SlowService(int vehicles, ScheduledExecutorService delays) {
+            V2List.Builder builder = V2List.newBuilder();
+            for (int id = 1; id <= vehicles; id++) {
+                builder.addStates(V2State.newBuilder().setId(id).setX(id * 0.5).setY(id * 0.25).setSpeed(13.9));
+            }
+            this.list = builder.build();
+            this.delays = delays;
+        }
+
+        @Override
+        public void fetchAll(Empty request, StreamObserver<V2List> responseObserver) {
+            delays.schedule(() -> {
+                try {
+                    responseObserver.onNext(list);
+                    responseObserver.onCompleted();
+                } catch (RuntimeException e) {
+                    // Aufruf nach Ablauf der Deadline schon abgebrochen
+                }
+            }, latencyMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static int intArg(String[] args, String key, int defaultValue) {
+        String value = stringArg(args, key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value);
+    }
+
+    private static boolean hasFlag(String[] args, String key) {
+        for (String arg : args) {
+            if (key.equals(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stringArg(String[] args, String key, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (key.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,77 @@
+package dhbw.trasima.bench.load;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * Ein im selben Prozess gestarteter Server samt Client-Zugang für den {@link LoadGenerator}.
+ */
+interface Backend extends AutoCloseable {
+
+    /**
+     * Verbindung eines Lastthreads; wird nur von diesem Thread benutzt.
+     */
+    interface Client extends AutoCloseable {
+
+        /** Schickt eine Position und wartet auf die Bestätigung. */
+        void publish(int id, double x, double y, double speed) throws Exception;
+
+        /** Liest den aktuell sichtbaren speed der ID; {@code NaN}, wenn sie unbekannt ist. */
+        double fetchSpeed(int id) throws Exception;
+
+        @Override
+        void close() throws Exception;
+    }
+
+    String name();
+
+    Client connect() throws Exception;
+
+    @Override
+    void close() throws Exception;
+
+    /**
+     * Erzeugt das Backend zu einem Namen und startet den Server.
+     *
+     * @param store {@code map} oder {@code columnar}
+     */
+    static Backend start(String name, String store) throws Exception {
+        switch (name) {
+            case "tcp":
+                return TcpBackend.blocking(store);
+            case "tcp-nio":
+                return TcpBackend.nio(store);
+            case "grpc":
+                return GrpcBackend.start(store);
+            case "rest":
+                return RestBackend.start(store);
+            default:
+                throw new IllegalArgumentException("Unbekanntes Backend: " + name + " (tcp, tcp-nio, grpc, rest)");
+        }
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Startet die main-Methode eines Servers, die nicht zurückkehrt, in einem Daemon-Thread.
+     */
+    static void runMain(String name, ThrowingRunnable main) {
+        Thread thread = new Thread(() -> {
+            try {
+                main.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
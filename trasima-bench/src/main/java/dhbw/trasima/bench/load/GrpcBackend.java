@@ -0,0 +1,69 @@
+package dhbw.trasima.bench.load;
+
+import dhbw.trasima.trasima_aufgabe07.TrasimaServiceGrpc;
+import dhbw.trasima.trasima_aufgabe07.V2Id;
+import dhbw.trasima.trasima_aufgabe07.V2State;
+import dhbw.trasima.trasima_aufgabe07.server.VehicleService;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * gRPC-Server mit {@link VehicleService}; alle Clients teilen sich einen Channel (HTTP/2-Multiplexing).
+ */
+final class GrpcBackend implements Backend {
+
+    private final VehicleService service;
+    private final Server server;
+    private final ManagedChannel channel;
+
+    private GrpcBackend(VehicleService service, Server server, ManagedChannel channel) {
+        this.service = service;
+        this.server = server;
+        this.channel = channel;
+    }
+
+    static GrpcBackend start(String store) throws Exception {
+        VehicleService service = new VehicleService("columnar".equals(store));
+        Server server = ServerBuilder.forPort(0).addService(service).build().start();
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        return new GrpcBackend(service, server, channel);
+    }
+
+    @Override
+    public String name() {
+        return "grpc";
+    }
+
+    @Override
+    public Client connect() {
+        TrasimaServiceGrpc.TrasimaServiceBlockingStub stub = TrasimaServiceGrpc.newBlockingStub(channel);
+        return new Client() {
+            @Override
+            public void publish(int id, double x, double y, double speed) {
+                stub.publishPosition(V2State.newBuilder().setId(id).setX(x).setY(y).setSpeed(speed).build());
+            }
+
+            @Override
+            public double fetchSpeed(int id) {
+                V2State state = stub.fetch(V2Id.newBuilder().setId(id).build());
+                // Unbekannte IDs kommen als leeres Standardobjekt (id 0) zurück.
+                return state.getId() == 0 ? Double.NaN : state.getSpeed();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        channel.shutdownNow();
+        server.shutdownNow();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+        service.close();
+    }
+}
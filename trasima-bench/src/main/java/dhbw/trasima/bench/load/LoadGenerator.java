@@ -0,0 +1,271 @@
+package dhbw.trasima.bench.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Lastgenerator für alle drei Transportwege unter gleicher Last: TCP ({@code TrasimaServer}), gRPC
+ * ({@code VehicleService}) und REST ({@code VehicleResource}), jeweils als Server im selben Prozess auf localhost.
+ *
+ * <ul>
+ *   <li>{@code --threads} Lastthreads mit je eigener Verbindung schicken zusammen {@code --rate} Positionen pro
+ *   Sekunde an {@code --vehicles} Fahrzeuge. Die Latenz wird ab dem geplanten Sendezeitpunkt gemessen; kommt der
+ *   Server nicht hinterher, wächst sie also mit, statt dass die Last stillschweigend sinkt (coordinated
+ *   omission).</li>
+ *   <li>Ein Messthread schickt alle {@code --probe-ms} eine Position mit eindeutigem speed an eine eigene ID und
+ *   fragt sie so lange ab, bis genau dieser Wert sichtbar ist: Latenz vom Senden bis zur Sichtbarkeit.</li>
+ *   <li>Beide Latenzen landen in HDR-Histogrammen (Mikrosekunden, drei signifikante Stellen).</li>
+ * </ul>
+ *
+ * <p>Ausgabe: Tabelle auf der Konsole und ein JSON-Dokument ({@code --json}) mit einem Eintrag pro Backend.</p>
+ */
+public final class LoadGenerator {
+
+    // Werte darüber werden auf die Obergrenze gekappt
+    private static final long MAX_MICROS = TimeUnit.SECONDS.toMicros(60);
+    private static final long PROBE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    // IDs der Messungen liegen hinter der Flotte und werden von der Last nie überschrieben
+    private static final int PROBE_IDS = 100;
+
+    record Result(String backend, String store, int vehicles, int targetRate, int threads, double seconds,
+                  long publishes, long publishErrors, Histogram publishLatency,
+                  long probes, long probeErrors, Histogram visibleLatency) {
+
+        double throughput() {
+            return publishes / seconds;
+        }
+    }
+
+    private LoadGenerator() {
+    }
+
+    /**
+     * Argumente: {@code [--backend tcp,tcp-nio,grpc,rest] [--store map|columnar] [--vehicles 1000] [--rate 20000]
+     * [--threads 16] [--seconds 10] [--warmup 3] [--probe-ms 10] [--json target/load.json]}
+     */
+    public static void main(String[] args) throws Exception {
+        String[] backends = stringArg(args, "--backend", "tcp,grpc,rest").split(",");
+        String store = stringArg(args, "--store", "map");
+        int vehicles = intArg(args, "--vehicles", 1000);
+        int rate = intArg(args, "--rate", 20_000);
+        int threads = intArg(args, "--threads", 16);
+        int seconds = intArg(args, "--seconds", 10);
+        int warmup = intArg(args, "--warmup", 3);
+        int probeMillis = intArg(args, "--probe-ms", 10);
+        Path json = Path.of(stringArg(args, "--json", "target/load.json"));
+
+        List<Result> results = new ArrayList<>();
+        for (String name : backends) {
+            try (Backend backend = Backend.start(name.trim(), store)) {
+                if (warmup > 0) {
+                    // JIT und Verbindungsaufbau; Ergebnis wird verworfen
+                    run(backend, store, vehicles, rate, threads, warmup, probeMillis);
+                }
+                Result result = run(backend, store, vehicles, rate, threads, seconds, probeMillis);
+                results.add(result);
+                printText(result, System.out);
+            }
+        }
+
+        if (json.getParent() != null) {
+            Files.createDirectories(json.getParent());
+        }
+        Files.writeString(json, toJson(results), StandardCharsets.UTF_8);
+        System.out.println("JSON: " + json.toAbsolutePath());
+    }
+
+    static Result run(Backend backend, String store, int vehicles, int rate, int threads, int seconds,
+                      int probeMillis) throws Exception {
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(seconds);
+        long intervalNanos = Math.max(1, (long) (1e9 * threads / rate));
+
+        LongAdder publishes = new LongAdder();
+        LongAdder publishErrors = new LongAdder();
+        List<Histogram> histograms = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        List<Exception> failures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            Histogram histogram = new Histogram(MAX_MICROS, 3);
+            histograms.add(histogram);
+            Backend.Client client = backend.connect();
+            // Versetzt starten, damit nicht alle Threads im selben Moment senden
+            long offset = intervalNanos * t / threads;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try (client) {
+                    for (long n = 0; ; n++) {
+                        long intended = startNanos + offset + n * intervalNanos;
+                        if (intended >= endNanos) {
+                            break;
+                        }
+                        long wait = intended - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        try {
+                            client.publish(1 + random.nextInt(vehicles), 49.45 + random.nextDouble() * 0.05,
+                                    8.45 + random.nextDouble() * 0.05, random.nextDouble() * 30.0);
+                            publishes.increment();
+                        } catch (Exception e) {
+                            publishErrors.increment();
+                        }
+                        histogram.recordValue(micros(System.nanoTime() - intended));
+                    }
+                } catch (Exception e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "load-" + t);
+            workers.add(worker);
+        }
+
+        Histogram visible = new Histogram(MAX_MICROS, 3);
+        LongAdder probes = new LongAdder();
+        LongAdder probeErrors = new LongAdder();
+        Backend.Client probeClient = backend.connect();
+        Thread prober = new Thread(() -> {
+            try (probeClient) {
+                for (long n = 0; ; n++) {
+                    long intended = startNanos + n * TimeUnit.MILLISECONDS.toNanos(probeMillis);
+                    if (intended >= endNanos) {
+                        break;
+                    }
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    if (probe(probeClient, vehicles + 1 + (int) (n % PROBE_IDS), n + 1.0, visible)) {
+                        probes.increment();
+                    } else {
+                        probeErrors.increment();
+                    }
+                }
+            } catch (Exception e) {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+            }
+        }, "load-probe");
+
+        workers.forEach(Thread::start);
+        prober.start();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        prober.join();
+        double elapsed = Math.max(seconds, (System.nanoTime() - startNanos) / 1e9);
+        for (Exception failure : failures) {
+            System.err.println(backend.name() + ": " + failure);
+        }
+
+        Histogram publishLatency = new Histogram(MAX_MICROS, 3);
+        histograms.forEach(publishLatency::add);
+        return new Result(backend.name(), store, vehicles, rate, threads, elapsed, publishes.sum(),
+                publishErrors.sum(), publishLatency, probes.sum(), probeErrors.sum(), visible);
+    }
+
+    /**
+     * Schickt {@code marker} als speed und wartet, bis ein Fetch genau diesen Wert liefert.
+     *
+     * @return false bei Fehler oder wenn der Wert nicht innerhalb von 5 s sichtbar wurde
+     */
+    private static boolean probe(Backend.Client client, int id, double marker, Histogram visible) {
+        long start = System.nanoTime();
+        try {
+            client.publish(id, 49.5, 8.5, marker);
+            while (client.fetchSpeed(id) != marker) {
+                if (System.nanoTime() - start > PROBE_TIMEOUT_NANOS) {
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        visible.recordValue(micros(System.nanoTime() - start));
+        return true;
+    }
+
+    private static long micros(long nanos) {
+        return Math.min(MAX_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    static void printText(Result r, PrintStream out) {
+        out.printf(Locale.ROOT, "%n== %s (store=%s, %d Fahrzeuge, Ziel %d/s, %d Threads, %.1f s)%n",
+                r.backend(), r.store(), r.vehicles(), r.targetRate(), r.threads(), r.seconds());
+        out.printf(Locale.ROOT, "Durchsatz: %.0f/s, %d Fehler%n", r.throughput(), r.publishErrors());
+        out.printf(Locale.ROOT, "%-22s %10s %10s %10s %10s %10s%n", "Latenz (ms)", "p50", "p99", "p999", "max",
+                "Anzahl");
+        printRow(out, "publish (ab Plan)", r.publishLatency());
+        printRow(out, "publish bis sichtbar", r.visibleLatency());
+        out.printf(Locale.ROOT, "Messungen: %d, Fehler/Timeouts: %d%n", r.probes(), r.probeErrors());
+    }
+
+    private static void printRow(PrintStream out, String label, Histogram h) {
+        out.printf(Locale.ROOT, "%-22s %10.3f %10.3f %10.3f %10.3f %10d%n", label,
+                h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3,
+                h.getValueAtPercentile(99.9) / 1e3, h.getMaxValue() / 1e3, h.getTotalCount());
+    }
+
+    static String toJson(List<Result> results) {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            json.append("  {\"backend\":\"").append(r.backend())
+                    .append("\",\"store\":\"").append(r.store())
+                    .append("\",\"vehicles\":").append(r.vehicles())
+                    .append(",\"targetRate\":").append(r.targetRate())
+                    .append(",\"threads\":").append(r.threads())
+                    .append(",\"seconds\":").append(String.format(Locale.ROOT, "%.3f", r.seconds()))
+                    .append(",\"publishes\":").append(r.publishes())
+                    .append(",\"throughput\":").append(String.format(Locale.ROOT, "%.1f", r.throughput()))
+                    .append(",\"publishErrors\":").append(r.publishErrors())
+                    .append(",\"probes\":").append(r.probes())
+                    .append(",\"probeErrors\":").append(r.probeErrors())
+                    .append(",\"publishLatencyMicros\":");
+            appendHistogram(json, r.publishLatency());
+            json.append(",\"visibleLatencyMicros\":");
+            appendHistogram(json, r.visibleLatency());
+            json.append(i + 1 < results.size() ? "},\n" : "}\n");
+        }
+        return json.append("]\n").toString();
+    }
+
+    private static void appendHistogram(StringBuilder json, Histogram h) {
+        json.append("{\"count\":").append(h.getTotalCount())
+                .append(",\"mean\":").append(String.format(Locale.ROOT, "%.1f", h.getMean()))
+                .append(",\"p50\":").append(h.getValueAtPercentile(50))
+                .append(",\"p90\":").append(h.getValueAtPercentile(90))
+                .append(",\"p99\":").append(h.getValueAtPercentile(99))
+                .append(",\"p999\":").append(h.getValueAtPercentile(99.9))
+                .append(",\"max\":").append(h.getMaxValue())
+                .append('}');
+    }
+
+    private static int intArg(String[] args, String key, int defaultValue) {
+        String value = stringArg(args, key, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static String stringArg(String[] args, String key, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (key.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
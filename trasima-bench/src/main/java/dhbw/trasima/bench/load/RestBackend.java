@@ -0,0 +1,100 @@
+package dhbw.trasima.bench.load;
+
+import dhbw.trasima.trasima_aufgabe_10.model.V2State;
+import dhbw.trasima.trasima_aufgabe_10.model.V2StateJson;
+import dhbw.trasima.trasima_aufgabe_10.server.TrasimaRestServer;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * REST-Server ({@link TrasimaRestServer}, läuft bis zum Ende der JVM) über {@link HttpClient}.
+ *
+ * <p>Veröffentlicht wird mit dem Batch-{@code PUT /vehicles} und einem Element, weil das anlegt oder
+ * aktualisiert; das einzelne {@code PUT /vehicles/{id}} kennt nur bestehende IDs.</p>
+ */
+final class RestBackend implements Backend {
+
+    private final String baseUrl;
+    private final HttpClient http;
+
+    private RestBackend(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    static RestBackend start(String store) throws Exception {
+        int port = Backend.freePort();
+        Backend.runMain("rest-server", () -> TrasimaRestServer.main(new String[]{"--httpPort", Integer.toString(port),
+                "--store", store}));
+        RestBackend backend = new RestBackend("http://localhost:" + port + "/api/trasima/vehicles");
+        for (int attempt = 0; ; attempt++) {
+            try {
+                backend.fetchSpeed(1);
+                return backend;
+            } catch (IOException e) {
+                if (attempt >= 100) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "rest";
+    }
+
+    @Override
+    public Client connect() {
+        V2StateJson.Buffer buffer = new V2StateJson.Buffer();
+        return new Client() {
+            @Override
+            public void publish(int id, double x, double y, double speed) throws Exception {
+                byte[] body = buffer.reset().writeList(List.of(new V2State(id, x, y, speed, 0.0))).toByteArray();
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl))
+                        .header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                        .build();
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    throw new IOException("PUT: HTTP " + response.statusCode());
+                }
+            }
+
+            @Override
+            public double fetchSpeed(int id) throws Exception {
+                return RestBackend.this.fetchSpeed(id);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private double fetchSpeed(int id) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + id)).GET().build();
+        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 404) {
+            return Double.NaN;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("GET: HTTP " + response.statusCode());
+        }
+        byte[] body = response.body();
+        return V2StateJson.readState(body, 0, body.length).speed;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,123 @@
+package dhbw.trasima.bench.load;
+
+import dhbw.trasima.trasima_bis_5.tcp.ColumnarV2Store;
+import dhbw.trasima.trasima_bis_5.tcp.InMemoryV2Store;
+import dhbw.trasima.trasima_bis_5.tcp.NioTrasimaServer;
+import dhbw.trasima.trasima_bis_5.tcp.TextProtocol;
+import dhbw.trasima.trasima_bis_5.tcp.TrasimaServer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TCP-Server mit Textprotokoll: {@link TrasimaServer} (ein Thread pro Verbindung) oder {@link NioTrasimaServer}.
+ */
+final class TcpBackend implements Backend {
+
+    private final String name;
+    private final int port;
+    // Nur im NIO-Modus; der blockierende Server läuft bis zum Ende der JVM.
+    private final NioTrasimaServer nio;
+
+    private TcpBackend(String name, int port, NioTrasimaServer nio) {
+        this.name = name;
+        this.port = port;
+        this.nio = nio;
+    }
+
+    static TcpBackend blocking(String store) throws Exception {
+        int port = Backend.freePort();
+        Backend.runMain("tcp-server", () -> TrasimaServer.main(new String[]{"--port", Integer.toString(port),
+                "--store", store}));
+        awaitPort(port);
+        return new TcpBackend("tcp", port, null);
+    }
+
+    static TcpBackend nio(String store) throws Exception {
+        NioTrasimaServer server = new NioTrasimaServer(0, Runtime.getRuntime().availableProcessors(),
+                "columnar".equals(store) ? new ColumnarV2Store() : new InMemoryV2Store());
+        server.start();
+        return new TcpBackend("tcp-nio", server.port(), server);
+    }
+
+    private static void awaitPort(int port) throws InterruptedException, IOException {
+        for (int attempt = 0; ; attempt++) {
+            try (Socket ignored = new Socket("localhost", port)) {
+                return;
+            } catch (IOException e) {
+                if (attempt >= 100) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Client connect() throws IOException {
+        return new TcpClient(new Socket("localhost", port));
+    }
+
+    @Override
+    public void close() {
+        if (nio != null) {
+            nio.close();
+        }
+    }
+
+    private static final class TcpClient implements Client {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+
+        TcpClient(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void publish(int id, double x, double y, double speed) throws IOException {
+            String answer = request("PUBLISH " + id + " " + x + " " + y + " " + speed);
+            if (!TextProtocol.OK.equals(answer)) {
+                throw new IOException("PUBLISH: " + answer);
+            }
+        }
+
+        @Override
+        public double fetchSpeed(int id) throws IOException {
+            String answer = request("FETCH " + id);
+            if (TextProtocol.NOT_FOUND.equals(answer)) {
+                return Double.NaN;
+            }
+            // "<id> <x> <y> <speed>"
+            return Double.parseDouble(answer.substring(answer.lastIndexOf(' ') + 1));
+        }
+
+        private String request(String line) throws IOException {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            String answer = in.readLine();
+            if (answer == null) {
+                throw new IOException("Verbindung geschlossen");
+            }
+            return answer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package dhbw.trasima.bench.persistence;
+
+import dhbw.trasima.trasima_bis_5.persistence.StatePersistence;
+import dhbw.trasima.trasima_bis_5.tcp.ColumnarV2Store;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Misst {@link StatePersistence} unter Last: Durchsatz, Schreibverstärkung und Wiederherstellungszeit.
+ *
+ * <p>Mehrere Threads schicken zusammen {@code --rate} Updates pro Sekunde an {@code --vehicles} Fahrzeuge.
+ * Danach wird die Persistenz geschlossen und neu geöffnet.</p>
+ *
+ * <p>Schreibverstärkung = (geschriebene WAL- und Snapshot-Bytes) / (Updates × {@value #PAYLOAD_BYTES} Bytes
+ * Nutzdaten: id, x, y, speed, direction, timestamp).</p>
+ *
+ * <p>Prüfungen, Exit-Code 1 bei einem Verstoß: nach dem Wiederöffnen muss jedes Fahrzeug genau den Zustand von vor
+ * dem Schließen haben; optional dürfen Wiederherstellungszeit ({@code --max-recovery-ms}) und Schreibverstärkung
+ * ({@code --max-write-amp}) eine Grenze nicht überschreiten.</p>
+ */
+public final class WalBenchmark {
+
+    private static final int PAYLOAD_BYTES = 44;
+
+    private WalBenchmark() {
+    }
+
+    /**
+     * Argumente: {@code <verzeichnis> [--rate 100000] [--seconds 10] [--vehicles 10000] [--threads 32]
+     * [--sync group|interval|none] [--snapshot-ms 2000] [--max-recovery-ms n] [--max-write-amp n]}
+     */
+    public static void main(String[] args) throws Exception {
+        Path dir = Path.of(args[0]);
+        int rate = intArg(args, "--rate", 100_000);
+        int seconds = intArg(args, "--seconds", 10);
+        int vehicles = intArg(args, "--vehicles", 10_000);
+        int threads = intArg(args, "--threads", 32);
+        double maxRecoveryMillis = doubleArg(args, "--max-recovery-ms", Double.POSITIVE_INFINITY);
+        double maxWriteAmplification = doubleArg(args, "--max-write-amp", Double.POSITIVE_INFINITY);
+
+        StatePersistence.Options options = new StatePersistence.Options();
+        options.syncMode = StatePersistence.SyncMode.valueOf(
+                stringArg(args, "--sync", "group").toUpperCase(Locale.ROOT));
+        options.snapshotIntervalMillis = intArg(args, "--snapshot-ms", 2_000);
+
+        StatePersistence persistence = StatePersistence.open(dir, options);
+        ColumnarV2Store store = persistence.store();
+        System.out.printf(Locale.ROOT, "Start: %d Fahrzeuge wiederhergestellt in %.1f ms%n",
+                store.size(), persistence.stats().recoveryMillis());
+
+        LongAdder updates = new LongAdder();
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + seconds * 1_000_000_000L;
+        // Jeder Thread hält seinen Anteil der Rate (Takt 1 ms); wer hinterherhängt, holt ohne Pause auf.
+        double perThreadPerNano = rate / (double) threads / 1e9;
+
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while (true) {
+                    long now = System.nanoTime();
+                    if (now >= endNanos) {
+                        break;
+                    }
+                    long due = (long) ((now - startNanos) * perThreadPerNano);
+                    if (done >= due) {
+                        LockSupport.parkNanos(1_000_000);
+                        continue;
+                    }
+                    int id = 1 + random.nextInt(vehicles);
+                    store.put(id, 48.0 + random.nextDouble(), 9.0 + random.nextDouble(), random.nextDouble() * 30,
+                            random.nextDouble() * 360, System.currentTimeMillis());
+                    done++;
+                    updates.increment();
+                }
+            }, "wal-bench-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+
+        // Stand vor dem Schließen; nach dem Wiederöffnen muss genau dieser wieder da sein
+        Map<Integer, double[]> expected = new HashMap<>();
+        store.forEach((id, x, y, speed, direction, timestamp) ->
+                expected.put(id, new double[] {x, y, speed, direction, timestamp}));
+
+        StatePersistence.Stats stats = persistence.stats();
+        persistence.close();
+        long total = updates.sum();
+        long written = stats.walBytes() + stats.snapshotBytes();
+
+        System.out.printf(Locale.ROOT, "Updates: %d in %.1f s = %.0f/s (Ziel %d/s, sync=%s)%n",
+                total, elapsed, total / elapsed, rate, options.syncMode);
+        System.out.printf(Locale.ROOT, "fsyncs: %d (%.1f Updates pro fsync)%n",
+                stats.syncs(), stats.syncs() == 0 ? 0.0 : total / (double) stats.syncs());
+        System.out.printf(Locale.ROOT, "WAL: %.1f MiB, Snapshots: %d mit zusammen %.1f MiB%n",
+                stats.walBytes() / 1048576.0, stats.snapshots(), stats.snapshotBytes() / 1048576.0);
+        double writeAmplification = total == 0 ? 0.0 : written / (double) (total * PAYLOAD_BYTES);
+        System.out.printf(Locale.ROOT, "Schreibverstärkung: %.2f%n", writeAmplification);
+
+        StatePersistence reopened = StatePersistence.open(dir, options);
+        StatePersistence.Stats recovery = reopened.stats();
+        System.out.printf(Locale.ROOT, "Wiederherstellung: %.1f ms (%d Zeilen aus Snapshot, %d aus dem WAL, %d Fahrzeuge)%n",
+                recovery.recoveryMillis(), recovery.recoveredSnapshotRows(), recovery.recoveredRecords(),
+                reopened.store().size());
+
+        int[] mismatches = new int[1];
+        reopened.store().forEach((id, x, y, speed, direction, timestamp) -> {
+            double[] e = expected.remove(id);
+            if (e == null || e[0] != x || e[1] != y || e[2] != speed || e[3] != direction || e[4] != timestamp) {
+                mismatches[0]++;
+            }
+        });
+        reopened.close();
+        // Übrig gebliebene Fahrzeuge fehlen nach der Wiederherstellung
+        int errors = mismatches[0] + expected.size();
+
+        List<String> failures = new ArrayList<>();
+        if (errors > 0) {
+            failures.add(errors + " Fahrzeuge nach der Wiederherstellung fehlend oder abweichend");
+        }
+        if (recovery.recoveryMillis() > maxRecoveryMillis) {
+            failures.add(String.format(Locale.ROOT, "Wiederherstellung %.1f ms > %.1f ms",
+                    recovery.recoveryMillis(), maxRecoveryMillis));
+        }
+        if (writeAmplification > maxWriteAmplification) {
+            failures.add(String.format(Locale.ROOT, "Schreibverstärkung %.2f > %.2f",
+                    writeAmplification, maxWriteAmplification));
+        }
+        if (!failures.isEmpty()) {
+            failures.forEach(f -> System.out.println("FEHLER: " + f));
+            System.exit(1);
+        }
+        System.out.println("Prüfungen bestanden.");
+    }
+
+    private static int intArg(String[] args, String key, int defaultValue) {
+        String value = stringArg(args, key, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static double doubleArg(String[] args, String key, double defaultValue) {
+        String value = stringArg(args, key, null);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static String stringArg(String[] args, String key, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (key.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
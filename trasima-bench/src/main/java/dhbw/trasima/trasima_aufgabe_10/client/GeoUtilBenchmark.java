@@ -0,0 +1,91 @@
+package dhbw.trasima.trasima_aufgabe_10.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Geo math of the simulation: single {@link GeoUtil} calls and one full tick (distance, bearing and destination
+ * point per vehicle, as in {@link VehicleSimulator#advance}).
+ *
+ * <p>Lives in the client package because {@code bearingDegrees}/{@code destinationPoint} are package-private.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoUtilBenchmark {
+
+    // Default destination of SimulationConfig (SAP Arena).
+    private static final double DEST_LAT = 49.4652;
+    private static final double DEST_LON = 8.5186;
+
+    @Param({"1000", "10000"})
+    public int vehicles;
+
+    private double[] startLat;
+    private double[] startLon;
+    private double[] lat;
+    private double[] lon;
+
+    @Setup
+    public void setUp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        startLat = new double[vehicles];
+        startLon = new double[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            startLat[i] = 49.48 + random.nextDouble() * 0.05;
+            startLon[i] = 8.45 + random.nextDouble() * 0.05;
+        }
+        lat = startLat.clone();
+        lon = startLon.clone();
+    }
+
+    @Benchmark
+    public double distance() {
+        return GeoUtil.distanceMeters(lat[0], lon[0], DEST_LAT, DEST_LON);
+    }
+
+    @Benchmark
+    public double bearing() {
+        return GeoUtil.bearingDegrees(lat[0], lon[0], DEST_LAT, DEST_LON);
+    }
+
+    @Benchmark
+    public GeoUtil.LatLon destination() {
+        return GeoUtil.destinationPoint(lat[0], lon[0], 123.0, 13.9);
+    }
+
+    /** One simulation tick over the whole fleet (1 s at 50 km/h); time is per tick, not per vehicle. */
+    @Benchmark
+    public double tick() {
+        double checksum = 0.0;
+        for (int i = 0; i < vehicles; i++) {
+            double distance = GeoUtil.distanceMeters(lat[i], lon[i], DEST_LAT, DEST_LON);
+            if (distance <= 20.0) {
+                // Respawn, so the fleet never collapses onto the destination during a long run.
+                lat[i] = startLat[i];
+                lon[i] = startLon[i];
+                continue;
+            }
+            double direction = GeoUtil.bearingDegrees(lat[i], lon[i], DEST_LAT, DEST_LON);
+            GeoUtil.LatLon next = GeoUtil.destinationPoint(lat[i], lon[i], direction, Math.min(13.9, distance));
+            lat[i] = next.lat();
+            lon[i] = next.lon();
+            checksum += direction;
+        }
+        return checksum;
+    }
+}
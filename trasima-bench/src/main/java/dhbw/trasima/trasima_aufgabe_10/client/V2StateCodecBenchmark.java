@@ -0,0 +1,145 @@
+package dhbw.trasima.trasima_aufgabe_10.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dhbw.trasima.trasima_aufgabe07.V2List;
+import dhbw.trasima.trasima_aufgabe_10.model.V2State;
+import dhbw.trasima.trasima_aufgabe_10.model.V2StateJson;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding of one vehicle state and of a list, in the three wire formats of the repo.
+ *
+ * <ul>
+ *   <li>{@code protobuf*}: the gRPC message of aufgabe07 ({@code x, y, speed})</li>
+ *   <li>{@code json*}: the hand-written {@link V2StateJson} codec; {@code jsonEncode} is the exact client path
+ *   ({@link RestPositionPublisher#toJson})</li>
+ *   <li>{@code jackson*}: the same DTO through Jackson, as before the custom codec</li>
+ * </ul>
+ *
+ * <p>Lives in the client package because {@code toJson} is package-private.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class V2StateCodecBenchmark {
+
+    @Param({"1000"})
+    public int listSize;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final V2State state = new V2State(4711, 49.48765432101234, 8.46612345678901, 13.888888888888889, 237.5);
+    private dhbw.trasima.trasima_aufgabe07.V2State protoState;
+    private List<V2State> states;
+    private V2List protoList;
+    private byte[] protoBytes;
+    private byte[] jsonBytes;
+    private byte[] jacksonBytes;
+    private byte[] protoListBytes;
+    private byte[] jsonListBytes;
+    private byte[] jacksonListBytes;
+    private final V2StateJson.Buffer buffer = new V2StateJson.Buffer();
+
+    @Setup
+    public void setUp() throws IOException {
+        protoState = proto(state);
+        states = new ArrayList<>(listSize);
+        V2List.Builder list = V2List.newBuilder();
+        for (int i = 0; i < listSize; i++) {
+            V2State s = new V2State(i + 1, 49.4 + i * 1e-5, 8.4 + i * 1e-5, 10.0 + i % 20, i % 360);
+            states.add(s);
+            list.addStates(proto(s));
+        }
+        protoList = list.build();
+
+        protoBytes = protoState.toByteArray();
+        jsonBytes = RestPositionPublisher.toJson(state.id, state.lat, state.lon, state.speed, state.direction);
+        jacksonBytes = MAPPER.writeValueAsBytes(state);
+        protoListBytes = protoList.toByteArray();
+        jsonListBytes = new V2StateJson.Buffer().writeList(states).toByteArray();
+        jacksonListBytes = MAPPER.writeValueAsBytes(states);
+    }
+
+    private static dhbw.trasima.trasima_aufgabe07.V2State proto(V2State s) {
+        return dhbw.trasima.trasima_aufgabe07.V2State.newBuilder()
+                .setId(s.id).setX(s.lat).setY(s.lon).setSpeed(s.speed).build();
+    }
+
+    @Benchmark
+    public byte[] protobufEncode() {
+        return proto(state).toByteArray();
+    }
+
+    @Benchmark
+    public dhbw.trasima.trasima_aufgabe07.V2State protobufDecode() throws IOException {
+        return dhbw.trasima.trasima_aufgabe07.V2State.parseFrom(protoBytes);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return RestPositionPublisher.toJson(state.id, state.lat, state.lon, state.speed, state.direction);
+    }
+
+    @Benchmark
+    public V2State jsonDecode() {
+        return V2StateJson.readState(jsonBytes, 0, jsonBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jacksonEncode() throws IOException {
+        return MAPPER.writeValueAsBytes(state);
+    }
+
+    @Benchmark
+    public V2State jacksonDecode() throws IOException {
+        return MAPPER.readValue(jacksonBytes, V2State.class);
+    }
+
+    @Benchmark
+    public byte[] protobufEncodeList() {
+        return protoList.toByteArray();
+    }
+
+    @Benchmark
+    public V2List protobufDecodeList() throws IOException {
+        return V2List.parseFrom(protoListBytes);
+    }
+
+    @Benchmark
+    public int jsonEncodeList() {
+        // Reused buffer, like the server's message body writer.
+        return buffer.reset().writeList(states).length();
+    }
+
+    @Benchmark
+    public List<V2State> jsonDecodeList() {
+        return V2StateJson.readList(jsonListBytes, 0, jsonListBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jacksonEncodeList() throws IOException {
+        return MAPPER.writeValueAsBytes(states);
+    }
+
+    @Benchmark
+    public V2State[] jacksonDecodeList() throws IOException {
+        return MAPPER.readValue(jacksonListBytes, V2State[].class);
+    }
+}
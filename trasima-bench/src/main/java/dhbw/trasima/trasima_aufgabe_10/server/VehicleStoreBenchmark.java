@@ -0,0 +1,93 @@
+package dhbw.trasima.trasima_aufgabe_10.server;
+
+import dhbw.trasima.trasima_aufgabe_10.model.V2State;
+import dhbw.trasima.trasima_bis_5.history.PositionHistory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stores behind the REST server: put/get of random ids and full listings at different fleet sizes.
+ *
+ * <p>Lives in the server package because the stores are package-private. Thread counts come from the command line
+ * ({@code -t} or {@code BenchMain --threads}); {@code mixed} always runs three readers against one writer.
+ * Position history is off, so only the store itself (including grid index and change feed) is measured.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VehicleStoreBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int fleetSize;
+
+    @Param({"map", "columnar"})
+    public String store;
+
+    private VehicleStore vehicleStore;
+
+    @Setup
+    public void setUp() {
+        PositionHistory.Options options = new PositionHistory.Options();
+        options.bytesPerVehicle = 0;
+        PositionHistory history = new PositionHistory(options);
+        vehicleStore = "columnar".equals(store) ? new ColumnarVehicleStore(history) : new InMemoryV2Store(history);
+        for (int id = 1; id <= fleetSize; id++) {
+            vehicleStore.put(new V2State(id, 49.0 + id * 1e-6, 8.4 + id * 1e-6, 13.9, 90.0));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        vehicleStore.close();
+    }
+
+    @Benchmark
+    public boolean put() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Small moves, like a simulation tick: most updates stay in their grid cell.
+        return vehicleStore.put(new V2State(1 + random.nextInt(fleetSize), 49.0 + random.nextDouble() * 0.1,
+                8.4 + random.nextDouble() * 0.1, 13.9, 90.0));
+    }
+
+    @Benchmark
+    public V2State get() {
+        return vehicleStore.get(1 + ThreadLocalRandom.current().nextInt(fleetSize));
+    }
+
+    @Benchmark
+    public List<V2State> list() {
+        return vehicleStore.list();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public V2State mixedGet() {
+        return get();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean mixedPut() {
+        return put();
+    }
+}
@@ -0,0 +1,4 @@
+package dhbw.trasima.bench.jmh_generated;
+public class TcpStoreBenchmark_jmhType extends TcpStoreBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package dhbw.trasima.bench.jmh_generated;
+public class TextProtocolBenchmark_jmhType extends TextProtocolBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package dhbw.trasima.trasima_aufgabe_10.client.jmh_generated;
+public class GeoUtilBenchmark_jmhType extends GeoUtilBenchmark_jmhType_B3 {
+}
+
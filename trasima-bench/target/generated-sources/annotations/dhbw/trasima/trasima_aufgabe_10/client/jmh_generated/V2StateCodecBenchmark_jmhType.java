@@ -0,0 +1,4 @@
+package dhbw.trasima.trasima_aufgabe_10.client.jmh_generated;
+public class V2StateCodecBenchmark_jmhType extends V2StateCodecBenchmark_jmhType_B3 {
+}
+
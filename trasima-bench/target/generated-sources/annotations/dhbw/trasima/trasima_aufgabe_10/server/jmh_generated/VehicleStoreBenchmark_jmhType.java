@@ -0,0 +1,4 @@
+package dhbw.trasima.trasima_aufgabe_10.server.jmh_generated;
+public class VehicleStoreBenchmark_jmhType extends VehicleStoreBenchmark_jmhType_B3 {
+}
+
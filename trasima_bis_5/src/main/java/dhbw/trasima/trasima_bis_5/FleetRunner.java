@@ -0,0 +1,182 @@
+package dhbw.trasima.trasima_bis_5;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Startet eine Flotte von {@link VirtualVehicle}s in einem von drei Ausführungsmodi und misst dabei
+ * Startzeit, Heap pro Fahrzeug und Tick-Jitter.
+ *
+ * <ul>
+ *   <li>{@link Mode#PLATFORM}: wie bisher ein Plattform-Thread pro Fahrzeug.</li>
+ *   <li>{@link Mode#VIRTUAL}: dieselben Fahrten auf virtuellen Threads. Nur in einem Build mit {@code -Pjdk21}
+ *   (Java 21), siehe {@link #virtualThreadsAvailable()}.</li>
+ *   <li>{@link Mode#WHEEL}: ein einziger Timer-Thread mit einem Rad aus {@value #WHEEL_SLOTS} Slots, der
+ *   {@link VirtualVehicle#tick()} direkt aufruft. Am günstigsten, solange die Publisher nicht blockieren.</li>
+ * </ul>
+ *
+ * <p>In den Thread-Modi läuft {@link VirtualVehicle#drive()} statt run(): die Start-/Ende-Zeile pro Fahrzeug
+ * würde sonst (synchronisiert auf System.out) in Startzeit und Jitter mitgemessen.</p>
+ *
+ * <p>Jitter = Abweichung des Abstands zweier Veröffentlichungen eines Fahrzeugs von
+ * {@link VirtualVehicle#TICK_MILLIS}.</p>
+ */
+public final class FleetRunner {
+
+    public enum Mode { PLATFORM, VIRTUAL, WHEEL }
+
+    private static final int WHEEL_SLOTS = 100;
+
+    private FleetRunner() {
+    }
+
+    /** true, wenn {@link Mode#VIRTUAL} in diesem Build läuft (mit {@code mvn -Pjdk21} gebaut). */
+    public static boolean virtualThreadsAvailable() {
+        return VirtualThreads.AVAILABLE;
+    }
+
+    /**
+     * Erstellt {@code count} Fahrzeuge (IDs 1..count), lässt sie eine Fahrt lang laufen und wartet auf das Ende.
+     *
+     * @throws IllegalArgumentException bei {@link Mode#VIRTUAL} in einem Build ohne {@code -Pjdk21}
+     */
+    public static Report run(Mode mode, int count, IntFunction<IPositionPublisher> publisherForId) {
+        // Vor dem Anlegen der Fahrzeuge prüfen, nicht erst beim Start der Threads
+        if (mode == Mode.VIRTUAL && !virtualThreadsAvailable()) {
+            throw new IllegalArgumentException("Mode.VIRTUAL braucht einen Build mit Java 21 (mvn -Pjdk21)");
+        }
+        JitterStats jitter = new JitterStats();
+
+        long heapBefore = usedHeap();
+        long startNanos = System.nanoTime();
+
+        List<VirtualVehicle> vehicles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = i + 1;
+            vehicles.add(new VirtualVehicle(
+                    id,
+                    Math.random() * 10,
+                    Math.random() * 10,
+                    0.5 + Math.random(),
+                    jitter.wrap(publisherForId.apply(id))
+            ));
+        }
+
+        return switch (mode) {
+            case PLATFORM -> runOnThreads(mode, vehicles, Executors.newCachedThreadPool(), startNanos, heapBefore, jitter);
+            case VIRTUAL -> runOnThreads(mode, vehicles, VirtualThreads.newPerTaskExecutor().orElseThrow(),
+                    startNanos, heapBefore, jitter);
+            case WHEEL -> runOnWheel(vehicles, startNanos, heapBefore, jitter);
+        };
+    }
+
+    private static Report runOnThreads(Mode mode, List<VirtualVehicle> vehicles, ExecutorService executor,
+                                       long startNanos, long heapBefore, JitterStats jitter) {
+        for (VirtualVehicle v2 : vehicles) {
+            executor.execute(v2::drive);
+        }
+        long startupNanos = System.nanoTime() - startNanos;
+        long heapPerVehicle = (usedHeap() - heapBefore) / Math.max(1, vehicles.size());
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(VirtualVehicle.RUNTIME_MILLIS * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return jitter.report(mode, vehicles.size(), startupNanos, heapPerVehicle);
+    }
+
+    private static Report runOnWheel(List<VirtualVehicle> vehicles, long startNanos, long heapBefore, JitterStats jitter) {
+        // Fahrzeuge gleichmäßig auf die Slots verteilen.
+        List<List<VirtualVehicle>> slots = new ArrayList<>(WHEEL_SLOTS);
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            slots.add(new ArrayList<>(vehicles.size() / WHEEL_SLOTS + 1));
+        }
+        for (int i = 0; i < vehicles.size(); i++) {
+            slots.get(i % WHEEL_SLOTS).add(vehicles.get(i));
+        }
+
+        long slotNanos = TimeUnit.MILLISECONDS.toNanos(VirtualVehicle.TICK_MILLIS) / WHEEL_SLOTS;
+        long runtimeNanos = TimeUnit.MILLISECONDS.toNanos(VirtualVehicle.RUNTIME_MILLIS);
+
+        long startupNanos = System.nanoTime() - startNanos;
+        long heapPerVehicle = (usedHeap() - heapBefore) / Math.max(1, vehicles.size());
+
+        long wheelStart = System.nanoTime();
+        for (long step = 0; ; step++) {
+            long due = wheelStart + step * slotNanos;
+            if (due - wheelStart >= runtimeNanos) {
+                break;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            for (VirtualVehicle v2 : slots.get((int) (step % WHEEL_SLOTS))) {
+                v2.tick();
+            }
+        }
+        return jitter.report(Mode.WHEEL, vehicles.size(), startupNanos, heapPerVehicle);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Ergebnis eines Laufs. Heap pro Fahrzeug enthält bei virtuellen Threads auch deren Stacks,
+     * bei Plattform-Threads nicht (die liegen außerhalb des Heaps).
+     */
+    public record Report(Mode mode, int vehicles, double startupMillis, long heapBytesPerVehicle,
+                         long ticks, double meanJitterMillis, double maxJitterMillis) {
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Modus=%s Fahrzeuge=%d Start=%.1f ms Heap/Fahrzeug=%d B Ticks=%d Jitter: mittel=%.2f ms max=%.2f ms",
+                    mode, vehicles, startupMillis, heapBytesPerVehicle, ticks, meanJitterMillis, maxJitterMillis);
+        }
+    }
+
+    private static final class JitterStats {
+
+        private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(VirtualVehicle.TICK_MILLIS);
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        IPositionPublisher wrap(IPositionPublisher delegate) {
+            // Ein Zustand pro Fahrzeug; tick() eines Fahrzeugs läuft nie parallel.
+            long[] last = new long[1];
+            return (id, x, y, speed) -> {
+                long now = System.nanoTime();
+                if (last[0] != 0) {
+                    long deviation = Math.abs(now - last[0] - TICK_NANOS);
+                    count.increment();
+                    sumNanos.add(deviation);
+                    maxNanos.accumulateAndGet(deviation, Math::max);
+                }
+                last[0] = now;
+                delegate.publishPosition(id, x, y, speed);
+            };
+        }
+
+        Report report(Mode mode, int vehicles, long startupNanos, long heapPerVehicle) {
+            long n = count.sum();
+            double mean = n == 0 ? 0.0 : sumNanos.sum() / (double) n / 1_000_000.0;
+            return new Report(mode, vehicles, startupNanos / 1_000_000.0, heapPerVehicle, n, mean,
+                    maxNanos.get() / 1_000_000.0);
+        }
+    }
+}
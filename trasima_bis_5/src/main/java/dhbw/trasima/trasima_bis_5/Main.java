@@ -1,45 +1,74 @@
 package dhbw.trasima.trasima_bis_5;
 
+import dhbw.trasima.trasima_bis_5.tcp.BinaryTcpPositionPublisher;
 import dhbw.trasima.trasima_bis_5.tcp.TcpPositionPublisher;
+import java.util.Locale;
 
 public class Main {
 
+    /**
+     * Argumente: {@code <anzahl> [--binary] [--shared] [--mode platform|virtual|wheel]}
+     * <ul>
+     *   <li>{@code --binary}: Binärprotokoll (Server muss mit --nio laufen)</li>
+     *   <li>{@code --shared}: eine gemeinsame Verbindung (Windowed-Ack) statt einer pro Fahrzeug</li>
+     *   <li>{@code --mode}: Ausführungsmodus der Flotte, siehe {@link FleetRunner} (Standard: platform; virtual nur
+     *   mit einem Build per {@code -Pjdk21})</li>
+     * </ul>
+     */
     public static void main(String[] args) {
         int numberOfVehicles = Integer.parseInt(args[0]);
+        // Optional: "--binary" nutzt das Binärprotokoll (Server muss mit --nio laufen).
+        boolean binary = hasFlag(args, "--binary");
+        boolean shared = hasFlag(args, "--shared");
+        FleetRunner.Mode mode = FleetRunner.Mode.valueOf(
+                stringArg(args, "--mode", "platform").toUpperCase(Locale.ROOT));
+        if (mode == FleetRunner.Mode.VIRTUAL && !FleetRunner.virtualThreadsAvailable()) {
+            System.out.println("--mode virtual braucht einen Build mit Java 21: mvn -Pjdk21 package");
+            System.exit(1);
+        }
 
-        System.out.println("Starte Simulation mit " + numberOfVehicles + " Virtual Vehicles.");
+        System.out.println("Starte Simulation mit " + numberOfVehicles + " Virtual Vehicles (" + mode + ").");
 
         // IPositionPublisher publisher = new ConsolePositionPublisher();
         //IPositionPublisher publisher = new SimplePositionPublisher();
         //IPositionPublisher publisher = new TcpPositionPublisher();
 
-        Thread[] threads = new Thread[numberOfVehicles];
+        TcpPositionPublisher sharedPublisher = shared
+                ? new TcpPositionPublisher("localhost", 5555, TcpPositionPublisher.Mode.WINDOWED, 1024, null)
+                : null;
 
-        for (int i = 0; i < numberOfVehicles; i++) {
+        FleetRunner.Report report = FleetRunner.run(mode, numberOfVehicles, id -> {
+            if (sharedPublisher != null) {
+                return sharedPublisher;
+            }
+            return binary
+                    ? new BinaryTcpPositionPublisher("localhost", 5555)
+                    : new TcpPositionPublisher("localhost", 5555);
+        });
 
-            IPositionPublisher publisher =
-                    new TcpPositionPublisher("localhost", 5555);
+        if (sharedPublisher != null) {
+            sharedPublisher.close();
+        }
 
-            VirtualVehicle v2 = new VirtualVehicle(
-                    i + 1,
-                    Math.random() * 10,
-                    Math.random() * 10,
-                    0.5 + Math.random(),
-                    publisher
-            );
+        System.out.println(report);
+        System.out.println("Simulation abgeschlossen.");
+    }
 
-            threads[i] = new Thread(v2);
-            threads[i].start();
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (flag.equals(arg)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        for (Thread t : threads) {
-            try {
-                t.join();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    private static String stringArg(String[] args, String key, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (key.equals(args[i])) {
+                return args[i + 1];
             }
         }
-
-        System.out.println("Simulation abgeschlossen.");
+        return defaultValue;
     }
 }
@@ -2,6 +2,10 @@ package dhbw.trasima.trasima_bis_5;
 
 public class VirtualVehicle implements Runnable {
 
+    // Fahrtdauer und Takt einer Fahrt; auch für externe Scheduler, die tick() selbst aufrufen.
+    public static final long RUNTIME_MILLIS = 30_000;
+    public static final long TICK_MILLIS = 1000;
+
     private final int id;
     private double x;
     private double y;
@@ -20,23 +24,38 @@ public class VirtualVehicle implements Runnable {
     @Override
     public void run() {
         System.out.println("V2-" + id + " gestartet.");
+        drive();
+        System.out.println("V2-" + id + " beendet Fahrt.");
+    }
 
+    /**
+     * Die Fahrt wie in {@link #run()}, aber ohne Konsolenausgabe (z.B. für Flotten mit vielen Fahrzeugen).
+     */
+    public void drive() {
         long startTime = System.currentTimeMillis();
-        long runtime = 30_000;
 
-        while (System.currentTimeMillis() - startTime < runtime) {
-            move();
-            publisher.publishPosition(id, x, y, speed);
+        while (System.currentTimeMillis() - startTime < RUNTIME_MILLIS) {
+            tick();
 
             try {
-                Thread.sleep(1000);
+                Thread.sleep(TICK_MILLIS);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
             }
         }
+    }
 
-        System.out.println("V2-" + id + " beendet Fahrt.");
+    /**
+     * Ein Simulationsschritt: bewegen und Position veröffentlichen.
+     */
+    public void tick() {
+        move();
+        publisher.publishPosition(id, x, y, speed);
+    }
+
+    public int getId() {
+        return id;
     }
 
     private void move() {
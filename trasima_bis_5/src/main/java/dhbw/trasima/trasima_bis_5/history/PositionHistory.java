@@ -0,0 +1,275 @@
+package dhbw.trasima.trasima_bis_5.history;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Begrenzter Positionsverlauf pro Fahrzeug (timestamp, x, y, speed, direction) mit Abfrage nach Zeitraum.
+ *
+ * <ul>
+ *   <li>Pro Fahrzeug ein Ringpuffer aus Blöcken zu {@value #BLOCK_BYTES} Bytes in einem einzigen {@code byte[]}.
+ *   Ist der Ring voll, wird der älteste Block überschrieben; der Verlauf reicht also so weit zurück, wie
+ *   {@link Options#bytesPerVehicle} es zulässt.</li>
+ *   <li>Jeder Block beginnt mit einem vollständigen Stützwert; danach folgen nur Differenzen zum vorherigen
+ *   Sample als ZigZag-Varints. Bei 1 Hz sind das rund 10 bis 15 statt 40 Bytes pro Sample.</li>
+ *   <li>Gespeichert wird quantisiert: Positionen auf 1e-7 (bei Grad rund 1 cm), speed auf 1e-3, direction auf
+ *   1e-2.</li>
+ *   <li>Neue Fahrzeuge werden nur aufgenommen, solange {@link Options#maxBytes} nicht erreicht ist.</li>
+ * </ul>
+ *
+ * <p>Thread-sicher; Schreiber und Leser eines Fahrzeugs synchronisieren sich auf dessen Ringpuffer. Samples, die
+ * zeitlich vor dem letzten Sample liegen (parallele Schreiber derselben ID), werden verworfen.</p>
+ */
+public final class PositionHistory {
+
+    public static final class Options {
+        /** Ringpuffer pro Fahrzeug in Bytes (auf ganze Blöcke abgerundet, mindestens zwei); 0 = kein Verlauf. */
+        public int bytesPerVehicle = 4 * 1024;
+        /** Obergrenze für alle Ringpuffer zusammen. */
+        public long maxBytes = 64L * 1024 * 1024;
+    }
+
+    /**
+     * Empfängt ein Sample ohne Zwischenobjekt.
+     */
+    public interface Visitor {
+        void visit(long timestamp, double x, double y, double speed, double direction);
+    }
+
+    public record Stats(int vehicles, long bytes, long samples, long rejectedVehicles) {
+    }
+
+    static final int BLOCK_BYTES = 256;
+    // Differenz: 5 Varints zu höchstens 10 Bytes
+    private static final int MAX_DELTA_BYTES = 5 * 10;
+
+    private static final double POSITION_SCALE = 1e7;
+    private static final double SPEED_SCALE = 1e3;
+    private static final double DIRECTION_SCALE = 1e2;
+
+    private final ConcurrentMap<Integer, Track> tracks = new ConcurrentHashMap<>();
+    private final int blocksPerVehicle;
+    private final int maxVehicles;
+    private final AtomicInteger vehicles = new AtomicInteger();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder rejectedVehicles = new LongAdder();
+
+    public PositionHistory(Options options) {
+        this.blocksPerVehicle = options.bytesPerVehicle <= 0 ? 0 : Math.max(2, options.bytesPerVehicle / BLOCK_BYTES);
+        this.maxVehicles = blocksPerVehicle == 0 ? 0
+                : (int) Math.min(Integer.MAX_VALUE, options.maxBytes / ((long) blocksPerVehicle * BLOCK_BYTES));
+    }
+
+    /**
+     * Hängt ein Sample an den Verlauf der ID an.
+     *
+     * @return false, wenn das Sample nicht gespeichert wurde (Verlauf aus, Speichergrenze erreicht oder
+     * zeitlich rückwärts)
+     */
+    public boolean record(int id, long timestamp, double x, double y, double speed, double direction) {
+        if (blocksPerVehicle == 0) {
+            return false;
+        }
+        Track track = tracks.get(id);
+        if (track == null) {
+            if (vehicles.incrementAndGet() > maxVehicles) {
+                vehicles.decrementAndGet();
+                rejectedVehicles.increment();
+                return false;
+            }
+            Track created = new Track(blocksPerVehicle);
+            track = tracks.putIfAbsent(id, created);
+            if (track == null) {
+                track = created;
+            } else {
+                vehicles.decrementAndGet();
+            }
+        }
+        boolean appended;
+        synchronized (track) {
+            appended = track.append(timestamp, Math.round(x * POSITION_SCALE), Math.round(y * POSITION_SCALE),
+                    Math.round(speed * SPEED_SCALE), Math.round(direction * DIRECTION_SCALE));
+        }
+        if (appended) {
+            samples.increment();
+        }
+        return appended;
+    }
+
+    /**
+     * Übergibt alle gespeicherten Samples mit {@code from <= timestamp <= to}, ältestes zuerst. Der Visitor läuft
+     * unter der Sperre des Fahrzeugs und sollte nicht blockieren.
+     *
+     * @return false, wenn es für die ID keinen Verlauf gibt
+     */
+    public boolean query(int id, long from, long to, Visitor visitor) {
+        Track track = tracks.get(id);
+        if (track == null) {
+            return false;
+        }
+        synchronized (track) {
+            track.visit(from, to, visitor);
+        }
+        return true;
+    }
+
+    /**
+     * Vergisst den Verlauf einer ID (z. B. wenn das Fahrzeug gelöscht wird) und gibt den Speicher frei.
+     */
+    public void remove(int id) {
+        if (tracks.remove(id) != null) {
+            vehicles.decrementAndGet();
+        }
+    }
+
+    public Stats stats() {
+        int count = vehicles.get();
+        return new Stats(count, (long) count * blocksPerVehicle * BLOCK_BYTES, samples.sum(), rejectedVehicles.sum());
+    }
+
+    /**
+     * Ringpuffer eines Fahrzeugs; alle Zugriffe unter der Sperre des Objekts.
+     */
+    private static final class Track {
+        final byte[] data;
+        final int[] used;
+        final long[] firstTimestamp;
+        final long[] lastTimestamp;
+        final byte[] scratch = new byte[MAX_DELTA_BYTES];
+        // Index des jüngsten Blocks und Anzahl belegter Blöcke
+        int newest = -1;
+        int count;
+        // Letztes Sample (quantisiert), Basis für die nächste Differenz
+        long timestamp;
+        long x;
+        long y;
+        long speed;
+        long direction;
+
+        Track(int blocks) {
+            data = new byte[blocks * BLOCK_BYTES];
+            used = new int[blocks];
+            firstTimestamp = new long[blocks];
+            lastTimestamp = new long[blocks];
+        }
+
+        boolean append(long t, long qx, long qy, long qs, long qd) {
+            if (count > 0 && t < timestamp) {
+                return false;
+            }
+            // Differenz zuerst in einen Zwischenpuffer, damit der Block bis zum letzten Byte genutzt wird.
+            int length = 0;
+            if (count > 0) {
+                length = writeVarint(scratch, length, t - timestamp);
+                length = writeVarint(scratch, length, zigzag(qx - x));
+                length = writeVarint(scratch, length, zigzag(qy - y));
+                length = writeVarint(scratch, length, zigzag(qs - speed));
+                length = writeVarint(scratch, length, zigzag(qd - direction));
+            }
+            if (count > 0 && used[newest] + length <= BLOCK_BYTES) {
+                System.arraycopy(scratch, 0, data, newest * BLOCK_BYTES + used[newest], length);
+                used[newest] += length;
+            } else {
+                // Neuer Block (überschreibt bei vollem Ring den ältesten) mit Stützwert
+                newest = (newest + 1) % used.length;
+                count = Math.min(count + 1, used.length);
+                int pos = newest * BLOCK_BYTES;
+                for (int i = 0; i < 8; i++) {
+                    data[pos++] = (byte) (t >>> (56 - 8 * i));
+                }
+                pos = writeVarint(data, pos, zigzag(qx));
+                pos = writeVarint(data, pos, zigzag(qy));
+                pos = writeVarint(data, pos, zigzag(qs));
+                pos = writeVarint(data, pos, zigzag(qd));
+                used[newest] = pos - newest * BLOCK_BYTES;
+                firstTimestamp[newest] = t;
+            }
+            lastTimestamp[newest] = t;
+            timestamp = t;
+            x = qx;
+            y = qy;
+            speed = qs;
+            direction = qd;
+            return true;
+        }
+
+        void visit(long from, long to, Visitor visitor) {
+            int blocks = used.length;
+            for (int i = count - 1; i >= 0; i--) {
+                int block = Math.floorMod(newest - i, blocks);
+                if (lastTimestamp[block] < from) {
+                    continue;
+                }
+                if (firstTimestamp[block] > to) {
+                    return;
+                }
+                visitBlock(block, from, to, visitor);
+            }
+        }
+
+        private void visitBlock(int block, long from, long to, Visitor visitor) {
+            int start = block * BLOCK_BYTES;
+            int end = start + used[block];
+            int[] cursor = {start};
+            long t = 0;
+            for (int i = 0; i < 8; i++) {
+                t = (t << 8) | (data[start + i] & 0xff);
+            }
+            cursor[0] = start + 8;
+            long qx = unzigzag(readVarint(data, cursor));
+            long qy = unzigzag(readVarint(data, cursor));
+            long qs = unzigzag(readVarint(data, cursor));
+            long qd = unzigzag(readVarint(data, cursor));
+            while (true) {
+                if (t > to) {
+                    return;
+                }
+                if (t >= from) {
+                    visitor.visit(t, qx / POSITION_SCALE, qy / POSITION_SCALE, qs / SPEED_SCALE, qd / DIRECTION_SCALE);
+                }
+                if (cursor[0] >= end) {
+                    return;
+                }
+                t += readVarint(data, cursor);
+                qx += unzigzag(readVarint(data, cursor));
+                qy += unzigzag(readVarint(data, cursor));
+                qs += unzigzag(readVarint(data, cursor));
+                qd += unzigzag(readVarint(data, cursor));
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] data, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            data[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[pos++] = (byte) value;
+        return pos;
+    }
+
+    /** Liest einen Varint ab cursor[0] und rückt cursor[0] weiter. */
+    private static long readVarint(byte[] data, int[] cursor) {
+        int pos = cursor[0];
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        cursor[0] = pos;
+        return result;
+    }
+}
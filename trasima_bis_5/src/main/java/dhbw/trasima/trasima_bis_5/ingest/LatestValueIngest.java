@@ -0,0 +1,268 @@
+package dhbw.trasima.trasima_bis_5.ingest;
+
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Eingangsstufe vor dem Speicher: pro Fahrzeug ein Fach, in dem nur das neueste noch nicht übernommene Update
+ * liegt; ein einzelner Thread überträgt die Fächer gesammelt in den Speicher.
+ *
+ * <ul>
+ *   <li>{@link #offer} schreibt ins Fach der ID und stellt das Fach nur dann in die Warteschlange, wenn es noch
+ *   nicht drin ist. Die Warteschlange enthält also höchstens ein Element pro Fahrzeug, egal wie schnell
+ *   gesendet wird.</li>
+ *   <li>Ein Update, das überschrieben wird, bevor der Übernahme-Thread es gelesen hat, wird verworfen, ohne dass
+ *   Speicher, Verlauf oder Beobachter es je sehen (coalescing).</li>
+ *   <li>Der Übernahme-Thread nimmt bis zu {@link Options#batchSize} Fächer auf einmal und ruft pro Fach einmal
+ *   den {@link Sink} auf.</li>
+ *   <li>{@link #readPending} liefert ein angenommenes, aber noch nicht übernommenes Update; Leser sehen ihre
+ *   eigenen Schreibvorgänge damit sofort.</li>
+ *   <li>Optional zählt ein {@link Tally} pro Absender (z. B. pro gRPC-Stream), wie viele seiner Updates übernommen
+ *   bzw. von einem neueren Update derselben ID ersetzt wurden, egal von welchem Absender das neuere kam.</li>
+ * </ul>
+ *
+ * <p>Metriken (Label {@code transport}): angenommene, übernommene und verworfene Updates, Tiefe der
+ * Warteschlange und Anteil verworfener Updates ({@code trasima_ingest_coalescing_ratio}).</p>
+ */
+public final class LatestValueIngest implements AutoCloseable {
+
+    public static final class Options {
+        /** Höchstens so viele Fächer pro Durchlauf des Übernahme-Threads. */
+        public int batchSize = 1024;
+    }
+
+    /**
+     * Empfängt ein Update ohne Zwischenobjekt: beim Übernehmen der Speicher, bei {@link #readPending} der Leser.
+     */
+    public interface Sink {
+        void apply(int id, double x, double y, double speed, long timestamp);
+    }
+
+    /**
+     * Zähler eines Absenders. Ein angenommenes Update landet genau einmal in {@link #applied()} oder
+     * {@link #superseded()}, solange der Sink nicht wirft; bis dahin ist es in keinem von beiden.
+     */
+    public static final class Tally {
+        private final LongAdder applied = new LongAdder();
+        private final LongAdder superseded = new LongAdder();
+
+        public long applied() {
+            return applied.sum();
+        }
+
+        public long superseded() {
+            return superseded.sum();
+        }
+    }
+
+    public record Stats(long received, long applied, long superseded, long batches, int queueDepth) {
+
+        /** Anteil der angenommenen Updates, die nie übernommen wurden. */
+        public double coalescingRatio() {
+            return received == 0 ? 0.0 : (double) superseded / received;
+        }
+    }
+
+    private final Sink sink;
+    private final int batchSize;
+    private final ConcurrentMap<Integer, Slot> slots = new ConcurrentHashMap<>();
+    // Fächer mit neuem Wert; jedes Fach höchstens einmal
+    private final BlockingQueue<Slot> queue = new LinkedBlockingQueue<>();
+    private final Thread applier;
+    private volatile boolean closed;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * @param transport Wert des Labels {@code transport} der Metriken, z. B. {@code "tcp"}
+     */
+    public LatestValueIngest(String transport, Sink sink, Options options) {
+        this.sink = sink;
+        this.batchSize = Math.max(1, options.batchSize);
+        this.applier = new Thread(this::applyLoop, "ingest-" + transport);
+        applier.setDaemon(true);
+        applier.start();
+
+        MetricsRegistry metrics = MetricsRegistry.global();
+        metrics.counter("trasima_ingest_received_total", "Von der Eingangsstufe angenommene Updates",
+                received::sum, "transport", transport);
+        metrics.counter("trasima_ingest_applied_total", "In den Speicher übernommene Updates",
+                applied::sum, "transport", transport);
+        metrics.counter("trasima_ingest_superseded_total", "Vor dem Übernehmen überschriebene Updates",
+                superseded::sum, "transport", transport);
+        metrics.gauge("trasima_ingest_queue_depth", "Fahrzeuge mit noch nicht übernommenem Update",
+                queue::size, "transport", transport);
+        metrics.gauge("trasima_ingest_coalescing_ratio", "Anteil der verworfenen an allen angenommenen Updates",
+                () -> stats().coalescingRatio(), "transport", transport);
+    }
+
+    public void offer(int id, double x, double y, double speed, long timestamp) {
+        offer(id, x, y, speed, timestamp, null);
+    }
+
+    /**
+     * Wie {@link #offer(int, double, double, double, long)}; was aus dem Update wird, zählt {@code tally}
+     * (null = niemand).
+     */
+    public void offer(int id, double x, double y, double speed, long timestamp, Tally tally) {
+        received.increment();
+        Slot slot = slots.computeIfAbsent(id, Slot::new);
+        boolean enqueue;
+        synchronized (slot) {
+            if (slot.dirty) {
+                superseded.increment();
+                if (slot.tally != null) {
+                    slot.tally.superseded.increment();
+                }
+            }
+            slot.tally = tally;
+            slot.x = x;
+            slot.y = y;
+            slot.speed = speed;
+            slot.timestamp = timestamp;
+            slot.dirty = true;
+            enqueue = !slot.queued;
+            slot.queued = true;
+        }
+        if (enqueue) {
+            queue.add(slot);
+        }
+    }
+
+    /**
+     * Gibt das neueste angenommene Update der ID an {@code reader}, falls es noch nicht vollständig übernommen ist.
+     *
+     * @return false, wenn nichts offen ist; dann ist der Speicher aktuell
+     */
+    public boolean readPending(int id, Sink reader) {
+        Slot slot = slots.get(id);
+        if (slot == null) {
+            return false;
+        }
+        double x;
+        double y;
+        double speed;
+        long timestamp;
+        synchronized (slot) {
+            if (!slot.queued) {
+                return false;
+            }
+            x = slot.x;
+            y = slot.y;
+            speed = slot.speed;
+            timestamp = slot.timestamp;
+        }
+        reader.apply(id, x, y, speed, timestamp);
+        return true;
+    }
+
+    public Stats stats() {
+        return new Stats(received.sum(), applied.sum(), superseded.sum(), batches.sum(), queue.size());
+    }
+
+    /**
+     * Übernimmt alles noch Offene und beendet den Übernahme-Thread. Danach angenommene Updates gehen verloren.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void applyLoop() {
+        List<Slot> batch = new ArrayList<>(batchSize);
+        while (true) {
+            Slot first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            for (Slot slot : batch) {
+                apply(slot);
+            }
+            batch.clear();
+            batches.increment();
+        }
+    }
+
+    private void apply(Slot slot) {
+        double x;
+        double y;
+        double speed;
+        long timestamp;
+        Tally tally;
+        synchronized (slot) {
+            x = slot.x;
+            y = slot.y;
+            speed = slot.speed;
+            timestamp = slot.timestamp;
+            tally = slot.tally;
+            slot.tally = null;
+            slot.dirty = false;
+        }
+        try {
+            sink.apply(slot.id, x, y, speed, timestamp);
+            applied.increment();
+            if (tally != null) {
+                tally.applied.increment();
+            }
+        } catch (RuntimeException e) {
+            // Ein fehlerhaftes Update darf die Übernahme für alle anderen nicht beenden.
+            e.printStackTrace();
+        }
+        boolean requeue;
+        synchronized (slot) {
+            // Erst nach dem Speichern freigeben: bis dahin beantwortet readPending Leseanfragen.
+            requeue = slot.dirty;
+            slot.queued = requeue;
+        }
+        if (requeue) {
+            queue.add(slot);
+        }
+    }
+
+    /**
+     * Neuester Wert einer ID. {@code dirty}: noch nicht vom Übernahme-Thread gelesen; {@code queued}: in der
+     * Warteschlange oder gerade in Übernahme.
+     */
+    private static final class Slot {
+        final int id;
+        // Geschützt durch this
+        double x;
+        double y;
+        double speed;
+        long timestamp;
+        boolean dirty;
+        boolean queued;
+        // Absender des offenen Werts, nur solange dirty
+        Tally tally;
+
+        Slot(int id) {
+            this.id = id;
+        }
+    }
+}
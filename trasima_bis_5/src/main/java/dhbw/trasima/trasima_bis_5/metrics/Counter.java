@@ -0,0 +1,26 @@
+package dhbw.trasima.trasima_bis_5.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monoton wachsender Zähler; {@link LongAdder}, damit viele Threads ohne Konflikt zählen können.
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void inc() {
+        value.increment();
+    }
+
+    public void add(long n) {
+        value.add(n);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,57 @@
+package dhbw.trasima.trasima_bis_5.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latenzverteilung mit festen Grenzen von 50 µs bis 10 s (Prometheus-Histogramm in Sekunden).
+ *
+ * <p>Ein Aufruf von {@link #record} kostet eine Suche über {@value #BUCKET_COUNT} Grenzen und drei
+ * {@link LongAdder}-Inkremente, keine Allokation.</p>
+ */
+public final class LatencyHistogram {
+
+    static final long[] BOUNDS_NANOS = {
+            50_000L, 100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+    static final int BUCKET_COUNT = 17;
+
+    // Letzter Eimer: alles über der größten Grenze (+Inf)
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int i = 0;
+        while (i < BUCKET_COUNT && nanos > BOUNDS_NANOS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sumNanos.add(Math.max(0, nanos));
+    }
+
+    /** Bequemlichkeit für {@code long start = System.nanoTime(); ... recordSince(start);} */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /** Anzahl pro Eimer (nicht kumuliert); der letzte Eintrag ist +Inf. */
+    long[] counts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    long sumNanos() {
+        return sumNanos.sum();
+    }
+}
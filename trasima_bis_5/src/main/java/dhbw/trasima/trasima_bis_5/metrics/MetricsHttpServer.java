@@ -0,0 +1,45 @@
+package dhbw.trasima.trasima_bis_5.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimaler HTTP-Endpunkt {@code GET /metrics} für Prozesse ohne Jetty (TCP-Server, Simulations-Clients).
+ *
+ * <p>Nutzt den im JDK enthaltenen {@code com.sun.net.httpserver} mit einem einzigen Thread.</p>
+ */
+public final class MetricsHttpServer implements AutoCloseable {
+
+    private final HttpServer server;
+
+    private MetricsHttpServer(HttpServer server) {
+        this.server = server;
+    }
+
+    public static MetricsHttpServer start(int port, MetricsRegistry registry) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return new MetricsHttpServer(server);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,181 @@
+package dhbw.trasima.trasima_bis_5.metrics;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Sammelt Zähler, Messwerte und Latenzhistogramme und gibt sie im Textformat von Prometheus aus.
+ *
+ * <ul>
+ *   <li>Metriken werden einmal beim Start angelegt und dann direkt benutzt; auf dem heißen Pfad gibt es keine
+ *   Suche in Maps und keine Allokation.</li>
+ *   <li>Labels werden als Paare übergeben: {@code counter("x_total", "...", "rpc", "Fetch")}. Gleicher Name und
+ *   gleiche Labels liefern dieselbe Instanz.</li>
+ *   <li>Gauges werden erst beim Abruf über einen {@link DoubleSupplier} gelesen (z. B. {@code store::size}).</li>
+ * </ul>
+ *
+ * <p>{@link #global()} ist die Registry des Prozesses, die alle Server und Publisher benutzen.</p>
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+    // Obergrenzen der Histogramme in Sekunden, einmal formatiert
+    private static final String[] LE = new String[LatencyHistogram.BUCKET_COUNT];
+
+    static {
+        for (int i = 0; i < LE.length; i++) {
+            LE[i] = "le=\"" + number(LatencyHistogram.BOUNDS_NANOS[i] / 1e9) + "\"";
+        }
+    }
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), HISTOGRAM("histogram");
+
+        final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    private record Family(String name, String help, Type type, Map<String, Object> series) {
+    }
+
+    // Nach Namen sortiert, damit die Ausgabe stabil ist
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) series(name, help, Type.COUNTER, labels, Counter::new);
+    }
+
+    /**
+     * Registriert einen Zähler, den der Aufrufer selbst führt (z. B. einen vorhandenen {@code LongAdder});
+     * gelesen wird erst beim Abruf. Ein zweiter Aufruf mit gleichem Namen und Labels ersetzt die Quelle.
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).series().put(labelText(labels), value);
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) series(name, help, Type.HISTOGRAM, labels, LatencyHistogram::new);
+    }
+
+    /**
+     * Registriert einen Messwert; ein zweiter Aufruf mit gleichem Namen und Labels ersetzt die Quelle.
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series().put(labelText(labels), value);
+    }
+
+    private Object series(String name, String help, Type type, String[] labels,
+                          Supplier<Object> factory) {
+        return family(name, help, type).series().computeIfAbsent(labelText(labels), key -> factory.get());
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name,
+                key -> new Family(name, help, type, new ConcurrentSkipListMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException(name + " ist bereits als " + family.type().text + " registriert");
+        }
+        return family;
+    }
+
+    private static String labelText(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels müssen als Paare (Name, Wert) angegeben werden");
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    text.append('\\').append(c);
+                } else if (c == '\n') {
+                    text.append("\\n");
+                } else {
+                    text.append(c);
+                }
+            }
+            text.append('"');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Alle Metriken im Prometheus-Textformat (Version 0.0.4).
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(family.name()).append(' ').append(family.type().text).append('\n');
+            for (Map.Entry<String, Object> entry : family.series().entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                switch (family.type()) {
+                    case COUNTER:
+                        long count = metric instanceof Counter counter
+                                ? counter.get() : ((LongSupplier) metric).getAsLong();
+                        sample(out, family.name(), labels, Long.toString(count));
+                        break;
+                    case GAUGE:
+                        sample(out, family.name(), labels, number(((DoubleSupplier) metric).getAsDouble()));
+                        break;
+                    default:
+                        histogram(out, family.name(), labels, (LatencyHistogram) metric);
+                        break;
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long[] counts = histogram.counts();
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            sample(out, name + "_bucket", prefix + LE[i], Long.toString(cumulative));
+        }
+        cumulative += counts[LatencyHistogram.BUCKET_COUNT];
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", Long.toString(cumulative));
+        sample(out, name + "_sum", labels, number(histogram.sumNanos() / 1e9));
+        sample(out, name + "_count", labels, Long.toString(cumulative));
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String number(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
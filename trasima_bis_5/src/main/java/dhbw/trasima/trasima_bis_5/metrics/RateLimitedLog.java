@@ -0,0 +1,61 @@
+package dhbw.trasima.trasima_bis_5.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Konsolenausgabe mit Obergrenze: höchstens {@code perSecond} Zeilen pro Sekunde, der Rest wird nur gezählt und
+ * zu Beginn der nächsten Sekunde als eine Zeile gemeldet.
+ *
+ * <p>Für Stellen, die bei jedem Update etwas ausgeben würden. Mit {@link #log(Supplier)} wird die Meldung nur
+ * gebaut, wenn sie tatsächlich ausgegeben wird.</p>
+ */
+public final class RateLimitedLog {
+
+    private final String prefix;
+    private final int perSecond;
+    private final AtomicLong second = new AtomicLong();
+    private final AtomicInteger printed = new AtomicInteger();
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    /**
+     * @param perSecond Zeilen pro Sekunde; 0 schaltet die Ausgabe ganz ab
+     */
+    public RateLimitedLog(String prefix, int perSecond) {
+        this.prefix = prefix;
+        this.perSecond = perSecond;
+    }
+
+    public void log(String message) {
+        if (admit()) {
+            System.out.println(prefix + message);
+        }
+    }
+
+    public void log(Supplier<String> message) {
+        if (admit()) {
+            System.out.println(prefix + message.get());
+        }
+    }
+
+    private boolean admit() {
+        if (perSecond <= 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        long current = second.get();
+        if (now != current && second.compareAndSet(current, now)) {
+            printed.set(0);
+            int dropped = suppressed.getAndSet(0);
+            if (dropped > 0) {
+                System.out.println(prefix + "(" + dropped + " weitere Meldungen unterdrückt)");
+            }
+        }
+        if (printed.incrementAndGet() <= perSecond) {
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+}
@@ -0,0 +1,567 @@
+package dhbw.trasima.trasima_bis_5.persistence;
+
+import dhbw.trasima.trasima_bis_5.tcp.ColumnarV2Store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Dauerhafte Speicherung eines {@link ColumnarV2Store}: Write-Ahead-Log plus regelmäßige Snapshots.
+ *
+ * <ul>
+ *   <li>Jede Änderung wird als Datensatz fester Länge ({@value #RECORD_SIZE} Bytes, mit CRC32) an ein
+ *   Log-Segment angehängt. Segmente sind per mmap eingeblendete Dateien {@code wal-<erste Sequenznummer>.log}
+ *   mit fester Größe; ist eines voll, wird es geflusht und ein neues begonnen.</li>
+ *   <li>Das Anhängen schreibt nur in den gemappten Speicher. Ein eigener Thread bringt die neuen Bytes per
+ *   {@code force} auf die Platte (Group Commit): im Modus {@link SyncMode#GROUP} warten die Schreiber, bis ihr
+ *   Datensatz dabei war, bei {@link SyncMode#INTERVAL} nicht (Verlust der letzten
+ *   {@link Options#syncIntervalMillis} ms möglich), bei {@link SyncMode#NONE} entscheidet das Betriebssystem.</li>
+ *   <li>Ein Snapshot schreibt alle Fahrzeuge ({@value #SNAPSHOT_ROW} Bytes pro Fahrzeug) in
+ *   {@code snapshot-<Sequenznummer>.bin}. Danach werden ältere Snapshots und vollständig abgedeckte Segmente
+ *   gelöscht, das Log wächst also nicht unbegrenzt.</li>
+ *   <li>Beim Start wird der neueste gültige Snapshot geladen und das Log ab dessen Sequenznummer nachgespielt;
+ *   ein abgerissener Datensatz am Ende (Absturz mitten im Schreiben) beendet das Nachspielen.</li>
+ * </ul>
+ *
+ * <p>Der Snapshot ist kein atomarer Schnappschuss: er merkt sich zuerst die nächste Sequenznummer S und läuft
+ * dann über den Speicher. Das ist trotzdem korrekt, weil der Speicher {@link #put}/{@link #delete} im
+ * exklusiven Abschnitt der ID aufruft: jede Änderung, die der Snapshot schon sieht, hat entweder eine
+ * Sequenznummer &lt; S (ist also ohnehin enthalten) oder wird ab S erneut nachgespielt und überschreibt sich
+ * selbst.</p>
+ */
+public final class StatePersistence implements ColumnarV2Store.ChangeLog, AutoCloseable {
+
+    public enum SyncMode {
+        /** Kein explizites fsync; Datenverlust nur bei Absturz des Betriebssystems. */
+        NONE,
+        /** fsync alle {@link Options#syncIntervalMillis} ms, Schreiber warten nicht. */
+        INTERVAL,
+        /** Schreiber warten, bis ihr Datensatz auf der Platte ist; ein fsync bestätigt alle bis dahin. */
+        GROUP
+    }
+
+    public static final class Options {
+        public SyncMode syncMode = SyncMode.GROUP;
+        /** Maximaler Abstand zwischen zwei fsyncs (bei GROUP löst ein wartender Schreiber sofort einen aus). */
+        public long syncIntervalMillis = 10;
+        public int segmentBytes = 64 * 1024 * 1024;
+        /** 0 = keine automatischen Snapshots. */
+        public long snapshotIntervalMillis = 60_000;
+    }
+
+    public record Stats(long records, long walBytes, long syncs, long snapshots, long snapshotBytes,
+                        long recoveredSnapshotRows, long recoveredRecords, double recoveryMillis) {
+    }
+
+    static final int RECORD_SIZE = 57;
+    static final int SNAPSHOT_ROW = 44;
+
+    private static final byte TYPE_PUT = 'P';
+    private static final byte TYPE_DELETE = 'D';
+    private static final int SNAPSHOT_MAGIC = 0x54534E50; // "TSNP"
+    private static final int SNAPSHOT_HEADER = 12;
+    private static final int SNAPSHOT_TRAILER = 12;
+
+    private final Path dir;
+    private final Options options;
+    private final ColumnarV2Store store;
+
+    // Anhängen: segment, nextSeq, record und crc nur unter appendLock.
+    private final Object appendLock = new Object();
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private final CRC32 crc = new CRC32();
+    private Segment segment;
+    private long nextSeq = 1;
+
+    // Group Commit: durableSeq und syncRequested nur unter syncMonitor.
+    private final Object syncMonitor = new Object();
+    private long durableSeq;
+    private boolean syncRequested;
+
+    private volatile boolean recovering;
+    private volatile boolean closed;
+    private Thread syncThread;
+    private ScheduledExecutorService snapshotScheduler;
+
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong snapshotBytes = new AtomicLong();
+    private long recoveredSnapshotRows;
+    private long recoveredRecords;
+    private double recoveryMillis;
+
+    private StatePersistence(Path dir, Options options, ColumnarV2Store.PositionListener listener) {
+        this.dir = dir;
+        this.options = options;
+        this.store = new ColumnarV2Store(listener, this);
+    }
+
+    /**
+     * Öffnet (oder legt an) das Verzeichnis, stellt den letzten Stand wieder her und startet Sync-Thread und
+     * Snapshots. Der Listener sieht die wiederhergestellten Fahrzeuge wie normale Änderungen.
+     */
+    public static StatePersistence open(Path dir, Options options, ColumnarV2Store.PositionListener listener)
+            throws IOException {
+        Files.createDirectories(dir);
+        StatePersistence persistence = new StatePersistence(dir, options, listener);
+        persistence.recover();
+        persistence.segment = Segment.create(dir, persistence.nextSeq, options.segmentBytes);
+        persistence.start();
+        return persistence;
+    }
+
+    public static StatePersistence open(Path dir, Options options) throws IOException {
+        return open(dir, options, null);
+    }
+
+    /**
+     * Der persistente Speicher; alle Änderungen darüber landen im Log.
+     */
+    public ColumnarV2Store store() {
+        return store;
+    }
+
+    // --- ChangeLog (Aufruf im exklusiven Abschnitt der ID) ---
+
+    @Override
+    public long put(int id, double x, double y, double speed, double direction, long timestamp) {
+        return append(TYPE_PUT, id, x, y, speed, direction, timestamp);
+    }
+
+    @Override
+    public long delete(int id) {
+        return append(TYPE_DELETE, id, 0.0, 0.0, 0.0, 0.0, 0L);
+    }
+
+    @Override
+    public void awaitDurable(long token) {
+        if (token == 0 || options.syncMode != SyncMode.GROUP) {
+            return;
+        }
+        boolean interrupted = false;
+        synchronized (syncMonitor) {
+            while (durableSeq < token && !closed) {
+                if (!syncRequested) {
+                    syncRequested = true;
+                    syncMonitor.notifyAll();
+                }
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long append(byte type, int id, double x, double y, double speed, double direction, long timestamp) {
+        if (recovering) {
+            // Nachspielen aus dem Log bzw. Snapshot: steht schon auf der Platte.
+            return 0;
+        }
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("Persistenz ist geschlossen");
+            }
+            if (segment.buffer.remaining() < RECORD_SIZE) {
+                roll();
+            }
+            long seq = nextSeq++;
+            recordBuffer.clear();
+            recordBuffer.put(type).putLong(seq).putInt(id)
+                    .putDouble(x).putDouble(y).putDouble(speed).putDouble(direction).putLong(timestamp);
+            crc.reset();
+            crc.update(record, 0, RECORD_SIZE - 4);
+            recordBuffer.putInt((int) crc.getValue());
+            segment.buffer.put(record);
+            records.incrementAndGet();
+            return seq;
+        }
+    }
+
+    /** Nur unter appendLock. */
+    private void roll() {
+        Segment full = segment;
+        full.buffer.force();
+        syncs.incrementAndGet();
+        full.close();
+        markDurable(nextSeq - 1);
+        try {
+            segment = Segment.create(dir, nextSeq, options.segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Neues WAL-Segment konnte nicht angelegt werden", e);
+        }
+    }
+
+    // --- Sync-Thread ---
+
+    private void start() {
+        if (options.syncMode != SyncMode.NONE) {
+            syncThread = new Thread(this::syncLoop, "wal-sync");
+            syncThread.setDaemon(true);
+            syncThread.start();
+        }
+        if (options.snapshotIntervalMillis > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "wal-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    snapshot();
+                } catch (Exception e) {
+                    System.err.println("Snapshot fehlgeschlagen: " + e);
+                }
+            }, options.snapshotIntervalMillis, options.snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void syncLoop() {
+        while (!closed) {
+            synchronized (syncMonitor) {
+                if (!syncRequested && !closed) {
+                    try {
+                        syncMonitor.wait(options.syncIntervalMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                syncRequested = false;
+            }
+            sync();
+        }
+    }
+
+    /**
+     * Bringt alle bisher angehängten Datensätze auf die Platte. Während force() laufen, sammeln sich die nächsten
+     * Schreiber für den folgenden Durchgang.
+     */
+    private void sync() {
+        Segment current;
+        int from;
+        int to;
+        long upTo;
+        synchronized (appendLock) {
+            current = segment;
+            from = current.forced;
+            to = current.buffer.position();
+            upTo = nextSeq - 1;
+        }
+        if (to > from) {
+            current.buffer.force(from, to - from);
+            current.forced = to;
+            syncs.incrementAndGet();
+        }
+        markDurable(upTo);
+    }
+
+    private void markDurable(long seq) {
+        synchronized (syncMonitor) {
+            if (seq > durableSeq) {
+                durableSeq = seq;
+            }
+            syncMonitor.notifyAll();
+        }
+    }
+
+    // --- Snapshots ---
+
+    /**
+     * Schreibt einen Snapshot und räumt danach nicht mehr benötigte Segmente und Snapshots auf.
+     */
+    public synchronized void snapshot() throws IOException {
+        long seq;
+        synchronized (appendLock) {
+            seq = nextSeq;
+        }
+        Path tmp = dir.resolve("snapshot.tmp");
+        CRC32 rowsCrc = new CRC32();
+        long[] rows = new long[1];
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putInt(SNAPSHOT_MAGIC).putLong(seq);
+            int[] skip = {SNAPSHOT_HEADER};
+            try {
+                store.forEach((id, x, y, speed, direction, timestamp) -> {
+                    if (buffer.remaining() < SNAPSHOT_ROW) {
+                        flush(channel, buffer, rowsCrc, skip[0]);
+                        skip[0] = 0;
+                    }
+                    buffer.putInt(id).putDouble(x).putDouble(y).putDouble(speed).putDouble(direction)
+                            .putLong(timestamp);
+                    rows[0]++;
+                });
+                flush(channel, buffer, rowsCrc, skip[0]);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            buffer.putLong(rows[0]).putInt((int) rowsCrc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Path target = dir.resolve(String.format("snapshot-%020d.bin", seq));
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+        snapshots.incrementAndGet();
+        snapshotBytes.addAndGet(Files.size(target));
+
+        for (Path old : list("snapshot-", ".bin")) {
+            if (sequenceOf(old) < seq) {
+                Files.deleteIfExists(old);
+            }
+        }
+        // Ein Segment wird nicht mehr gebraucht, wenn schon das nächste vor S beginnt.
+        List<Path> segments = list("wal-", ".log");
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (sequenceOf(segments.get(i + 1)) <= seq) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    /**
+     * Schreibt den Puffer und rechnet alles ab {@code skip} (Header ausgenommen) in die Prüfsumme ein.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 rowsCrc, int skip) {
+        buffer.flip();
+        rowsCrc.update(buffer.array(), skip, buffer.limit() - skip);
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    private void forceDirectory() {
+        // Macht das Umbenennen dauerhaft; nicht jedes Dateisystem erlaubt das.
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // --- Wiederherstellung ---
+
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        recovering = true;
+        try {
+            long fromSeq = loadSnapshot();
+            long lastSeq = fromSeq - 1;
+            List<Path> segments = list("wal-", ".log");
+            for (int i = 0; i < segments.size(); i++) {
+                if (i + 1 < segments.size() && sequenceOf(segments.get(i + 1)) <= fromSeq) {
+                    continue;
+                }
+                lastSeq = Math.max(lastSeq, replay(segments.get(i), fromSeq));
+            }
+            nextSeq = lastSeq + 1;
+            durableSeq = lastSeq;
+        } finally {
+            recovering = false;
+        }
+        recoveryMillis = (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    /**
+     * Lädt den neuesten lesbaren Snapshot.
+     *
+     * @return die erste nicht im Snapshot enthaltene Sequenznummer (1 ohne Snapshot)
+     */
+    private long loadSnapshot() throws IOException {
+        List<Path> candidates = list("snapshot-", ".bin");
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Path path = candidates.get(i);
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (!isValidSnapshot(data)) {
+                System.err.println("Snapshot " + path.getFileName() + " ist beschädigt, wird übersprungen");
+                continue;
+            }
+            data.position(4);
+            long seq = data.getLong();
+            long rows = (data.limit() - SNAPSHOT_HEADER - SNAPSHOT_TRAILER) / SNAPSHOT_ROW;
+            for (long r = 0; r < rows; r++) {
+                store.put(data.getInt(), data.getDouble(), data.getDouble(), data.getDouble(), data.getDouble(),
+                        data.getLong());
+            }
+            recoveredSnapshotRows = rows;
+            return seq;
+        }
+        return 1;
+    }
+
+    private static boolean isValidSnapshot(ByteBuffer data) {
+        int length = data.limit();
+        if (length < SNAPSHOT_HEADER + SNAPSHOT_TRAILER || data.getInt(0) != SNAPSHOT_MAGIC) {
+            return false;
+        }
+        int rowBytes = length - SNAPSHOT_HEADER - SNAPSHOT_TRAILER;
+        if (rowBytes % SNAPSHOT_ROW != 0 || data.getLong(length - SNAPSHOT_TRAILER) != rowBytes / SNAPSHOT_ROW) {
+            return false;
+        }
+        CRC32 check = new CRC32();
+        check.update(data.array(), SNAPSHOT_HEADER, rowBytes);
+        return (int) check.getValue() == data.getInt(length - 4);
+    }
+
+    /**
+     * Spielt die Datensätze eines Segments ab fromSeq nach.
+     *
+     * @return die höchste gelesene Sequenznummer (0, wenn keine)
+     */
+    private long replay(Path path, long fromSeq) throws IOException {
+        long lastSeq = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] bytes = new byte[RECORD_SIZE];
+            CRC32 check = new CRC32();
+            while (data.remaining() >= RECORD_SIZE) {
+                data.get(bytes);
+                if (bytes[0] == 0) {
+                    break; // unbenutzter Rest des Segments
+                }
+                check.reset();
+                check.update(bytes, 0, RECORD_SIZE - 4);
+                ByteBuffer r = ByteBuffer.wrap(bytes);
+                if ((int) check.getValue() != r.getInt(RECORD_SIZE - 4)) {
+                    System.err.println("WAL " + path.getFileName() + ": abgerissener Datensatz bei Byte "
+                            + (data.position() - RECORD_SIZE) + ", Rest wird ignoriert");
+                    break;
+                }
+                byte type = r.get();
+                long seq = r.getLong();
+                int id = r.getInt();
+                lastSeq = seq;
+                if (seq < fromSeq) {
+                    continue;
+                }
+                if (type == TYPE_DELETE) {
+                    store.delete(id);
+                } else {
+                    store.put(id, r.getDouble(), r.getDouble(), r.getDouble(), r.getDouble(), r.getLong());
+                }
+                recoveredRecords++;
+            }
+        }
+        return lastSeq;
+    }
+
+    // --- Dateien ---
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted() // Sequenznummern sind auf 20 Stellen aufgefüllt
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+    }
+
+    public Stats stats() {
+        long written = records.get();
+        return new Stats(written, written * RECORD_SIZE, syncs.get(), snapshots.get(), snapshotBytes.get(),
+                recoveredSnapshotRows, recoveredRecords, recoveryMillis);
+    }
+
+    /**
+     * Stoppt Snapshots, bringt das Log auf die Platte und gibt die Dateien frei. Spätere Änderungen am Speicher
+     * werfen eine {@link IllegalStateException}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            try {
+                snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            segment.buffer.force();
+            markDurable(nextSeq - 1);
+            closed = true;
+            segment.close();
+        }
+        synchronized (syncMonitor) {
+            syncMonitor.notifyAll();
+        }
+        if (syncThread != null) {
+            try {
+                syncThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Ein eingeblendetes Log-Segment; nicht beschriebene Bytes sind 0 (Dateiende beim Lesen).
+     */
+    private static final class Segment {
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // Bis hierher ist das Segment auf der Platte; nur vom Sync-Thread geschrieben.
+        volatile int forced;
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path dir, long firstSeq, int bytes) throws IOException {
+            Path path = dir.resolve(String.format("wal-%020d.log", firstSeq));
+            // Existiert die Datei schon, enthält sie keinen gültigen Datensatz (sonst wäre firstSeq größer).
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            return new Segment(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes));
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Das Mapping bleibt bis zur Garbage Collection gültig.
+            }
+        }
+    }
+}
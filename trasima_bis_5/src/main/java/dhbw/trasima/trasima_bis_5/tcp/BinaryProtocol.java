@@ -0,0 +1,124 @@
+package dhbw.trasima.trasima_bis_5.tcp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Optionales binäres Protokoll mit festen Frames fester Länge.
+ *
+ * <p>Aushandlung: der Client schickt direkt nach dem Verbindungsaufbau die Textzeile {@link #HANDSHAKE}. Ein Server,
+ * der das Binärprotokoll kann, antwortet mit {@link #HANDSHAKE_OK}; danach werden in beide Richtungen nur noch
+ * Frames übertragen. Ein reiner Text-Server antwortet mit {@code ERROR}, alte Text-Clients sind nicht betroffen.</p>
+ *
+ * <p>Frame-Layout ({@value #FRAME_SIZE} Bytes, Big Endian), gleich für Anfrage und Antwort:</p>
+ * <pre>
+ *  0  type/status  byte
+ *  1  seq          int     (wird in der Antwort zurückgegeben)
+ *  5  id           int
+ *  9  x            double
+ * 17  y            double
+ * 25  speed        double
+ * 33  timestamp    long    (epoch millis)
+ * </pre>
+ *
+ * <p>Kodiert und dekodiert wird direkt in/aus {@link ByteBuffer}s mit absoluten Zugriffen, also ohne Strings oder
+ * Arrays pro Nachricht.</p>
+ */
+public final class BinaryProtocol {
+
+    public static final String HANDSHAKE = "HELLO BIN1";
+    public static final String HANDSHAKE_OK = "OK BIN1";
+
+    public static final int FRAME_SIZE = 41;
+
+    public static final byte TYPE_PUBLISH = 'P';
+    public static final byte TYPE_FETCH = 'F';
+
+    public static final byte STATUS_OK = 'K';
+    public static final byte STATUS_NOT_FOUND = 'N';
+    public static final byte STATUS_ERROR = 'E';
+
+    private static final int OFF_SEQ = 1;
+    private static final int OFF_ID = 5;
+    private static final int OFF_X = 9;
+    private static final int OFF_Y = 17;
+    private static final int OFF_SPEED = 25;
+    private static final int OFF_TIMESTAMP = 33;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Schreibt einen Frame ab der aktuellen Position und erhöht diese um {@link #FRAME_SIZE}.
+     */
+    public static void writeFrame(ByteBuffer buf, byte type, int seq, int id,
+                                  double x, double y, double speed, long timestamp) {
+        buf.put(type)
+                .putInt(seq)
+                .putInt(id)
+                .putDouble(x)
+                .putDouble(y)
+                .putDouble(speed)
+                .putLong(timestamp);
+    }
+
+    public static byte type(ByteBuffer buf, int frameOffset) {
+        return buf.get(frameOffset);
+    }
+
+    public static int seq(ByteBuffer buf, int frameOffset) {
+        return buf.getInt(frameOffset + OFF_SEQ);
+    }
+
+    public static int id(ByteBuffer buf, int frameOffset) {
+        return buf.getInt(frameOffset + OFF_ID);
+    }
+
+    public static double x(ByteBuffer buf, int frameOffset) {
+        return buf.getDouble(frameOffset + OFF_X);
+    }
+
+    public static double y(ByteBuffer buf, int frameOffset) {
+        return buf.getDouble(frameOffset + OFF_Y);
+    }
+
+    public static double speed(ByteBuffer buf, int frameOffset) {
+        return buf.getDouble(frameOffset + OFF_SPEED);
+    }
+
+    public static long timestamp(ByteBuffer buf, int frameOffset) {
+        return buf.getLong(frameOffset + OFF_TIMESTAMP);
+    }
+
+    /**
+     * Serverseite: verarbeitet den Anfrage-Frame an {@code frameOffset} und schreibt genau einen Antwort-Frame
+     * nach {@code out} (mindestens {@link #FRAME_SIZE} Bytes Platz erforderlich).
+     */
+    public static void handle(ByteBuffer in, int frameOffset, ByteBuffer out, IV2Store store) {
+        long start = System.nanoTime();
+        byte type = type(in, frameOffset);
+        int seq = seq(in, frameOffset);
+        int id = id(in, frameOffset);
+
+        if (type == TYPE_PUBLISH) {
+            store.save(id, x(in, frameOffset), y(in, frameOffset), speed(in, frameOffset), timestamp(in, frameOffset));
+            writeFrame(out, STATUS_OK, seq, id, 0.0, 0.0, 0.0, 0L);
+            TcpMetrics.UPDATES.inc();
+            TcpMetrics.BINARY_PUBLISH.recordSince(start);
+            return;
+        }
+
+        if (type == TYPE_FETCH) {
+            V2State st = store.get(id);
+            if (st == null) {
+                writeFrame(out, STATUS_NOT_FOUND, seq, id, 0.0, 0.0, 0.0, 0L);
+            } else {
+                writeFrame(out, STATUS_OK, seq, st.id, st.x, st.y, st.speed, st.timestamp);
+            }
+            TcpMetrics.BINARY_FETCH.recordSince(start);
+            return;
+        }
+
+        writeFrame(out, STATUS_ERROR, seq, id, 0.0, 0.0, 0.0, 0L);
+        TcpMetrics.BINARY_ERROR.recordSince(start);
+    }
+}
@@ -0,0 +1,127 @@
+package dhbw.trasima.trasima_bis_5.tcp;
+
+import dhbw.trasima.trasima_bis_5.IPositionPublisher;
+import dhbw.trasima.trasima_bis_5.metrics.RateLimitedLog;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Publisher für das {@link BinaryProtocol}. Gegenstück zum {@link TcpPositionPublisher}, aber ohne String-Aufbau und
+ * Parsing: Anfrage und Antwort laufen über zwei wiederverwendete Direct-Buffer.
+ *
+ * <p>Benötigt einen Server, der das Binärprotokoll versteht ({@code TrasimaServer --nio}).</p>
+ */
+public class BinaryTcpPositionPublisher implements IPositionPublisher, AutoCloseable {
+
+    private static final RateLimitedLog ERROR_LOG = new RateLimitedLog("TCP Fehler: ", 1);
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BinaryProtocol.FRAME_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BinaryProtocol.FRAME_SIZE);
+    private int seq;
+
+    public BinaryTcpPositionPublisher(String host, int port) {
+        try {
+            this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            handshake();
+        } catch (IOException e) {
+            throw new RuntimeException("TCP Verbindung fehlgeschlagen", e);
+        }
+    }
+
+    @Override
+    public synchronized void publishPosition(int id, double x, double y, double speed) {
+        try {
+            int expectedSeq = send(BinaryProtocol.TYPE_PUBLISH, id, x, y, speed, System.currentTimeMillis());
+            if (BinaryProtocol.type(in, 0) != BinaryProtocol.STATUS_OK || BinaryProtocol.seq(in, 0) != expectedSeq) {
+                TcpMetrics.BINARY_PUBLISHER_FAILURES.inc();
+                ERROR_LOG.log("unerwartete Antwort für V2-" + id);
+            }
+        } catch (IOException e) {
+            TcpMetrics.BINARY_PUBLISHER_FAILURES.inc();
+            ERROR_LOG.log(e.getMessage());
+        }
+    }
+
+    /**
+     * Fragt den Zustand eines Fahrzeugs ab.
+     *
+     * @return Zustand oder {@code null}, wenn das Fahrzeug unbekannt ist
+     */
+    public synchronized V2State fetch(int id) throws IOException {
+        send(BinaryProtocol.TYPE_FETCH, id, 0.0, 0.0, 0.0, 0L);
+        if (BinaryProtocol.type(in, 0) != BinaryProtocol.STATUS_OK) {
+            return null;
+        }
+        return new V2State(BinaryProtocol.id(in, 0), BinaryProtocol.x(in, 0), BinaryProtocol.y(in, 0),
+                BinaryProtocol.speed(in, 0), BinaryProtocol.timestamp(in, 0));
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("TCP Fehler: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Schickt einen Frame und liest die Antwort-Frame nach {@link #in}.
+     *
+     * @return Sequenznummer der Anfrage
+     */
+    private int send(byte type, int id, double x, double y, double speed, long timestamp) throws IOException {
+        int requestSeq = ++seq;
+
+        out.clear();
+        BinaryProtocol.writeFrame(out, type, requestSeq, id, x, y, speed, timestamp);
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+
+        in.clear();
+        while (in.hasRemaining()) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Verbindung vom Server geschlossen");
+            }
+        }
+        return requestSeq;
+    }
+
+    private void handshake() throws IOException {
+        ByteBuffer hello = ByteBuffer.wrap((BinaryProtocol.HANDSHAKE + "\n").getBytes(StandardCharsets.US_ASCII));
+        while (hello.hasRemaining()) {
+            channel.write(hello);
+        }
+
+        // Antwortzeile byteweise lesen, damit keine nachfolgenden Frames verschluckt werden.
+        StringBuilder line = new StringBuilder();
+        ByteBuffer one = ByteBuffer.allocate(1);
+        while (true) {
+            one.clear();
+            if (channel.read(one) < 0) {
+                throw new EOFException("Verbindung vom Server geschlossen");
+            }
+            char c = (char) one.get(0);
+            if (c == '\n') {
+                break;
+            }
+            if (c != '\r') {
+                line.append(c);
+            }
+        }
+
+        if (!BinaryProtocol.HANDSHAKE_OK.equals(line.toString())) {
+            channel.close();
+            throw new IOException("Server unterstützt das Binärprotokoll nicht (Antwort: " + line + ")");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dhbw.trasima.trasima_bis_5.tcp;
+
+import dhbw.trasima.trasima_bis_5.ingest.LatestValueIngest;
+
+/**
+ * {@link IV2Store} vor einem anderen Speicher, der Updates über eine {@link LatestValueIngest} sammelt
+ * ({@code TrasimaServer --coalesce}).
+ *
+ * <p>{@code PUBLISH} wird sofort mit {@code OK} beantwortet, landet aber erst mit dem nächsten Durchlauf des
+ * Übernahme-Threads im Speicher; sendet ein Fahrzeug schneller, werden die Zwischenstände verworfen.
+ * {@link #get} sieht trotzdem immer das zuletzt angenommene Update.</p>
+ */
+public final class CoalescingV2Store implements IV2Store, AutoCloseable {
+
+    private final IV2Store store;
+    private final LatestValueIngest ingest;
+
+    public CoalescingV2Store(IV2Store store, String transport, LatestValueIngest.Options options) {
+        this.store = store;
+        this.ingest = new LatestValueIngest(transport, store::save, options);
+    }
+
+    @Override
+    public void save(V2State state) {
+        save(state.id, state.x, state.y, state.speed, state.timestamp);
+    }
+
+    @Override
+    public void save(int id, double x, double y, double speed, long timestamp) {
+        ingest.offer(id, x, y, speed, timestamp);
+    }
+
+    @Override
+    public V2State get(int id) {
+        V2State[] pending = new V2State[1];
+        if (ingest.readPending(id, (i, x, y, speed, timestamp) -> pending[0] = new V2State(i, x, y, speed, timestamp))) {
+            return pending[0];
+        }
+        return store.get(id);
+    }
+
+    /** Fahrzeuge im Speicher; neue IDs zählen erst nach ihrer Übernahme. */
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    public LatestValueIngest.Stats stats() {
+        return ingest.stats();
+    }
+
+    /** Übernimmt noch offene Updates in den Speicher. */
+    @Override
+    public void close() {
+        ingest.close();
+    }
+}
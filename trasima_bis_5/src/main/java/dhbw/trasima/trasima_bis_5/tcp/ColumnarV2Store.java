@@ -0,0 +1,426 @@
+package dhbw.trasima.trasima_bis_5.tcp;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spaltenorientierter Speicher für Fahrzeugzustände ohne ein Objekt pro Fahrzeug.
+ *
+ * <ul>
+ *   <li>ID -> Slot über eine eigene Hashtabelle aus zwei {@code int[]} (offene Adressierung, kein Boxing).</li>
+ *   <li>x, y, speed, direction und timestamp liegen spaltenweise in primitiven Arrays, aufgeteilt in Blöcke zu
+ *   {@value #CHUNK_SIZE} Slots. Beim Wachsen kommen nur neue Blöcke hinzu; bestehende werden nie kopiert.</li>
+ *   <li>Updates schreiben in die vorhandenen Arrays und allokieren nichts. Pro Slot schützt ein Seqlock
+ *   (Versionszähler, ungerade = Schreiber aktiv): Schreiber eines Slots schließen sich gegenseitig aus, Leser
+ *   warten nie auf eine Sperre, sondern lesen bei einer Kollision erneut.</li>
+ *   <li>Nur das Anlegen einer neuen ID nimmt eine (globale) Sperre.</li>
+ * </ul>
+ *
+ * <p>Gelöschte IDs behalten ihren Slot und werden beim erneuten Anlegen wiederverwendet; der Speicher wächst also
+ * mit der Zahl der jemals gesehenen IDs. Pro Fahrzeug fallen rund 55 Bytes an (statt eines
+ * {@code Integer}-Keys, eines Map-Eintrags und eines Zustandsobjekts).</p>
+ *
+ * <p>Ein optionaler {@link PositionListener} wird innerhalb des exklusiven Abschnitts des Slots aufgerufen und
+ * sieht daher die Änderungen einer ID in derselben Reihenfolge wie der Speicher (z. B. für räumliche Indizes).
+ * Dasselbe gilt für ein optionales {@link ChangeLog} (Persistenz), auf dessen Bestätigung erst nach dem Abschnitt
+ * gewartet wird. Das Log wird vor dem Ändern der Spalten beschrieben; wirft es, bleibt der Slot unverändert. Der
+ * Abschnitt endet auch bei einer Ausnahme, damit kein Slot dauerhaft gesperrt bleibt.</p>
+ */
+public final class ColumnarV2Store implements IV2Store {
+
+    private static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // Rückgabewerte von write()
+    private static final int CREATED = 0;
+    private static final int UPDATED = 1;
+    private static final int REJECTED = -1;
+
+    // Modi von write()
+    private static final int UPSERT = 0;
+    private static final int CREATE_ONLY = 1;
+    private static final int UPDATE_ONLY = 2;
+
+    /**
+     * Wird bei jeder Positionsänderung aufgerufen, exklusiv pro ID.
+     */
+    public interface PositionListener {
+        void moved(int id, boolean existed, double oldX, double oldY, boolean exists, double x, double y);
+
+        /**
+         * Schreiben mit dem vollständigen neuen Zustand, z. B. für einen Verlauf in der Reihenfolge des Speichers.
+         * Standard: nur {@link #moved}. Löschen meldet weiterhin {@code moved(..., exists = false, ...)}.
+         */
+        default void stored(int id, boolean existed, double oldX, double oldY, double x, double y, double speed,
+                            double direction, long timestamp) {
+            moved(id, existed, oldX, oldY, true, x, y);
+        }
+    }
+
+    /**
+     * Protokolliert jede Änderung, z. B. in ein Write-Ahead-Log.
+     *
+     * <p>{@code put}/{@code delete} laufen im exklusiven Abschnitt der ID und müssen schnell sein (nur anhängen).
+     * Ihr Rückgabewert wird nach dem Abschnitt an {@link #awaitDurable(long)} übergeben.</p>
+     */
+    public interface ChangeLog {
+        long put(int id, double x, double y, double speed, double direction, long timestamp);
+
+        long delete(int id);
+
+        void awaitDurable(long token);
+    }
+
+    /**
+     * Empfängt einen konsistenten Zustand eines Fahrzeugs ohne Zwischenobjekt.
+     */
+    public interface Visitor {
+        void visit(int id, double x, double y, double speed, double direction, long timestamp);
+    }
+
+    private final PositionListener listener;
+    private final ChangeLog changeLog;
+    private final Object insertLock = new Object();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private volatile Table table = new Table(1024);
+    private volatile Chunk[] chunks = new Chunk[0];
+    // Anzahl vergebener Slots; nur unter insertLock geschrieben.
+    private volatile int slotCount;
+
+    public ColumnarV2Store() {
+        this(null, null);
+    }
+
+    public ColumnarV2Store(PositionListener listener) {
+        this(listener, null);
+    }
+
+    public ColumnarV2Store(PositionListener listener, ChangeLog changeLog) {
+        this.listener = listener;
+        this.changeLog = changeLog;
+    }
+
+    @Override
+    public void save(V2State state) {
+        write(state.id, state.x, state.y, state.speed, 0.0, state.timestamp, UPSERT);
+    }
+
+    @Override
+    public void save(int id, double x, double y, double speed, long timestamp) {
+        write(id, x, y, speed, 0.0, timestamp, UPSERT);
+    }
+
+    /**
+     * Legt an oder überschreibt.
+     *
+     * @return true, wenn die ID vorher schon existierte
+     */
+    public boolean put(int id, double x, double y, double speed, double direction, long timestamp) {
+        return write(id, x, y, speed, direction, timestamp, UPSERT) == UPDATED;
+    }
+
+    /**
+     * Legt nur an, wenn die ID noch nicht existiert.
+     */
+    public boolean create(int id, double x, double y, double speed, double direction, long timestamp) {
+        return write(id, x, y, speed, direction, timestamp, CREATE_ONLY) == CREATED;
+    }
+
+    /**
+     * Überschreibt nur, wenn die ID existiert.
+     */
+    public boolean update(int id, double x, double y, double speed, double direction, long timestamp) {
+        return write(id, x, y, speed, direction, timestamp, UPDATE_ONLY) == UPDATED;
+    }
+
+    public boolean delete(int id) {
+        int slot = slotOf(id);
+        if (slot < 0) {
+            return false;
+        }
+        Chunk c = chunks[slot >>> CHUNK_SHIFT];
+        int o = slot & CHUNK_MASK;
+        long v = lock(c, o);
+        boolean existed = false;
+        long token = 0;
+        try {
+            if (c.present[o]) {
+                // Erst protokollieren: wirft das Log (z. B. geschlossen), bleibt der Slot unverändert
+                if (changeLog != null) {
+                    token = changeLog.delete(id);
+                }
+                c.present[o] = false;
+                size.decrementAndGet();
+                existed = true;
+                if (listener != null) {
+                    listener.moved(id, true, c.x[o], c.y[o], false, 0.0, 0.0);
+                }
+            }
+        } finally {
+            unlock(c, o, v, existed);
+        }
+        if (existed && changeLog != null) {
+            changeLog.awaitDurable(token);
+        }
+        return existed;
+    }
+
+    /**
+     * Erzeugt ein Zustandsobjekt (nur für Aufrufer, die eins brauchen; {@link #read} kommt ohne aus).
+     */
+    @Override
+    public V2State get(int id) {
+        V2State[] result = new V2State[1];
+        read(id, (i, x, y, speed, direction, timestamp) -> result[0] = new V2State(i, x, y, speed, timestamp));
+        return result[0];
+    }
+
+    /**
+     * Liest den Zustand einer ID konsistent und übergibt ihn an den Visitor.
+     *
+     * @return false, wenn die ID nicht existiert (der Visitor wird dann nicht aufgerufen)
+     */
+    public boolean read(int id, Visitor visitor) {
+        int slot = slotOf(id);
+        return slot >= 0 && readSlot(slot, visitor);
+    }
+
+    /**
+     * Besucht alle vorhandenen Fahrzeuge in Slot-Reihenfolge. Jeder einzelne Zustand ist konsistent, die
+     * Gesamtheit aber kein Schnappschuss (parallele Updates können teilweise sichtbar sein).
+     */
+    public void forEach(Visitor visitor) {
+        int count = slotCount;
+        for (int slot = 0; slot < count; slot++) {
+            readSlot(slot, visitor);
+        }
+    }
+
+    public boolean contains(int id) {
+        int slot = slotOf(id);
+        if (slot < 0) {
+            return false;
+        }
+        Chunk c = chunks[slot >>> CHUNK_SHIFT];
+        int o = slot & CHUNK_MASK;
+        while (true) {
+            long v = (long) LONGS.getAcquire(c.version, o);
+            if ((v & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            boolean present = c.present[o];
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getVolatile(c.version, o) == v) {
+                return present;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    private int write(int id, double x, double y, double speed, double direction, long timestamp, int mode) {
+        int slot = slotOf(id);
+        if (slot < 0) {
+            if (mode == UPDATE_ONLY) {
+                return REJECTED;
+            }
+            slot = insert(id);
+        }
+        Chunk c = chunks[slot >>> CHUNK_SHIFT];
+        int o = slot & CHUNK_MASK;
+
+        long v = lock(c, o);
+        boolean existed = c.present[o];
+        boolean changed = false;
+        long token;
+        // Der Slot wird in jedem Fall wieder freigegeben, sonst warten Leser und Schreiber dieses Slots ewig.
+        try {
+            if ((mode == CREATE_ONLY && existed) || (mode == UPDATE_ONLY && !existed)) {
+                return REJECTED;
+            }
+            // Erst protokollieren: wirft das Log (geschlossen, neues Segment nicht anlegbar), bleibt der Slot
+            // unverändert und die Version gültig.
+            token = changeLog != null ? changeLog.put(id, x, y, speed, direction, timestamp) : 0;
+            double oldX = c.x[o];
+            double oldY = c.y[o];
+            c.x[o] = x;
+            c.y[o] = y;
+            c.speed[o] = speed;
+            c.direction[o] = direction;
+            c.timestamp[o] = timestamp;
+            c.present[o] = true;
+            changed = true;
+            if (listener != null) {
+                listener.stored(id, existed, oldX, oldY, x, y, speed, direction, timestamp);
+            }
+        } finally {
+            unlock(c, o, v, changed);
+        }
+
+        if (!existed) {
+            size.incrementAndGet();
+        }
+        if (changeLog != null) {
+            changeLog.awaitDurable(token);
+        }
+        return existed ? UPDATED : CREATED;
+    }
+
+    private boolean readSlot(int slot, Visitor visitor) {
+        Chunk c = chunks[slot >>> CHUNK_SHIFT];
+        int o = slot & CHUNK_MASK;
+        while (true) {
+            long v = (long) LONGS.getAcquire(c.version, o);
+            if ((v & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            boolean present = c.present[o];
+            double x = c.x[o];
+            double y = c.y[o];
+            double speed = c.speed[o];
+            double direction = c.direction[o];
+            long timestamp = c.timestamp[o];
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getVolatile(c.version, o) != v) {
+                continue;
+            }
+            if (present) {
+                visitor.visit(c.ids[o], x, y, speed, direction, timestamp);
+            }
+            return present;
+        }
+    }
+
+    private static long lock(Chunk c, int o) {
+        while (true) {
+            long v = (long) LONGS.getVolatile(c.version, o);
+            if ((v & 1) == 0 && LONGS.compareAndSet(c.version, o, v, v + 1)) {
+                // Die folgenden Schreibzugriffe dürfen nicht vor die ungerade Version wandern.
+                VarHandle.storeStoreFence();
+                return v;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void unlock(Chunk c, int o, long v, boolean changed) {
+        // Ohne Änderung bleibt die alte Version gültig; Leser müssen dann nicht erneut lesen.
+        LONGS.setRelease(c.version, o, changed ? v + 2 : v);
+    }
+
+    private int slotOf(int id) {
+        Table t = table;
+        int i = mix(id) & t.mask;
+        while (true) {
+            int s = (int) INTS.getAcquire(t.slots, i);
+            if (s == 0) {
+                Table current = table;
+                if (current != t) {
+                    // Tabelle wurde inzwischen vergrößert; die ID kann in der neuen Tabelle stehen.
+                    t = current;
+                    i = mix(id) & t.mask;
+                    continue;
+                }
+                return -1;
+            }
+            if (t.keys[i] == id) {
+                return s - 1;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    private int insert(int id) {
+        synchronized (insertLock) {
+            int existing = slotOf(id);
+            if (existing >= 0) {
+                return existing;
+            }
+            int slot = slotCount;
+            int chunkIndex = slot >>> CHUNK_SHIFT;
+            if (chunkIndex == chunks.length) {
+                Chunk[] grown = Arrays.copyOf(chunks, chunkIndex + 1);
+                grown[chunkIndex] = new Chunk();
+                chunks = grown;
+            }
+            chunks[chunkIndex].ids[slot & CHUNK_MASK] = id;
+
+            Table t = table;
+            if ((slot + 1) * 2 > t.keys.length) {
+                // Füllgrad max. 50 %: neue Tabelle aufbauen und erst danach veröffentlichen.
+                t = t.grow();
+                table = t;
+            }
+            t.add(id, slot);
+            // Erst nach der Tabelle erhöhen, damit forEach() keinen halb angelegten Slot sieht.
+            slotCount = slot + 1;
+            return slot;
+        }
+    }
+
+    private static int mix(int id) {
+        // Streut fortlaufende IDs über die Tabelle (Fibonacci-Hashing).
+        return (id * 0x9E3779B9) ^ (id >>> 16);
+    }
+
+    /**
+     * Hashtabelle ID -> Slot + 1 (0 = frei). Nach dem Vergrößern wird die alte Tabelle nicht mehr beschrieben.
+     */
+    private static final class Table {
+        final int[] keys;
+        final int[] slots;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            slots = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        void add(int id, int slot) {
+            int i = mix(id) & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = id;
+            // Der Slot wird zuletzt und mit Release geschrieben: wer ihn sieht, sieht auch den Key.
+            INTS.setRelease(slots, i, slot + 1);
+        }
+
+        Table grow() {
+            Table bigger = new Table(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                if (slots[i] != 0) {
+                    bigger.add(keys[i], slots[i] - 1);
+                }
+            }
+            return bigger;
+        }
+    }
+
+    /**
+     * Ein Block von Slots, Spalte für Spalte.
+     */
+    private static final class Chunk {
+        final int[] ids = new int[CHUNK_SIZE];
+        final double[] x = new double[CHUNK_SIZE];
+        final double[] y = new double[CHUNK_SIZE];
+        final double[] speed = new double[CHUNK_SIZE];
+        final double[] direction = new double[CHUNK_SIZE];
+        final long[] timestamp = new long[CHUNK_SIZE];
+        final boolean[] present = new boolean[CHUNK_SIZE];
+        final long[] version = new long[CHUNK_SIZE];
+    }
+}
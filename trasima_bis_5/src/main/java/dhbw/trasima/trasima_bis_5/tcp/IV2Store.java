@@ -5,4 +5,15 @@ public interface IV2Store {
     void save(V2State state);
 
     V2State get(int id);
+
+    /** Anzahl gespeicherter Fahrzeuge (für die Metrik {@code trasima_store_vehicles}). */
+    int size();
+
+    /**
+     * Speichert ohne Zwischenobjekt. Standardmäßig wird doch eins erzeugt; {@link ColumnarV2Store} schreibt
+     * direkt in seine Spalten.
+     */
+    default void save(int id, double x, double y, double speed, long timestamp) {
+        save(new V2State(id, x, y, speed, timestamp));
+    }
 }
@@ -16,4 +16,9 @@ public class InMemoryV2Store implements IV2Store {
     public V2State get(int id) {
         return map.get(id);
     }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
 }
@@ -0,0 +1,333 @@
+package dhbw.trasima.trasima_bis_5.tcp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Nicht-blockierende Variante des {@link TrasimaServer} auf Basis von {@code java.nio} Selektoren.
+ *
+ * <p>Statt einem Thread pro Verbindung gibt es einen Accept-Thread und eine kleine, feste Anzahl an
+ * Event-Loops. Jede Verbindung wird per Round-Robin genau einer Event-Loop zugeordnet.</p>
+ *
+ * <p>Das Textprotokoll ist identisch zum blockierenden Server ({@link TextProtocol}). Clients dürfen mehrere
+ * Zeilen hintereinander schicken, ohne auf die Antworten zu warten (Pipelining): alle vollständigen Zeilen
+ * eines Reads werden verarbeitet und die Antworten gesammelt mit einem Write zurückgeschickt.</p>
+ *
+ * <p>Zusätzlich kann eine Verbindung per Handshake auf das {@link BinaryProtocol} umschalten.</p>
+ */
+public final class NioTrasimaServer implements AutoCloseable {
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 8 * 1024;
+    // Ab dieser Menge unversendeter Antworten wird nicht mehr gelesen, bis der Client aufgeholt hat.
+    private static final int MAX_PENDING_OUTPUT = 256 * 1024;
+
+    private final int port;
+    private final IV2Store store;
+    private final EventLoop[] loops;
+
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+    private int boundPort;
+    private volatile boolean running;
+
+    public NioTrasimaServer(int port, int eventLoops, IV2Store store) {
+        if (eventLoops < 1) {
+            throw new IllegalArgumentException("eventLoops muss >= 1 sein");
+        }
+        this.port = port;
+        this.store = store;
+        this.loops = new EventLoop[eventLoops];
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        boundPort = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        running = true;
+
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(Selector.open());
+            Thread t = new Thread(loops[i], "trasima-nio-" + i);
+            t.setDaemon(true);
+            loops[i].thread = t;
+            t.start();
+        }
+
+        acceptor = new Thread(this::acceptLoop, "trasima-nio-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Tatsächlicher Port (relevant, wenn mit Port 0 gestartet wurde).
+     */
+    public int port() {
+        return boundPort;
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        acceptor.join();
+        for (EventLoop loop : loops) {
+            loop.thread.join();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+            // Server wird ohnehin beendet.
+        }
+        for (EventLoop loop : loops) {
+            if (loop != null) {
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel ch = serverChannel.accept();   // blockierend, aber nur dieser eine Thread
+                ch.configureBlocking(false);
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[next].register(ch);
+                next = (next + 1) % loops.length;
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Accept Fehler: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private Thread thread;
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(SocketChannel ch) {
+            pending.add(ch);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    registerPending();
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+
+                        Connection c = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                c.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                c.onWritable();
+                            }
+                        } catch (IOException e) {
+                            c.close();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Event-Loop Fehler: " + e.getMessage());
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                    // nichts mehr zu tun
+                }
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel ch;
+            while ((ch = pending.poll()) != null) {
+                try {
+                    SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+                    key.attach(new Connection(ch, key));
+                } catch (ClosedChannelException e) {
+                    // Client war schon wieder weg.
+                }
+            }
+        }
+    }
+
+    /**
+     * Zustand einer Verbindung. Wird nur von der zugehörigen Event-Loop benutzt.
+     */
+    private final class Connection {
+
+        private final SocketChannel ch;
+        private final SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        // Immer im "Füll"-Modus: position = Ende der noch nicht versendeten Antworten.
+        private ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        // Nach erfolgreichem Handshake nur noch feste Frames statt Textzeilen.
+        private boolean binary;
+
+        Connection(SocketChannel ch, SelectionKey key) {
+            this.ch = ch;
+            this.key = key;
+        }
+
+        void onReadable() throws IOException {
+            int n = ch.read(in);
+            if (n == -1) {
+                // Wie BufferedReader.readLine(): eine letzte Zeile ohne Zeilenende wird noch verarbeitet.
+                in.flip();
+                if (!binary && in.hasRemaining()) {
+                    respond(decode(in.position(), in.limit()));
+                }
+                flush();
+                close();
+                return;
+            }
+
+            in.flip();
+            if (!binary) {
+                processLines();
+            }
+            // Kein else: der Handshake kann im selben Read wie die ersten Frames ankommen.
+            if (binary) {
+                processFrames();
+            }
+            in.compact();
+
+            if (!binary && !in.hasRemaining()) {
+                // Zeile passt nicht in den Lesepuffer: das kann kein gültiger Befehl sein.
+                appendLine(TextProtocol.ERROR);
+                flush();
+                close();
+                return;
+            }
+            flush();
+        }
+
+        void onWritable() throws IOException {
+            flush();
+        }
+
+        private void processLines() {
+            byte[] buf = in.array();
+            int start = in.position();
+            int end = in.limit();
+            for (int i = start; i < end; i++) {
+                if (buf[i] == '\n') {
+                    String line = decode(start, i);
+                    start = i + 1;
+                    if (line.equals(BinaryProtocol.HANDSHAKE)) {
+                        appendLine(BinaryProtocol.HANDSHAKE_OK);
+                        binary = true;
+                        break;
+                    }
+                    respond(line);
+                }
+            }
+            in.position(start);
+        }
+
+        private void processFrames() {
+            while (in.remaining() >= BinaryProtocol.FRAME_SIZE) {
+                int offset = in.position();
+                ensureCapacity(BinaryProtocol.FRAME_SIZE);
+                BinaryProtocol.handle(in, offset, out, store);
+                in.position(offset + BinaryProtocol.FRAME_SIZE);
+            }
+        }
+
+        private String decode(int from, int to) {
+            int len = to - from;
+            if (len > 0 && in.array()[to - 1] == '\r') {
+                len--;
+            }
+            return new String(in.array(), from, len, StandardCharsets.UTF_8);
+        }
+
+        private void respond(String line) {
+            String response = TextProtocol.handle(line, store);
+            if (response != null) {
+                appendLine(response);
+            }
+        }
+
+        private void appendLine(String response) {
+            ensureCapacity(response.length() + 1);
+            // Antworten sind reines ASCII, daher ohne getBytes()-Kopie.
+            for (int i = 0; i < response.length(); i++) {
+                out.put((byte) response.charAt(i));
+            }
+            out.put((byte) '\n');
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (out.remaining() >= bytes) {
+                return;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+            out.flip();
+            bigger.put(out);
+            out = bigger;
+        }
+
+        private void flush() throws IOException {
+            if (out.position() > 0) {
+                out.flip();
+                ch.write(out);
+                out.compact();
+            }
+
+            int ops = SelectionKey.OP_READ;
+            if (out.position() > 0) {
+                ops |= SelectionKey.OP_WRITE;
+                if (out.position() > MAX_PENDING_OUTPUT) {
+                    ops &= ~SelectionKey.OP_READ;
+                }
+            }
+            if (key.isValid()) {
+                key.interestOps(ops);
+            }
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                ch.close();
+            } catch (IOException ignored) {
+                // Verbindung ist ohnehin weg.
+            }
+        }
+    }
+}
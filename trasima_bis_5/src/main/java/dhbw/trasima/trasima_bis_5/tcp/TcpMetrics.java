@@ -0,0 +1,41 @@
+package dhbw.trasima.trasima_bis_5.tcp;
+
+import dhbw.trasima.trasima_bis_5.metrics.Counter;
+import dhbw.trasima.trasima_bis_5.metrics.LatencyHistogram;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+
+/**
+ * Metriken von {@link TextProtocol} und {@link BinaryProtocol} (beide Server zählen damit automatisch mit) sowie
+ * der beiden TCP-Publisher.
+ *
+ * <p>Die Instanzen werden einmal angelegt, pro Anfrage fallen nur zwei {@code nanoTime()} und ein paar
+ * {@code LongAdder}-Inkremente an.</p>
+ */
+final class TcpMetrics {
+
+    static final Counter UPDATES = MetricsRegistry.global().counter("trasima_updates_received_total",
+            "Empfangene Positions-Updates", "transport", "tcp");
+
+    static final Counter TEXT_PUBLISHER_FAILURES = MetricsRegistry.global().counter(
+            "trasima_publisher_failures_total", "Fehlgeschlagene Veröffentlichungen im Client",
+            "transport", "tcp", "protocol", "text");
+    static final Counter BINARY_PUBLISHER_FAILURES = MetricsRegistry.global().counter(
+            "trasima_publisher_failures_total", "Fehlgeschlagene Veröffentlichungen im Client",
+            "transport", "tcp", "protocol", "binary");
+
+    static final LatencyHistogram TEXT_PUBLISH = latency("text", "PUBLISH");
+    static final LatencyHistogram TEXT_FETCH = latency("text", "FETCH");
+    static final LatencyHistogram TEXT_ERROR = latency("text", "ERROR");
+    static final LatencyHistogram BINARY_PUBLISH = latency("binary", "PUBLISH");
+    static final LatencyHistogram BINARY_FETCH = latency("binary", "FETCH");
+    static final LatencyHistogram BINARY_ERROR = latency("binary", "ERROR");
+
+    private TcpMetrics() {
+    }
+
+    private static LatencyHistogram latency(String protocol, String command) {
+        return MetricsRegistry.global().histogram("trasima_request_duration_seconds",
+                "Bearbeitungszeit einer Anfrage im Server", "transport", "tcp", "protocol", protocol,
+                "command", command);
+    }
+}
@@ -1,32 +1,305 @@
 package dhbw.trasima.trasima_bis_5.tcp;
 
 import dhbw.trasima.trasima_bis_5.IPositionPublisher;
+import dhbw.trasima.trasima_bis_5.metrics.RateLimitedLog;
 import java.io.*;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
-public class TcpPositionPublisher implements IPositionPublisher {
+/**
+ * Publisher für das Textprotokoll des {@link TrasimaServer}.
+ *
+ * <p>Modi:</p>
+ * <ul>
+ *   <li>{@link Mode#SYNC}: wie bisher, jede Position wartet auf ihr "OK" (ein Update pro Round-Trip).</li>
+ *   <li>{@link Mode#WINDOWED}: bis zu {@code window} Updates dürfen unbestätigt unterwegs sein; ist das Fenster
+ *   voll, blockiert {@link #publishPosition} (Back-Pressure).</li>
+ *   <li>{@link Mode#FIRE_AND_FORGET}: wie WINDOWED, aber bei vollem Fenster wird das Update verworfen statt
+ *   zu blockieren.</li>
+ * </ul>
+ *
+ * <p>In den asynchronen Modi schreibt ein eigener Thread alle wartenden Zeilen gesammelt mit einem Flush,
+ * ein zweiter Thread liest die Antworten. Der Server antwortet in Sendereihenfolge, daher wird jede Antwort
+ * der ältesten offenen Sequenznummer zugeordnet.</p>
+ */
+public class TcpPositionPublisher implements IPositionPublisher, AutoCloseable {
+
+    public enum Mode { SYNC, WINDOWED, FIRE_AND_FORGET }
+
+    /**
+     * Rückmeldungen aus den asynchronen Modi. Wird aus dem Reader- bzw. Aufrufer-Thread aufgerufen und sollte
+     * daher nicht blockieren.
+     */
+    public interface Listener {
+
+        default void onAck(long seq, int id) {
+        }
+
+        default void onFailed(long seq, int id, String reason) {
+        }
+
+        /** Fenster war voll (nur {@link Mode#FIRE_AND_FORGET}) oder der Publisher ist bereits geschlossen. */
+        default void onDropped(int id) {
+        }
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {
+    };
+    private static final RateLimitedLog ERROR_LOG = new RateLimitedLog("TCP Fehler: ", 1);
 
     private final Socket socket;
     private final PrintWriter out;
     private final BufferedReader in;
 
+    private final Mode mode;
+    private final int windowSize;
+    private final Semaphore window;
+    private final Listener listener;
+    private final BlockingQueue<Pending> sendQueue;
+    // Geschriebene, noch nicht bestätigte Updates in Sendereihenfolge.
+    private final Queue<Pending> inFlight = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean closed;
+    // Reader-Thread ist beendet: ab jetzt meldet niemand mehr die Einträge in inFlight.
+    private volatile boolean readerDone;
+
     public TcpPositionPublisher(String host, int port) {
+        this(host, port, Mode.SYNC, 1, null);
+    }
+
+    public TcpPositionPublisher(String host, int port, Mode mode, int window, Listener listener) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window muss >= 1 sein");
+        }
+        this.mode = mode;
+        this.windowSize = window;
+        this.window = new Semaphore(window);
+        this.listener = listener == null ? NO_LISTENER : listener;
+        this.sendQueue = new ArrayBlockingQueue<>(window);
         try {
             this.socket = new Socket(host, port);
-            this.out = new PrintWriter(socket.getOutputStream(), true);
+            if (mode == Mode.SYNC) {
+                this.out = new PrintWriter(socket.getOutputStream(), true);
+            } else {
+                // Kein Auto-Flush: der Writer-Thread flusht einmal pro Batch.
+                this.out = new PrintWriter(new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), 64 * 1024), false);
+            }
             this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
         } catch (IOException e) {
             throw new RuntimeException("TCP Verbindung fehlgeschlagen", e);
         }
+
+        if (mode != Mode.SYNC) {
+            startDaemon(this::writeLoop, "tcp-publisher-writer");
+            startDaemon(this::readLoop, "tcp-publisher-reader");
+        }
     }
 
     @Override
-    public synchronized void publishPosition(int id, double x, double y, double speed) {
+    public void publishPosition(int id, double x, double y, double speed) {
+        if (mode == Mode.SYNC) {
+            publishSync(id, x, y, speed);
+            return;
+        }
+
+        if (!acquireWindow()) {
+            dropped.increment();
+            listener.onDropped(id);
+            return;
+        }
+        if (closed) {
+            window.release();
+            dropped.increment();
+            listener.onDropped(id);
+            return;
+        }
+        // Kapazität der Queue == Fenstergröße, mit Permit ist immer Platz.
+        Pending pending = new Pending(id, "PUBLISH " + id + " " + x + " " + y + " " + speed);
+        sendQueue.add(pending);
+        // close()/failAll kann zwischen der Prüfung oben und add() die Queue schon geleert haben. remove() gelingt
+        // nur, wenn noch niemand den Eintrag genommen hat; so wird er genau einmal gemeldet.
+        if (closed && sendQueue.remove(pending)) {
+            fail(pending, "Publisher geschlossen");
+        }
+    }
+
+    private synchronized void publishSync(int id, double x, double y, double speed) {
         try {
             out.println("PUBLISH " + id + " " + x + " " + y + " " + speed);
             in.readLine(); // liest "OK"
+        } catch (IOException e) {
+            TcpMetrics.TEXT_PUBLISHER_FAILURES.inc();
+            ERROR_LOG.log(e.getMessage());
+        }
+    }
+
+    private boolean acquireWindow() {
+        if (mode == Mode.FIRE_AND_FORGET) {
+            return window.tryAcquire();
+        }
+        try {
+            window.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Anzahl der gesendeten oder wartenden, aber noch nicht bestätigten Updates. */
+    public int inFlight() {
+        return windowSize - window.availablePermits();
+    }
+
+    public long acked() {
+        return acked.sum();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Schließt die Verbindung. In den asynchronen Modi wird bis zu 2 Sekunden auf offene Bestätigungen gewartet.
+     */
+    @Override
+    public void close() {
+        if (mode != Mode.SYNC && !closed) {
+            try {
+                if (window.tryAcquire(windowSize, 2, TimeUnit.SECONDS)) {
+                    window.release(windowSize);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closed = true;
+        try {
+            socket.close();
         } catch (IOException e) {
             System.out.println("TCP Fehler: " + e.getMessage());
         }
     }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(windowSize);
+        long nextSeq = 0;
+        try {
+            while (!closed) {
+                Pending first = sendQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                sendQueue.drainTo(batch);
+
+                for (Pending p : batch) {
+                    p.seq = ++nextSeq;
+                    // Vor dem Schreiben eintragen, sonst könnte die Antwort schneller sein.
+                    inFlight.add(p);
+                    out.println(p.line);
+                }
+                out.flush();
+                batch.clear();
+
+                if (out.checkError()) {
+                    failAll("Schreibfehler");
+                    return;
+                }
+                if (readerDone) {
+                    // Der Reader hat inFlight schon geleert, bevor dieser Batch eingetragen war
+                    failAll("Verbindung geschlossen");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Nach close() nichts mehr senden; was noch in der Queue liegt, gilt als fehlgeschlagen
+            Pending p;
+            while ((p = sendQueue.poll()) != null) {
+                fail(p, "Publisher geschlossen");
+            }
+        }
+    }
+
+    private void readLoop() {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Pending p = inFlight.poll();
+                if (p == null) {
+                    continue;
+                }
+                window.release();
+                if (TextProtocol.OK.equals(line)) {
+                    acked.increment();
+                    listener.onAck(p.seq, p.id);
+                } else {
+                    failed.increment();
+                    TcpMetrics.TEXT_PUBLISHER_FAILURES.inc();
+                    listener.onFailed(p.seq, p.id, line);
+                }
+            }
+            readerDone = true;
+            failAll("Verbindung vom Server geschlossen");
+        } catch (IOException e) {
+            readerDone = true;
+            failAll(closed ? "Publisher geschlossen" : "TCP Fehler: " + e.getMessage());
+        }
+    }
+
+    private void failAll(String reason) {
+        closed = true;
+        Pending p;
+        while ((p = inFlight.poll()) != null) {
+            fail(p, reason);
+        }
+        while ((p = sendQueue.poll()) != null) {
+            fail(p, reason);
+        }
+    }
+
+    private void fail(Pending p, String reason) {
+        window.release();
+        failed.increment();
+        TcpMetrics.TEXT_PUBLISHER_FAILURES.inc();
+        listener.onFailed(p.seq, p.id, reason);
+    }
+
+    private static void startDaemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static final class Pending {
+        final int id;
+        final String line;
+        // Wird vom Writer-Thread in Sendereihenfolge vergeben (0 = noch nicht gesendet).
+        long seq;
+
+        Pending(int id, String line) {
+            this.id = id;
+            this.line = line;
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package dhbw.trasima.trasima_bis_5.tcp;
+
+/**
+ * Zeilenbasiertes Textprotokoll des TRASIMA Servers.
+ *
+ * <p>Wird vom blockierenden {@link TrasimaServer} und vom {@link NioTrasimaServer} gemeinsam genutzt,
+ * damit beide Server exakt dieselben Antworten liefern.</p>
+ *
+ * <ul>
+ *   <li>{@code PUBLISH <id> <x> <y> <speed>} -> {@code OK}</li>
+ *   <li>{@code FETCH <id>} -> {@code <id> <x> <y> <speed>} oder {@code NOT_FOUND}</li>
+ *   <li>alles andere -> {@code ERROR}</li>
+ * </ul>
+ */
+public final class TextProtocol {
+
+    public static final String OK = "OK";
+    public static final String NOT_FOUND = "NOT_FOUND";
+    public static final String ERROR = "ERROR";
+
+    private TextProtocol() {
+    }
+
+    /**
+     * Verarbeitet eine Anfragezeile (ohne Zeilenende).
+     *
+     * @return Antwortzeile ohne Zeilenende oder {@code null} für leere Zeilen (keine Antwort)
+     */
+    public static String handle(String line, IV2Store store) {
+        if (line.isBlank()) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        String[] parts = line.split(" ");
+
+        try {
+            if (parts[0].equals("PUBLISH") && parts.length >= 5) {
+                int id = Integer.parseInt(parts[1]);
+                double x = Double.parseDouble(parts[2]);
+                double y = Double.parseDouble(parts[3]);
+                double speed = Double.parseDouble(parts[4]);
+
+                store.save(id, x, y, speed, System.currentTimeMillis());
+                TcpMetrics.UPDATES.inc();
+                TcpMetrics.TEXT_PUBLISH.recordSince(start);
+                return OK;
+            }
+
+            if (parts[0].equals("FETCH") && parts.length >= 2) {
+                int id = Integer.parseInt(parts[1]);
+                V2State st = store.get(id);
+
+                String response = st == null ? NOT_FOUND : format(st);
+                TcpMetrics.TEXT_FETCH.recordSince(start);
+                return response;
+            }
+        } catch (NumberFormatException e) {
+            // Kaputte Zahlen beenden nicht mehr die Verbindung, sondern werden wie unbekannte Befehle beantwortet.
+        }
+
+        TcpMetrics.TEXT_ERROR.recordSince(start);
+        return ERROR;
+    }
+
+    public static String format(V2State st) {
+        return st.id + " " + st.x + " " + st.y + " " + st.speed;
+    }
+}
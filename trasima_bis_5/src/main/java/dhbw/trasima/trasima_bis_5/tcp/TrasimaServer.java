@@ -1,26 +1,70 @@
 package dhbw.trasima.trasima_bis_5.tcp;
 
+import dhbw.trasima.trasima_bis_5.ingest.LatestValueIngest;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsHttpServer;
+import dhbw.trasima.trasima_bis_5.metrics.MetricsRegistry;
+import dhbw.trasima.trasima_bis_5.metrics.RateLimitedLog;
+import dhbw.trasima.trasima_bis_5.persistence.StatePersistence;
+
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class TrasimaServer {
 
+    /**
+     * Argumente:
+     * <ul>
+     *   <li>{@code --port <port>} (Standard: 5555)</li>
+     *   <li>{@code --nio} nicht-blockierender Server mit festen Event-Loops ({@link NioTrasimaServer})</li>
+     *   <li>{@code --loops <n>} Anzahl Event-Loops im NIO-Modus (Standard: Anzahl CPU-Kerne)</li>
+     *   <li>{@code --store map|columnar} Speicher: {@link InMemoryV2Store} (Standard) oder
+     *   {@link ColumnarV2Store} (primitive Spalten, keine Allokation pro Update)</li>
+     *   <li>{@code --wal <verzeichnis>} persistenter {@link ColumnarV2Store} mit Write-Ahead-Log und Snapshots
+     *   ({@link StatePersistence}); der Zustand wird beim Start wiederhergestellt</li>
+     *   <li>{@code --coalesce} Updates über eine {@link LatestValueIngest} sammeln ({@link CoalescingV2Store}):
+     *   pro Fahrzeug wird nur das neueste noch offene Update in den Speicher übernommen</li>
+     *   <li>{@code --metrics-port <port>} Prometheus-Metriken unter {@code http://host:<port>/metrics}
+     *   (Standard: aus)</li>
+     *   <li>{@code --log-per-second <n>} höchstens so viele Anfragen pro Sekunde auf der Konsole (Standard: 5,
+     *   0 = keine)</li>
+     * </ul>
+     */
     public static void main(String[] args) throws Exception {
 
-        IV2Store store = new InMemoryV2Store();
-        ServerSocket serverSocket = new ServerSocket(5555);
+        int port = intArg(args, "--port", 5555);
+        IV2Store store = openStore(args);
+        MetricsRegistry.global().gauge("trasima_store_vehicles", "Fahrzeuge im Speicher", store::size,
+                "transport", "tcp");
+        int metricsPort = intArg(args, "--metrics-port", -1);
+        if (metricsPort >= 0) {
+            MetricsHttpServer metrics = MetricsHttpServer.start(metricsPort, MetricsRegistry.global());
+            System.out.println("Metriken: http://localhost:" + metrics.port() + "/metrics");
+        }
+        RateLimitedLog requestLog = new RateLimitedLog("Request: ", intArg(args, "--log-per-second", 5));
+
+        if (hasFlag(args, "--nio")) {
+            int loops = intArg(args, "--loops", Runtime.getRuntime().availableProcessors());
+            NioTrasimaServer server = new NioTrasimaServer(port, loops, store);
+            server.start();
+            System.out.println("TRASIMA NIO Server läuft auf Port " + server.port() + " (" + loops + " Event-Loops)");
+            server.awaitTermination();
+            return;
+        }
+
+        ServerSocket serverSocket = new ServerSocket(port);
         ExecutorService pool = Executors.newCachedThreadPool();
 
-        System.out.println("TRASIMA Server läuft auf Port 5555");
+        System.out.println("TRASIMA Server läuft auf Port " + port);
 
         while (true) {
             Socket client = serverSocket.accept();   // blockierend
             pool.submit(() -> {
                 try {
-                    handleClient(client, store);
+                    handleClient(client, store, requestLog);
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
@@ -28,7 +72,37 @@ public class TrasimaServer {
         }
     }
 
-    private static void handleClient(Socket socket, IV2Store store) throws Exception {
+    private static IV2Store openStore(String[] args) throws IOException {
+        String walDir = stringArg(args, "--wal", null);
+        if (walDir == null) {
+            IV2Store store = "columnar".equals(stringArg(args, "--store", "map")) ? new ColumnarV2Store() : new InMemoryV2Store();
+            return hasFlag(args, "--coalesce") ? coalescing(store) : store;
+        }
+        StatePersistence persistence = StatePersistence.open(Path.of(walDir), new StatePersistence.Options());
+        System.out.println("WAL in " + walDir + ": " + persistence.store().size() + " Fahrzeuge wiederhergestellt ("
+                + persistence.stats().recoveryMillis() + " ms)");
+        CoalescingV2Store coalescing = hasFlag(args, "--coalesce") ? coalescing(persistence.store()) : null;
+        // Bei Strg+C erst offene Updates übernehmen, dann den Rest des Logs auf die Platte bringen
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (coalescing != null) {
+                coalescing.close();
+            }
+            try {
+                persistence.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+        return coalescing != null ? coalescing : persistence.store();
+    }
+
+    private static CoalescingV2Store coalescing(IV2Store store) {
+        CoalescingV2Store coalescing = new CoalescingV2Store(store, "tcp", new LatestValueIngest.Options());
+        System.out.println("Coalescing aktiv: pro Fahrzeug wird nur das neueste offene Update gespeichert");
+        return coalescing;
+    }
+
+    private static void handleClient(Socket socket, IV2Store store, RateLimitedLog requestLog) throws Exception {
 
         try (
                 Socket s = socket;
@@ -41,35 +115,33 @@ public class TrasimaServer {
                     continue;
                 }
 
-                System.out.println("Request: " + line);
-
-                String[] parts = line.split(" ");
+                requestLog.log(line);
 
-                if (parts[0].equals("PUBLISH") && parts.length >= 5) {
-                    int id = Integer.parseInt(parts[1]);
-                    double x = Double.parseDouble(parts[2]);
-                    double y = Double.parseDouble(parts[3]);
-                    double speed = Double.parseDouble(parts[4]);
-
-                    store.save(new V2State(id, x, y, speed));
-                    out.println("OK");
-                    continue;
-                }
+                out.println(TextProtocol.handle(line, store));
+            }
+        }
+    }
 
-                if (parts[0].equals("FETCH") && parts.length >= 2) {
-                    int id = Integer.parseInt(parts[1]);
-                    V2State st = store.get(id);
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (flag.equals(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                    if (st == null) {
-                        out.println("NOT_FOUND");
-                    } else {
-                        out.println(st.id + " " + st.x + " " + st.y + " " + st.speed);
-                    }
-                    continue;
-                }
+    private static int intArg(String[] args, String key, int defaultValue) {
+        String value = stringArg(args, key, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
 
-                out.println("ERROR");
+    private static String stringArg(String[] args, String key, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (key.equals(args[i])) {
+                return args[i + 1];
             }
         }
+        return defaultValue;
     }
 }
@@ -5,11 +5,18 @@ public class V2State {
     public final double x;
     public final double y;
     public final double speed;
+    // Zeitpunkt der Messung (epoch millis); beim Textprotokoll der Empfangszeitpunkt.
+    public final long timestamp;
 
     public V2State(int id, double x, double y, double speed) {
+        this(id, x, y, speed, System.currentTimeMillis());
+    }
+
+    public V2State(int id, double x, double y, double speed, long timestamp) {
         this.id = id;
         this.x = x;
         this.y = y;
         this.speed = speed;
+        this.timestamp = timestamp;
     }
 }
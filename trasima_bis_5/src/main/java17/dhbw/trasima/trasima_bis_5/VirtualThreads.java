@@ -0,0 +1,20 @@
+package dhbw.trasima.trasima_bis_5;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Virtuelle Threads im Standard-Build (release 17): nicht verfügbar. Die Variante für Java 21 liegt in
+ * {@code src/main/java21} und wird mit {@code mvn -Pjdk21} gebaut.
+ */
+final class VirtualThreads {
+
+    static final boolean AVAILABLE = false;
+
+    private VirtualThreads() {
+    }
+
+    static Optional<ExecutorService> newPerTaskExecutor() {
+        return Optional.empty();
+    }
+}
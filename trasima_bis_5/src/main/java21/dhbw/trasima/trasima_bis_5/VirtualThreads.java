@@ -0,0 +1,20 @@
+package dhbw.trasima.trasima_bis_5;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtuelle Threads im Build mit {@code -Pjdk21}; das Gegenstück für release 17 liegt in {@code src/main/java17}.
+ */
+final class VirtualThreads {
+
+    static final boolean AVAILABLE = true;
+
+    private VirtualThreads() {
+    }
+
+    static Optional<ExecutorService> newPerTaskExecutor() {
+        return Optional.of(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}